@@ -0,0 +1,38 @@
+package com.challer.tpextraction;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+/**
+ * Run the benchmarks with the options of the JMH command line, the allocation rate being always reported (profiler gc).
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public class BenchmarkRunner {
+
+    public static void main(String... args) throws Exception {
+        final CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+
+        // Help and listings are given by the JMH command line itself
+        if (commandLineOptions.shouldHelp() || commandLineOptions.shouldList() || commandLineOptions.shouldListWithParams()
+                || commandLineOptions.shouldListProfilers() || commandLineOptions.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        final OptionsBuilder options = new OptionsBuilder();
+        options.parent(commandLineOptions);
+        boolean gcProfiler = false;
+        for (ProfilerConfig profiler : commandLineOptions.getProfilers()) {
+            gcProfiler |= "gc".equals(profiler.getKlass()) || GCProfiler.class.getName().equals(profiler.getKlass());
+        }
+        if (!gcProfiler) {
+            options.addProfiler(GCProfiler.class);
+        }
+
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,71 @@
+package com.challer.tpextraction;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Time to rewrite the description of an User Story, from a few KB up to the largest descriptions (several MB).
+ * <p>
+ * "regex" reproduces the former code : two replaceAll and a pattern compiled for each description. "transformer"
+ * uses {@link DescriptionTransformer}.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DescriptionBenchmark {
+
+    /**
+     * Part of description repeated up to the size, with links to User Stories and images
+     */
+    private final static String PARAGRAPH = "<div>As a manager, I want to export the monthly report (see id&#58; 1234 and id&#58;&nbsp;5678) "
+            + "<img src=\"/images/report%20screen.png\" alt=\"report\" /> so that I can share it with the team.</div>";
+
+    /**
+     * Size of the description, in characters
+     */
+    @Param({"10000", "1000000", "4000000"})
+    private int size;
+
+    private String description;
+
+    private DescriptionTransformer transformer;
+
+    @Setup
+    public void buildDescription() {
+        final StringBuilder builder = new StringBuilder(size + PARAGRAPH.length());
+        while (builder.length() < size) {
+            builder.append(PARAGRAPH);
+        }
+        description = builder.toString();
+        transformer = new DescriptionTransformer("https://easy.tpondemand.com", "http://easy.tpondemand.com");
+    }
+
+    @Benchmark
+    public String regex() {
+        String result = description.replaceAll("(id&#58;\\D*)(\\d*)", "<a href=\"us-$2.html\">$2</a>");
+        result = result.replaceAll("(img.*src=\")/", "$1");
+
+        final Pattern p = Pattern.compile("(img.*src=)(\"/)(.*\")");
+        final Matcher m = p.matcher(result);
+        final StringBuffer s = new StringBuffer();
+        while (m.find())
+            m.appendReplacement(s, m.group(1) + "\"" + m.group(3).replace("%", "%25"));
+
+        if (m.find())
+            result = s.toString();
+        return result;
+    }
+
+    @Benchmark
+    public String transformer() {
+        return transformer.transform(description);
+    }
+}
@@ -0,0 +1,154 @@
+package com.challer.tpextraction;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Synthetic Target Process User Stories shared by the benchmarks.
+ * <p>
+ * "small" and "medium" are the XML files of the directory fixtures. "huge" is built from "medium" : its description
+ * is repeated up to 1 MB and it has 100 custom fields, like the largest User Stories of Target Process.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public final class Fixtures {
+
+    /**
+     * Size of the description of the huge User Story
+     */
+    private final static int HUGE_DESCRIPTION_SIZE = 1024 * 1024;
+
+    private final static int HUGE_CUSTOM_FIELDS = 100;
+
+    /**
+     * Features of the websites, the User Stories are spread among them
+     */
+    private final static int FEATURES = 50;
+
+    /**
+     * Channel discarding the bytes written, to measure the rendering without the file system
+     */
+    public final static WritableByteChannel DISCARDING_CHANNEL = new WritableByteChannel() {
+        public int write(ByteBuffer source) {
+            final int length = source.remaining();
+            source.position(source.limit());
+            return length;
+        }
+
+        public boolean isOpen() {
+            return true;
+        }
+
+        public void close() {
+        }
+    };
+
+    private Fixtures() {
+    }
+
+    /**
+     * Return the XML content of an User Story.
+     *
+     * @param size - small, medium or huge
+     * @return the XML content
+     * @throws IOException
+     */
+    public static byte[] getUserStoryContent(final String size) throws IOException {
+        if (!"huge".equals(size)) {
+            try (InputStream inputStream = Fixtures.class.getResourceAsStream("/fixtures/us-" + size + ".xml")) {
+                if (inputStream == null) {
+                    throw new IOException("Fixture " + size + " does not exist");
+                }
+                return IOUtils.toByteArray(inputStream);
+            }
+        }
+
+        // The description and the custom fields of the medium User Story are repeated
+        final String medium = new String(getUserStoryContent("medium"), StandardCharsets.UTF_8);
+        final String description = medium.substring(medium.indexOf("<Description>") + "<Description>".length(), medium.indexOf("</Description>"));
+        final StringBuilder hugeDescription = new StringBuilder(HUGE_DESCRIPTION_SIZE + description.length());
+        while (hugeDescription.length() < HUGE_DESCRIPTION_SIZE) {
+            hugeDescription.append(description);
+        }
+        final StringBuilder customFields = new StringBuilder("<CustomFields>\n");
+        for (int i = 0; i < HUGE_CUSTOM_FIELDS; i++) {
+            customFields.append("    <Field Type=\"").append(i % 5 == 0 ? "Date" : "Text").append("\"><Name>Field ").append(i)
+                    .append("</Name><Value>").append(i % 5 == 0 ? "2015-04-01T00:00:00" : "Value of the field " + i).append("</Value></Field>\n");
+        }
+        final String huge = medium.substring(0, medium.indexOf("<Description>") + "<Description>".length())
+                + hugeDescription
+                + medium.substring(medium.indexOf("</Description>"), medium.indexOf("<CustomFields>"))
+                + customFields
+                + medium.substring(medium.indexOf("</CustomFields>"));
+        return huge.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write the XML file of an User Story.
+     *
+     * @param directory - Directory of the file
+     * @param size      - small, medium or huge
+     * @return the XML file
+     * @throws IOException
+     */
+    public static File writeUserStoryFile(final File directory, final String size) throws IOException {
+        final File userStoryFile = new File(directory, "us-" + size + ".xml");
+        FileUtils.writeByteArrayToFile(userStoryFile, getUserStoryContent(size));
+        return userStoryFile;
+    }
+
+    /**
+     * Return the User Stories of a website, built from an User Story whose id, title and feature change.
+     *
+     * @param userStory - User Story copied
+     * @param count     - Number of User Stories
+     * @return the User Stories
+     */
+    public static List<UserStory> getUserStories(final UserStory userStory, final int count) {
+        final List<UserStory> userStories = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final UserStory copy = new UserStory();
+            copy.setId(String.valueOf(10000 + i));
+            copy.setTitle(userStory.getTitle() + " " + i);
+            copy.setDescription(userStory.getDescription());
+            copy.setFeature("Feature " + (i % FEATURES));
+            copy.setState(userStory.getState());
+            copy.setCreationDay(userStory.getCreationDay());
+            copy.setLastModificationDay(userStory.getLastModificationDay());
+            copy.setCustomFields(userStory.getCustomFields());
+            copy.setAttachments(userStory.getAttachments());
+            userStories.add(copy);
+        }
+        return userStories;
+    }
+
+    /**
+     * Classify User Stories by feature, as the listing page does.
+     *
+     * @param userStories - User Stories of the website
+     * @return the User Stories by feature
+     */
+    public static Map<String, List<UserStory>> getFeatureUserStoriesMap(final List<UserStory> userStories) {
+        final Map<String, List<UserStory>> featureUserStoriesMap = new TreeMap<>();
+        for (UserStory userStory : userStories) {
+            List<UserStory> listUSofThisFeature = featureUserStoriesMap.get(userStory.getFeature());
+            if (listUSofThisFeature == null) {
+                listUSofThisFeature = new ArrayList<>();
+                featureUserStoriesMap.put(userStory.getFeature(), listUSofThisFeature);
+            }
+            listUSofThisFeature.add(userStory);
+        }
+        return featureUserStoriesMap;
+    }
+}
@@ -0,0 +1,74 @@
+package com.challer.tpextraction;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pages of User Story rendered and written per second.
+ * <p>
+ * "velocity" renders the page through the template userstory.vm, "compiled" through {@link CompiledPageRenderer}.
+ * Both render the page in a channel discarding the bytes ; the "ToFile" variants write the page in a temporary file,
+ * so the cost of the file system is measured too.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PageRenderingBenchmark {
+
+    private File directory;
+
+    private File pageFile;
+
+    private UserStory userStory;
+
+    private PageRenderer velocityRenderer;
+
+    private PageRenderer compiledRenderer;
+
+    @Setup
+    public void loadFixture() throws IOException, ExtractionException {
+        directory = Files.createTempDirectory("page-rendering").toFile();
+        userStory = new StaxUserStoryReader().read(Fixtures.writeUserStoryFile(directory, "medium"));
+        userStory.setAttachments(new File[]{new File(directory, "attachments/1234-specification.pdf"), new File(directory, "attachments/1234-mockup.png")});
+        pageFile = new File(directory, "us-medium.html");
+
+        velocityRenderer = new VelocityPageRenderer();
+        compiledRenderer = new CompiledPageRenderer();
+    }
+
+    @TearDown
+    public void deleteFiles() {
+        FileUtils.deleteQuietly(directory);
+    }
+
+    @Benchmark
+    public void velocity() throws IOException {
+        velocityRenderer.renderUserStoryPage(userStory, Fixtures.DISCARDING_CHANNEL);
+    }
+
+    @Benchmark
+    public void compiled() throws IOException {
+        compiledRenderer.renderUserStoryPage(userStory, Fixtures.DISCARDING_CHANNEL);
+    }
+
+    @Benchmark
+    public void velocityToFile() throws ExtractionException {
+        velocityRenderer.renderUserStoryPage(userStory, pageFile);
+    }
+
+    @Benchmark
+    public void compiledToFile() throws ExtractionException {
+        compiledRenderer.renderUserStoryPage(userStory, pageFile);
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.challer.tpextraction;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User Stories loaded per second, from XML files of small, medium and huge size.
+ * <p>
+ * "readUserStorieFromXmlFile" is the loading of the website : parsing, rewriting of the description and search of the
+ * attachments. "stax" and "jdom" only parse the file with each reader. "customFields" reads the custom fields of an
+ * User Story already loaded, as the renderers do.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UserStoryLoadingBenchmark {
+
+    @Param({"small", "medium", "huge"})
+    private String fixture;
+
+    private File directory;
+
+    private File userStoryFile;
+
+    private UserStory userStory;
+
+    private WebsiteGenerator generator;
+
+    private UserStoryReader staxReader;
+
+    private UserStoryReader jdomReader;
+
+    @Setup
+    public void loadFixture() throws IOException, ExtractionException {
+        directory = Files.createTempDirectory("user-story-loading").toFile();
+        userStoryFile = Fixtures.writeUserStoryFile(directory, fixture);
+
+        generator = WebsiteGenerator.getInstance("benchmark");
+        staxReader = new StaxUserStoryReader();
+        jdomReader = new JdomUserStoryReader();
+        userStory = staxReader.read(userStoryFile);
+    }
+
+    @TearDown
+    public void deleteFiles() {
+        FileUtils.deleteQuietly(directory);
+    }
+
+    @Benchmark
+    public UserStory readUserStorieFromXmlFile() throws ExtractionException {
+        return generator.readUserStorieFromXmlFile(userStoryFile);
+    }
+
+    @Benchmark
+    public UserStory stax() throws ExtractionException {
+        return staxReader.read(userStoryFile);
+    }
+
+    @Benchmark
+    public UserStory jdom() throws ExtractionException {
+        return jdomReader.read(userStoryFile);
+    }
+
+    @Benchmark
+    public Map<String, String> customFields() {
+        return userStory.getCustomFields();
+    }
+}
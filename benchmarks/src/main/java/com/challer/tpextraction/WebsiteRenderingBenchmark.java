@@ -0,0 +1,67 @@
+package com.challer.tpextraction;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Websites of 1 000, 10 000 and 100 000 User Stories rendered per second, by each renderer.
+ * <p>
+ * "userStoryPages" renders the page of every User Story (template userstory.vm), "listingPage" the listing page
+ * (template uslisting.vm). The pages are written in a channel discarding the bytes, so the file system is not measured.
+ * The User Stories are copies of the medium fixture.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WebsiteRenderingBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int stories;
+
+    @Param({"velocity", "compiled"})
+    private String renderer;
+
+    private List<UserStory> userStories;
+
+    private Map<String, List<UserStory>> featureUserStoriesMap;
+
+    private PageRenderer pageRenderer;
+
+    @Setup
+    public void buildWebsite() throws IOException, ExtractionException {
+        final File directory = Files.createTempDirectory("website-rendering").toFile();
+        try {
+            final UserStory userStory = new StaxUserStoryReader().read(Fixtures.writeUserStoryFile(directory, "medium"));
+            userStories = Fixtures.getUserStories(userStory, stories);
+        } finally {
+            FileUtils.deleteQuietly(directory);
+        }
+        featureUserStoriesMap = Fixtures.getFeatureUserStoriesMap(userStories);
+
+        pageRenderer = "compiled".equals(renderer) ? new CompiledPageRenderer() : new VelocityPageRenderer();
+    }
+
+    @Benchmark
+    public void userStoryPages() throws IOException {
+        for (UserStory userStory : userStories) {
+            pageRenderer.renderUserStoryPage(userStory, Fixtures.DISCARDING_CHANNEL);
+        }
+    }
+
+    @Benchmark
+    public void listingPage() throws IOException {
+        pageRenderer.renderListingPage(featureUserStoriesMap, Fixtures.DISCARDING_CHANNEL);
+    }
+}
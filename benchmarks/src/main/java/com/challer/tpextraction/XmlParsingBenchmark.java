@@ -0,0 +1,74 @@
+package com.challer.tpextraction;
+
+import org.apache.commons.io.IOUtils;
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.filter.Filters;
+import org.jdom2.input.SAXBuilder;
+import org.jdom2.xpath.XPathFactory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-story cost of parsing the XML of an User Story and reading its values.
+ * <p>
+ * "compileOnEachCall" reproduces the former code : a new parser for each User Story and a XPath compilation for each
+ * value read. "precompiled" uses the parsers and expressions of {@link XmlSupport}.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class XmlParsingBenchmark {
+
+    private final static String[] VALUE_PATHS = {XmlSupport.DESCRIPTION, XmlSupport.CREATE_DATE, XmlSupport.MODIFY_DATE};
+
+    private final static String[] ATTRIBUTE_PATHS = {XmlSupport.USER_STORY, XmlSupport.USER_STORY, XmlSupport.FEATURE, XmlSupport.ENTITY_STATE};
+
+    private final static String[] ATTRIBUTES = {"Id", "Name", "Name", "Name"};
+
+    private byte[] userStoryContent;
+
+    @Setup
+    public void loadFixture() throws IOException {
+        try (InputStream inputStream = XmlParsingBenchmark.class.getResourceAsStream("/fixtures/us-medium.xml")) {
+            userStoryContent = IOUtils.toByteArray(inputStream);
+        }
+    }
+
+    @Benchmark
+    public void compileOnEachCall(final Blackhole blackhole) throws Exception {
+        final Document document = new SAXBuilder().build(new ByteArrayInputStream(userStoryContent));
+        for (String path : VALUE_PATHS) {
+            final List<Element> elements = XPathFactory.instance().compile(path, Filters.element()).evaluate(document);
+            blackhole.consume(elements.isEmpty() ? null : elements.get(0).getContent(0).getValue());
+        }
+        for (int i = 0; i < ATTRIBUTE_PATHS.length; i++) {
+            final List<Element> elements = XPathFactory.instance().compile(ATTRIBUTE_PATHS[i], Filters.element()).evaluate(document);
+            blackhole.consume(elements.isEmpty() ? null : elements.get(0).getAttributeValue(ATTRIBUTES[i]));
+        }
+        blackhole.consume(XPathFactory.instance().compile(XmlSupport.CUSTOM_FIELDS, Filters.element()).evaluate(document));
+    }
+
+    @Benchmark
+    public void precompiled(final Blackhole blackhole) throws Exception {
+        final Document document = XmlSupport.getSAXBuilder().build(new ByteArrayInputStream(userStoryContent));
+        for (String path : VALUE_PATHS) {
+            blackhole.consume(XmlSupport.getValueOfElement(document, path));
+        }
+        for (int i = 0; i < ATTRIBUTE_PATHS.length; i++) {
+            blackhole.consume(XmlSupport.getAttributeValueOfElement(document, ATTRIBUTE_PATHS[i], ATTRIBUTES[i]));
+        }
+        blackhole.consume(XmlSupport.getElements(document, XmlSupport.CUSTOM_FIELDS));
+    }
+}
@@ -0,0 +1,225 @@
+package com.challer.tpextraction;
+
+import com.sun.istack.internal.NotNull;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Store of the images and attachments, shared by all the snapshot directories.
+ * <p>
+ * Each content is stored once, in a file named by its SHA-256 hash (blobs\ab\abcdef...). The files of the snapshot
+ * directories are hard links to these blobs, or copies if the file system does not allow hard links.
+ * <p>
+ * An index gives the hash of the content downloaded for a key (an attachment ID, an image URL) : a content already
+ * in the store is linked in the snapshot directory instead of being downloaded again.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public class BlobStore {
+
+    /**
+     * Logger Class
+     */
+    private final static org.slf4j.Logger logger = LoggerFactory.getLogger(BlobStore.class);
+
+    /**
+     * Name of the store directory, in the root directory of extractions
+     */
+    public final static String BLOBS_DIRECTORY = "blobs";
+
+    /**
+     * Name of the index file, in the store directory
+     */
+    private final static String INDEX_FILE = "index.txt";
+
+    /**
+     * Store directory
+     */
+    private final String blobsPath;
+
+    /**
+     * Hash of the content by key
+     */
+    private final ConcurrentMap<String, String> index = new ConcurrentHashMap<>();
+
+    /**
+     * Open the store of a root directory of extractions, and load its index.
+     *
+     * @param outputPath - Root directory of extractions
+     * @throws ExtractionException
+     */
+    public BlobStore(final @NotNull String outputPath) throws ExtractionException {
+        this.blobsPath = outputPath + "\\" + BLOBS_DIRECTORY;
+
+        final File indexFile = new File(blobsPath + "\\" + INDEX_FILE);
+        if (!indexFile.exists()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final int separator = line.lastIndexOf('\t');
+                if (separator > 0) {
+                    index.put(line.substring(0, separator), line.substring(separator + 1));
+                }
+            }
+        } catch (IOException e) {
+            throw new ExtractionException("Failed to read the index of the blob store " + indexFile.getAbsolutePath(), e);
+        }
+        logger.debug("BLOB STORE - {} CONTENTS INDEXED IN {}", index.size(), blobsPath);
+    }
+
+    /**
+     * Put in a file the content already stored for a key.
+     *
+     * @param key  - Key of the content (attachment ID, image URL...)
+     * @param file - File of the snapshot directory
+     * @return true if the content is in the file, false if it has to be downloaded
+     */
+    public boolean link(final @NotNull String key, final @NotNull File file) {
+        final String hash = index.get(key);
+        if (hash == null) {
+            return false;
+        }
+        final File blob = getBlob(hash);
+        if (!blob.exists()) {
+            return false;
+        }
+
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            createLinkOrCopy(file.toPath(), blob.toPath());
+            logger.debug("BLOB STORE - {} LINKED TO {}", key, file.getAbsolutePath());
+            return true;
+        } catch (IOException e) {
+            logger.warn("BLOB STORE - FAILED TO LINK " + blob.getAbsolutePath() + " TO " + file.getAbsolutePath(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Add to the store a content downloaded in a file. If the store already contains this content, the file is
+     * replaced by a link to it.
+     *
+     * @param key  - Key of the content (attachment ID, image URL...)
+     * @param file - File of the snapshot directory
+     * @param hash - SHA-256 hash of the content, or null if it has to be computed
+     * @throws ExtractionException
+     */
+    public void add(final @NotNull String key, final @NotNull File file, final String hash) throws ExtractionException {
+        try {
+            String contentHash = hash;
+            if (contentHash == null) {
+                try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+                    contentHash = DigestUtils.sha256Hex(inputStream);
+                }
+            }
+
+            final Path blob = getBlob(contentHash).toPath();
+            Files.createDirectories(blob.getParent());
+            boolean stored;
+            try {
+                createLinkOrCopy(blob, file.toPath());
+                stored = true;
+            } catch (FileAlreadyExistsException e) {
+                stored = false;
+            }
+
+            // The same content is already stored, the file becomes a link to it
+            if (!stored && !Files.isSameFile(blob, file.toPath())) {
+                final Path linkFile = new File(file.getAbsolutePath() + ".link").toPath();
+                Files.deleteIfExists(linkFile);
+                createLinkOrCopy(linkFile, blob);
+                Files.move(linkFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                logger.debug("BLOB STORE - {} IS THE SAME AS {}", file.getAbsolutePath(), blob);
+            }
+
+            index.put(key, contentHash);
+        } catch (IOException e) {
+            throw new ExtractionException("Failed to add " + file.getAbsolutePath() + " to the blob store", e);
+        }
+    }
+
+    /**
+     * Save the index of the store. The file is replaced at once, so a crash can not leave a partial index.
+     *
+     * @throws ExtractionException
+     */
+    public void save() throws ExtractionException {
+        final File indexFile = new File(blobsPath + "\\" + INDEX_FILE);
+        final File temporaryFile = new File(indexFile.getAbsolutePath() + ".tmp");
+        try {
+            Files.createDirectories(indexFile.getParentFile().toPath());
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temporaryFile), StandardCharsets.UTF_8))) {
+                for (Map.Entry<String, String> entry : new TreeMap<>(index).entrySet()) {
+                    writer.write(entry.getKey() + "\t" + entry.getValue() + "\n");
+                }
+            }
+            Files.move(temporaryFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new ExtractionException("Failed to write the index of the blob store " + indexFile.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * @param hash - SHA-256 hash of a content
+     * @return the blob file of the content
+     */
+    private File getBlob(final @NotNull String hash) {
+        return getBlob(blobsPath, hash);
+    }
+
+    /**
+     * Return the file of a content stored by the extractions of a root directory, without loading the index of the
+     * store.
+     *
+     * @param outputPath - Root directory of extractions
+     * @param hash       - SHA-256 hash of the content
+     * @return the blob file of the content, or null if it is not in the store
+     */
+    public static File getStoredContent(final @NotNull String outputPath, final @NotNull String hash) {
+        if (hash.length() < 2) {
+            return null;
+        }
+        final File blob = getBlob(outputPath + "\\" + BLOBS_DIRECTORY, hash);
+        return blob.isFile() ? blob : null;
+    }
+
+    /**
+     * @param blobsPath - Store directory
+     * @param hash      - SHA-256 hash of a content
+     * @return the blob file of the content
+     */
+    private static File getBlob(final @NotNull String blobsPath, final @NotNull String hash) {
+        return new File(blobsPath + "\\" + hash.substring(0, 2) + "\\" + hash);
+    }
+
+    /**
+     * Create a hard link, or a copy if the file system does not allow hard links.
+     *
+     * @param link   - Link to create
+     * @param target - Existing file
+     * @throws FileAlreadyExistsException if the link already exists
+     * @throws IOException
+     */
+    private static void createLinkOrCopy(final @NotNull Path link, final @NotNull Path target) throws IOException {
+        try {
+            Files.createLink(link, target);
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(target, link);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.challer.tpextraction;
+
+import com.sun.istack.internal.NotNull;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Journal of the User Stories completely saved in a snapshot directory, used to resume an interrupted extraction.
+ * <p>
+ * The journal is an append-only file of manifest entries (see {@link ExtractionManifest}), one line by User Story.
+ * Lines are forced to the disk by batches : after a crash, the User Stories of the last batch are only downloaded
+ * again. A line without line separator is the one being written during the crash, it is ignored.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public class CheckpointJournal implements Closeable {
+
+    /**
+     * Name of the journal file, stored in the snapshot directory
+     */
+    public final static String JOURNAL_FILE = "extraction-journal.txt";
+
+    /**
+     * Output stream of the journal file
+     */
+    private final FileOutputStream outputStream;
+
+    /**
+     * Writer of the journal lines
+     */
+    private final Writer writer;
+
+    /**
+     * Number of entries written between two synchronizations with the disk
+     */
+    private final int syncInterval;
+
+    /**
+     * Number of entries written since the last synchronization
+     */
+    private int unsyncedEntries;
+
+    /**
+     * Open a journal file, the entries are appended to the ones already written.
+     *
+     * @param journalFile  - Journal file
+     * @param syncInterval - Number of entries written between two synchronizations with the disk
+     * @throws ExtractionException
+     */
+    public CheckpointJournal(final @NotNull File journalFile, final int syncInterval) throws ExtractionException {
+        try {
+            outputStream = new FileOutputStream(journalFile, true);
+        } catch (FileNotFoundException e) {
+            throw new ExtractionException("Failed to open the journal " + journalFile.getAbsolutePath(), e);
+        }
+        writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        this.syncInterval = Math.max(1, syncInterval);
+    }
+
+    /**
+     * Read the entries of a journal file.
+     *
+     * @param journalFile - Journal file
+     * @return the entries, empty if the file does not exist
+     * @throws ExtractionException
+     */
+    public static List<ExtractionManifest.Entry> load(final @NotNull File journalFile) throws ExtractionException {
+        final List<ExtractionManifest.Entry> entries = new ArrayList<>();
+        if (!journalFile.exists()) {
+            return entries;
+        }
+
+        final String content;
+        try {
+            content = new String(Files.readAllBytes(journalFile.toPath()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new ExtractionException("Failed to read the journal " + journalFile.getAbsolutePath(), e);
+        }
+
+        // Only complete lines are read
+        int start = 0;
+        int end;
+        while ((end = content.indexOf('\n', start)) >= 0) {
+            final ExtractionManifest.Entry entry = ExtractionManifest.Entry.parse(content.substring(start, end));
+            if (entry != null) {
+                entries.add(entry);
+            }
+            start = end + 1;
+        }
+        return entries;
+    }
+
+    /**
+     * Record an User Story completely saved.
+     *
+     * @param entry - Manifest entry of the User Story
+     * @throws ExtractionException
+     */
+    public synchronized void record(final @NotNull ExtractionManifest.Entry entry) throws ExtractionException {
+        try {
+            writer.write(entry.toLine());
+            writer.write("\n");
+            if (++unsyncedEntries >= syncInterval) {
+                sync();
+            }
+        } catch (IOException e) {
+            throw new ExtractionException("Failed to write the journal entry of the US " + entry.getUserStoryId(), e);
+        }
+    }
+
+    /**
+     * Write the entries recorded and force them to the disk.
+     *
+     * @throws IOException
+     */
+    private void sync() throws IOException {
+        writer.flush();
+        outputStream.getFD().sync();
+        unsyncedEntries = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            writer.close();
+        }
+    }
+}
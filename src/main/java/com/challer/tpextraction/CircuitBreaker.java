@@ -0,0 +1,153 @@
+package com.challer.tpextraction;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * Circuit breaker pausing all the calls to Target Process when too many of them fail.
+ * <p>
+ * The outcomes of the last calls are kept. When the rate of failures reaches the threshold, the circuit is opened :
+ * the callers wait for the pause. Then one call is let through to test the server ; the circuit is closed again if
+ * it succeeds, or opened for another pause if it fails.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public class CircuitBreaker {
+
+    /**
+     * Logger Class
+     */
+    private final static org.slf4j.Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private enum State {CLOSED, OPEN, HALF_OPEN}
+
+    /**
+     * Outcomes of the last calls, true for a failure
+     */
+    private final boolean[] window;
+
+    /**
+     * Rate of failures opening the circuit
+     */
+    private final double threshold;
+
+    /**
+     * Duration of the pause when the circuit is opened (in ms)
+     */
+    private final long pause;
+
+    private State state = State.CLOSED;
+
+    /**
+     * Number of outcomes recorded in the window, up to its size
+     */
+    private int recorded;
+
+    /**
+     * Index of the next outcome in the window
+     */
+    private int next;
+
+    /**
+     * Number of failures in the window
+     */
+    private int failures;
+
+    /**
+     * End of the pause (in ms)
+     */
+    private long openUntil;
+
+    /**
+     * Constructor
+     *
+     * @param windowSize Number of calls whose outcome is kept
+     * @param threshold  Rate of failures opening the circuit, between 0 and 1 (0 to never open it)
+     * @param pause      Duration of the pause when the circuit is opened (in ms)
+     */
+    public CircuitBreaker(final int windowSize, final double threshold, final long pause) {
+        this.window = new boolean[Math.max(1, windowSize)];
+        this.threshold = threshold;
+        this.pause = pause;
+    }
+
+    /**
+     * Wait until a call is allowed.
+     *
+     * @throws InterruptedException
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while (true) {
+            if (state == State.CLOSED) {
+                return;
+            }
+            if (state == State.OPEN) {
+                final long remaining = openUntil - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    // This caller tests the server, the other ones wait for the result
+                    state = State.HALF_OPEN;
+                    return;
+                }
+                wait(remaining);
+            } else {
+                wait();
+            }
+        }
+    }
+
+    /**
+     * Record a call which has succeeded.
+     */
+    public synchronized void recordSuccess() {
+        if (state == State.HALF_OPEN) {
+            logger.info("CIRCUIT BREAKER - CLOSED - TARGET PROCESS ANSWERS AGAIN");
+            state = State.CLOSED;
+            recorded = 0;
+            next = 0;
+            failures = 0;
+            notifyAll();
+            return;
+        }
+        record(false);
+    }
+
+    /**
+     * Record a call which has failed.
+     */
+    public synchronized void recordFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && threshold > 0 && recorded == window.length && failures >= threshold * window.length) {
+            open();
+        }
+    }
+
+    /**
+     * Add an outcome in the window, replacing the oldest one.
+     *
+     * @param failure - true for a failure
+     */
+    private void record(final boolean failure) {
+        if (recorded == window.length && window[next]) {
+            failures--;
+        }
+        window[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % window.length;
+        recorded = Math.min(recorded + 1, window.length);
+    }
+
+    /**
+     * Open the circuit for a pause.
+     */
+    private void open() {
+        logger.warn("CIRCUIT BREAKER - OPEN - CALLS TO TARGET PROCESS PAUSED FOR " + pause + " MS");
+        state = State.OPEN;
+        openUntil = System.currentTimeMillis() + pause;
+        notifyAll();
+    }
+}
@@ -0,0 +1,567 @@
+package com.challer.tpextraction;
+
+import com.sun.istack.internal.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Render the pages of the website without template engine : the templates userstory.vm and uslisting.vm are
+ * compiled by hand into this class, their static parts being encoded in UTF-8 once.
+ * <p>
+ * Velocity resolves each reference of a template by reflection and buffers the whole page in a String. Here the
+ * values are read by direct calls and written straight to the file, see {@link PageWriter}. The pages are the same
+ * as the ones of {@link VelocityPageRenderer}, except that a missing value is rendered as an empty text instead of
+ * the reference name, and that the pages are always encoded in UTF-8 as declared in their head.
+ * <p>
+ * A change of the templates has to be done in this class too.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public class CompiledPageRenderer extends PageRenderer {
+
+    /**
+     * Length of the title displayed in the navigation bar
+     */
+    private final static int NAVIGATION_TITLE_LENGTH = 20;
+
+    private final static byte[] US_HEAD = PageWriter.encode("<!DOCTYPE html>\n"
+            + "<html>\n"
+            + "<head>\n"
+            + "    <meta charset=\"utf-8\">\n"
+            + "    <meta http-equiv=\"X-UA-Compatible\" content=\"IE=edge\">\n"
+            + "    <meta name=\"viewport\" content=\"width=device-width, initial-scale=1\">\n"
+            + "\n"
+            + "    <title>");
+
+    private final static byte[] US_NAVIGATION = PageWriter.encode("</title>\n"
+            + "\n"
+            + "    <!-- Bootstrap core CSS -->\n"
+            + "    <link href=\"bootstrap/css/bootstrap.min.css\" rel=\"stylesheet\">\n"
+            + "\n"
+            + "    <!-- Custom styles for this template -->\n"
+            + "    <link href=\"css/template.css\" rel=\"stylesheet\">\n"
+            + "\n"
+            + "    <!-- Just for debugging purposes. Don't actually copy these 2 lines! -->\n"
+            + "    <!--[if lt IE 9]>\n"
+            + "    <script src=\"bootstrap/assets/ie8-responsive-file-warning.js\"></script><![endif]-->\n"
+            + "    <script src=\"bootstrap/assets/ie-emulation-modes-warning.js\"></script>\n"
+            + "\n"
+            + "    <!-- HTML5 shim and Respond.js IE8 support of HTML5 elements and media queries -->\n"
+            + "    <!--[if lt IE 9]>\n"
+            + "    <script src=\"https://oss.maxcdn.com/html5shiv/3.7.2/html5shiv.min.js\"></script>\n"
+            + "    <script src=\"https://oss.maxcdn.com/respond/1.4.2/respond.min.js\"></script>\n"
+            + "    <![endif]-->\n"
+            + "\n"
+            + "    <!-- Bootstrap core JavaScript\n"
+            + "================================================== -->\n"
+            + "    <!-- Placed at the end of the document so the pages load faster -->\n"
+            + "    <script src=\"bootstrap/js/jquery-2.1.3.min.js\"></script>\n"
+            + "    <script src=\"bootstrap/js/bootstrap.min.js\"></script>\n"
+            + "    <!-- IE10 viewport hack for Surface/desktop Windows 8 bug -->\n"
+            + "    <script src=\"bootstrap/assets/ie10-viewport-bug-workaround.js\"></script>\n"
+            + "    <script src=\"bootstrap/js/bootstrap3-typeahead.min.js\"></script>\n"
+            + "    <script src=\"js/search.js\"></script>\n"
+            + "\n"
+            + "</head>\n"
+            + "\n"
+            + "<body>\n"
+            + "\n"
+            + "<div class=\"navbar navbar-inverse navbar-fixed-top\" role=\"navigation\">\n"
+            + "    <div class=\"navbar-header\">\n"
+            + "        <button type=\"button\" class=\"navbar-toggle\" data-toggle=\"collapse\" data-target=\".navbar-collapse\">\n"
+            + "            <span class=\"sr-only\">Toggle navigation</span>\n"
+            + "            <span class=\"icon-bar\"></span>\n"
+            + "            <span class=\"icon-bar\"></span>\n"
+            + "        </button>\n"
+            + "        <span class=\"navbar-brand\">EASY - Build</span>\n"
+            + "    </div>\n"
+            + "\n"
+            + "    <div class=\"collapse navbar-collapse\">\n"
+            + "\n"
+            + "        <ul class=\"nav navbar-nav\">\n"
+            + "            <li><a href=\"index.html\" rel=\"home\">Home</a></li>\n"
+            + "            <li class=\"active\">\n"
+            + "                <a href=\"#\">#");
+
+    private final static byte[] US_INFORMATION = PageWriter.encode("                </a>\n"
+            + "            </li>\n"
+            + "        </ul>\n"
+            + "        <div class=\"col-sm-3 col-md-3 pull-right\">\n"
+            + "            <form class=\"navbar-form\" role=\"search\">\n"
+            + "                <div class=\"input-group\" id=\"searchbox\">\n"
+            + "                    <input type=\"text\" class=\"form-control\" placeholder=\"Search\" data-provide=\"typeahead\"\n"
+            + "                           name=\"srch-term\"\n"
+            + "                           data-provide=\"typeahead\" data-items=\"15\" id=\"search-box\">\n"
+            + "\n"
+            + "                    <div class=\"input-group-btn\">\n"
+            + "                        <div class=\"btn btn-default\"><i class=\"glyphicon glyphicon-search\"></i></div>\n"
+            + "                    </div>\n"
+            + "                </div>\n"
+            + "            </form>\n"
+            + "        </div>\n"
+            + "    </div>\n"
+            + "</div>\n"
+            + "\n"
+            + "<div class=\"container\">\n"
+            + "\n"
+            + "    <!-- upper section -->\n"
+            + "    <div class=\"row\">\n"
+            + "\n"
+            + "        <div class=\"col-sm-3\">\n"
+            + "            <!-- left -->\n"
+            + "            <h3><i class=\"glyphicon glyphicon-info-sign\"></i> Information</h3>\n"
+            + "            <hr>\n"
+            + "\n"
+            + "            <ul class=\"nav nav-stacked\">\n"
+            + "                <li><span class=\"us-property\">Type:</span> ");
+
+    private final static byte[] US_STATE = PageWriter.encode("</li>\n"
+            + "                <br/>\n"
+            + "                <li><span class=\"us-property\">Entity Sate:</span> ");
+
+    private final static byte[] US_FEATURE = PageWriter.encode("</li>\n"
+            + "                <br/>\n"
+            + "                <li>\n"
+            + "                    <span class=\"us-property\">Feature:</span>\n");
+
+    private final static byte[] US_CREATION_DATE = PageWriter.encode("                </li>\n"
+            + "                <br/>\n"
+            + "                <li><span class=\"us-property\">Creation Date:</span> ");
+
+    private final static byte[] US_MODIFICATION_DATE = PageWriter.encode("</li>\n"
+            + "                <li><span class=\"us-property\">Last Modification Date:</span> ");
+
+    private final static byte[] US_LINKS = PageWriter.encode("</li>\n"
+            + "            </ul>\n"
+            + "\n"
+            + "            <hr>\n"
+            + "\n"
+            + "            <h3><i class=\"glyphicon glyphicon-link\"></i> Links</h3>\n"
+            + "            <hr>\n"
+            + "\n"
+            + "            <ul class=\"nav nav-list\">\n"
+            + "\n");
+
+    private final static byte[] US_CUSTOM_FIELDS = PageWriter.encode("            </ul>\n"
+            + "\n"
+            + "            <hr>\n"
+            + "\n"
+            + "            <h3><i class=\"glyphicon glyphicon-bookmark\"></i> Custom fields <i\n"
+            + "                    class=\"glyphicon glyphicon-sm glyphicon-sort pull-right small-icon\" data-toggle=\"collapse\"\n"
+            + "                    data-target=\"#custom_fields\"></i></h3>\n"
+            + "            <hr>\n"
+            + "\n"
+            + "            <ul class=\"nav nav-list collapse in\" id=\"custom_fields\">\n"
+            + "\n");
+
+    private final static byte[] US_DESCRIPTION_TITLE = PageWriter.encode("                <hr>\n"
+            + "            </ul>\n"
+            + "\n"
+            + "        </div>\n"
+            + "        <!-- /col-3 -->\n"
+            + "\n"
+            + "        <div class=\"col-sm-9\">\n"
+            + "            <h3><i class=\"glyphicon glyphicon glyphicon-pencil\"></i> #");
+
+    private final static byte[] US_DESCRIPTION = PageWriter.encode("</h3>\n"
+            + "            <hr>\n");
+
+    private final static byte[] US_ATTACHMENTS = PageWriter.encode("            <hr>\n"
+            + "            <h3><i class=\"glyphicon glyphicon-tags\"></i>&nbsp;&nbsp;Attachments</h3>\n"
+            + "            <hr>\n"
+            + "            <ul class=\"nav nav-pills\">\n"
+            + "\n");
+
+    private final static byte[] US_FOOT = PageWriter.encode("            </ul>\n"
+            + "            <hr>\n"
+            + "        </div>\n"
+            + "        <!--/col-9-->\n"
+            + "\n"
+            + "    </div>\n"
+            + "    <!--/row-->\n"
+            + "    <!-- /upper section -->\n"
+            + "\n"
+            + "</div>\n"
+            + "<!-- /container -->\n"
+            + "\n"
+            + "<script>\n"
+            + "    // The search index is shared by all the pages, its shards are loaded by js/search.js when they are searched\n"
+            + "    $('#search-box').typeahead({\n"
+            + "        source: function (query, process) {\n"
+            + "            userStoriesSearch.search(query, process);\n"
+            + "        },\n"
+            + "        // The User Stories found by the index are displayed in the order of their ids\n"
+            + "        matcher: function () {\n"
+            + "            return true;\n"
+            + "        },\n"
+            + "        sorter: function (items) {\n"
+            + "            return items;\n"
+            + "        },\n"
+            + "        updater: function (item) {\n"
+            + "            window.location.replace(\"./\" + userStoriesSearch.getPage(item));\n"
+            + "            return item;\n"
+            + "        }\n"
+            + "    });\n"
+            + "</script>\n"
+            + "\n"
+            + "<footer>\n"
+            + "    <div class=\"container\">\n"
+            + "        <div class=\"text-center\">2015 <a href=\"https://github.com/cyrilhaller/TargetProcessExtraction\">Target Process\n"
+            + "            Extractor</a></div>\n"
+            + "    </div>\n"
+            + "</footer>\n"
+            + "\n"
+            + "</body>\n"
+            + "</html>");
+
+    private final static byte[] LISTING_HEAD = PageWriter.encode("<!DOCTYPE html>\n"
+            + "<html>\n"
+            + "<head>\n"
+            + "    <meta charset=\"utf-8\">\n"
+            + "    <meta http-equiv=\"X-UA-Compatible\" content=\"IE=edge\">\n"
+            + "    <meta name=\"viewport\" content=\"width=device-width, initial-scale=1\">\n"
+            + "\n"
+            + "    <title>User Stories extracted</title>\n"
+            + "\n"
+            + "    <!-- Bootstrap core CSS -->\n"
+            + "    <link href=\"bootstrap/css/bootstrap.min.css\" rel=\"stylesheet\">\n"
+            + "\n"
+            + "    <!-- Custom styles for this template -->\n"
+            + "    <link href=\"css/template.css\" rel=\"stylesheet\">\n"
+            + "\n"
+            + "    <!-- Just for debugging purposes. Don't actually copy these 2 lines! -->\n"
+            + "    <!--[if lt IE 9]>\n"
+            + "    <script src=\"bootstrap/assets/ie8-responsive-file-warning.js\"></script><![endif]-->\n"
+            + "    <script src=\"bootstrap/assets/ie-emulation-modes-warning.js\"></script>\n"
+            + "\n"
+            + "    <!-- HTML5 shim and Respond.js IE8 support of HTML5 elements and media queries -->\n"
+            + "    <!--[if lt IE 9]>\n"
+            + "    <script src=\"https://oss.maxcdn.com/html5shiv/3.7.2/html5shiv.min.js\"></script>\n"
+            + "    <script src=\"https://oss.maxcdn.com/respond/1.4.2/respond.min.js\"></script>\n"
+            + "    <![endif]-->\n"
+            + "\n"
+            + "    <!-- Bootstrap core JavaScript\n"
+            + "================================================== -->\n"
+            + "    <!-- Placed at the end of the document so the pages load faster -->\n"
+            + "    <script src=\"bootstrap/js/jquery-2.1.3.min.js\"></script>\n"
+            + "    <script src=\"bootstrap/js/bootstrap.min.js\"></script>\n"
+            + "    <!-- IE10 viewport hack for Surface/desktop Windows 8 bug -->\n"
+            + "    <script src=\"bootstrap/assets/ie10-viewport-bug-workaround.js\"></script>\n"
+            + "    <script src=\"bootstrap/js/bootstrap3-typeahead.min.js\"></script>\n"
+            + "    <script src=\"js/search.js\"></script>\n"
+            + "\n"
+            + "</head>\n"
+            + "\n"
+            + "<body>\n"
+            + "\n"
+            + "<div class=\"navbar navbar-inverse navbar-fixed-top\" role=\"navigation\">\n"
+            + "    <div class=\"navbar-header\">\n"
+            + "        <button type=\"button\" class=\"navbar-toggle\" data-toggle=\"collapse\" data-target=\".navbar-collapse\">\n"
+            + "            <span class=\"sr-only\">Toggle navigation</span>\n"
+            + "            <span class=\"icon-bar\"></span>\n"
+            + "            <span class=\"icon-bar\"></span>\n"
+            + "        </button>\n"
+            + "        <span class=\"navbar-brand\">EASY - Build</span>\n"
+            + "    </div>\n"
+            + "\n"
+            + "    <div class=\"collapse navbar-collapse\">\n"
+            + "\n"
+            + "        <ul class=\"nav navbar-nav\">\n"
+            + "            <li class=\"active\"><a href=\"index.html\" rel=\"home\">Home</a></li>\n"
+            + "        </ul>\n"
+            + "        <div class=\"col-sm-3 col-md-3 pull-right\">\n"
+            + "            <form class=\"navbar-form\" role=\"search\">\n"
+            + "                <div class=\"input-group\" id=\"searchbox\">\n"
+            + "                    <input type=\"text\" class=\"form-control\" placeholder=\"Search\" data-provide=\"typeahead\"\n"
+            + "                           name=\"srch-term\"\n"
+            + "                           data-provide=\"typeahead\" data-items=\"15\" id=\"search-box\">\n"
+            + "\n"
+            + "                    <div class=\"input-group-btn\">\n"
+            + "                        <div class=\"btn btn-default\"><i class=\"glyphicon glyphicon-search\"></i></div>\n"
+            + "                    </div>\n"
+            + "                </div>\n"
+            + "            </form>\n"
+            + "        </div>\n"
+            + "    </div>\n"
+            + "</div>\n"
+            + "\n"
+            + "<div class=\"container\">\n"
+            + "\n"
+            + "    <!-- upper section -->\n"
+            + "    <div class=\"row\">\n"
+            + "        <div class=\"col-sm-12\">\n"
+            + "            <h3><i class=\"glyphicon glyphicon glyphicon-list-alt\"></i> User Stories extracted</h3>\n"
+            + "            <hr>\n"
+            + "\n");
+
+    private final static byte[] LISTING_FOOT = PageWriter.encode("\n"
+            + "            <hr>\n"
+            + "        </div>\n"
+            + "        <!--/col-9-->\n"
+            + "\n"
+            + "    </div>\n"
+            + "    <!--/row-->\n"
+            + "    <!-- /upper section -->\n"
+            + "\n"
+            + "</div>\n"
+            + "<!-- /container -->\n"
+            + "\n"
+            + "\n"
+            + "<script>\n"
+            + "    // The search index is shared by all the pages, its shards are loaded by js/search.js when they are searched\n"
+            + "    $('#search-box').typeahead({\n"
+            + "        source: function (query, process) {\n"
+            + "            userStoriesSearch.search(query, process);\n"
+            + "        },\n"
+            + "        // The User Stories found by the index are displayed in the order of their ids\n"
+            + "        matcher: function () {\n"
+            + "            return true;\n"
+            + "        },\n"
+            + "        sorter: function (items) {\n"
+            + "            return items;\n"
+            + "        },\n"
+            + "        updater: function (item) {\n"
+            + "            window.location.replace(\"./\" + userStoriesSearch.getPage(item));\n"
+            + "            return item;\n"
+            + "        }\n"
+            + "    });\n"
+            + "</script>\n"
+            + "\n"
+            + "\n"
+            + "<footer>\n"
+            + "    <div class=\"container\">\n"
+            + "        <div class=\"text-center\">2015 <a href=\"https://github.com/cyrilhaller/TargetProcessExtraction\">Target Process\n"
+            + "            Extractor</a></div>\n"
+            + "    </div>\n"
+            + "</footer>\n"
+            + "\n"
+            + "\n"
+            + "</body>\n"
+            + "</html>");
+
+    private final static byte[] INDENTATION = PageWriter.encode("                ");
+
+    private final static byte[] NEW_LINE = PageWriter.encode("\n");
+
+    private final static byte[] ID_SEPARATOR = PageWriter.encode(" - ");
+
+    private final static byte[] NAVIGATION_TITLE_START = PageWriter.encode(" -\n                        ");
+
+    private final static byte[] NAVIGATION_TITLE_ELLIPSIS = PageWriter.encode("...");
+
+    private final static byte[] FEATURE_START = PageWriter.encode("                        ");
+
+    private final static byte[] NO_CUSTOM_FIELD = PageWriter.encode("                    No Custom Field\n");
+
+    private final static byte[] CUSTOM_FIELD_START = PageWriter.encode("                    <li><span class=\"us-property\">");
+
+    private final static byte[] CUSTOM_FIELD_SEPARATOR = PageWriter.encode(":</span> ");
+
+    private final static byte[] CUSTOM_FIELD_END = PageWriter.encode("</li>\n"
+            + "                    <br/>\n");
+
+    private final static byte[] NO_LINK = PageWriter.encode("                    No link\n");
+
+    private final static byte[] LINK_START = PageWriter.encode("<a href=\"");
+
+    private final static byte[] LINK_TITLE = PageWriter.encode("\">#");
+
+    private final static byte[] LINK_END = PageWriter.encode("</a>");
+
+    private final static byte[] ID_START = PageWriter.encode("#");
+
+    private final static byte[] NO_ATTACHMENT = PageWriter.encode("                    No attachment\n");
+
+    private final static byte[] ATTACHMENT_START = PageWriter.encode("                    <li><a href=\"");
+
+    private final static byte[] ATTACHMENT_SEPARATOR = PageWriter.encode("\"><i class=\"glyphicon glyphicon-file\"></i> ");
+
+    private final static byte[] ATTACHMENT_END = PageWriter.encode("</a></li>\n");
+
+    private final static byte[] FEATURE_BLOCK_START = PageWriter.encode("                <div class=\"row\">\n"
+            + "                    <div class=\"col-sm-12\">\n"
+            + "                        <ul class=\"nav nav-pills\">\n"
+            + "                            <li>\n"
+            + "                                    <span>");
+
+    private final static byte[] NO_FEATURE = PageWriter.encode("No feature");
+
+    private final static byte[] FEATURE_USER_STORIES_START = PageWriter.encode("</span>\n"
+            + "                                <ul>\n");
+
+    private final static byte[] FEATURE_USER_STORY_START = PageWriter.encode("                                        <li><a href=\"");
+
+    private final static byte[] FEATURE_USER_STORY_LINK = PageWriter.encode("\">");
+
+    private final static byte[] FEATURE_USER_STORY_END = PageWriter.encode("</a></li>\n");
+
+    private final static byte[] FEATURE_BLOCK_END = PageWriter.encode("                                </ul>\n"
+            + "                            </li>\n"
+            + "                        </ul>\n"
+            + "                    </div>\n"
+            + "                </div>\n"
+            + "                <br/>\n");
+
+    @Override
+    public void renderUserStoryPage(final @NotNull UserStory userStory, final @NotNull WritableByteChannel channel) throws IOException {
+        final PageWriter writer = new PageWriter(channel);
+
+        // Head
+        writer.write(US_HEAD);
+        writer.write(userStory.getId());
+        writer.write(ID_SEPARATOR);
+        writer.write(userStory.getTitle());
+
+        // Navigation bar, with the beginning of the title
+        writer.write(US_NAVIGATION);
+        writer.write(userStory.getId());
+        writer.write(NAVIGATION_TITLE_START);
+        final String title = userStory.getTitle();
+        if (title != null && title.length() > NAVIGATION_TITLE_LENGTH) {
+            writer.write(title.substring(0, NAVIGATION_TITLE_LENGTH));
+            writer.write(NAVIGATION_TITLE_ELLIPSIS);
+        } else {
+            writer.write(title);
+        }
+        writer.write(NEW_LINE);
+
+        // Information
+        writer.write(US_INFORMATION);
+        writer.write(userStory.getType().getLabel());
+        writer.write(US_STATE);
+        writer.write(userStory.getState());
+        writer.write(US_FEATURE);
+        if (userStory.getFeature() != null) {
+            writer.write(FEATURE_START);
+            writer.write(userStory.getFeature());
+            writer.write(NEW_LINE);
+        }
+        writer.write(US_CREATION_DATE);
+        writer.write(userStory.getCreationDate());
+        writer.write(US_MODIFICATION_DATE);
+        writer.write(userStory.getLastModificationDate());
+
+        // Links to the entity this one belongs to, and to the entities belonging to it
+        writer.write(US_LINKS);
+        final List<UserStory> children = userStory.getChildren();
+        if (userStory.getParentId() == null && children == null) {
+            writer.write(NO_LINK);
+        }
+        if (userStory.getParentId() != null) {
+            writer.write(CUSTOM_FIELD_START);
+            writer.write(userStory.getParentType().getLabel());
+            writer.write(CUSTOM_FIELD_SEPARATOR);
+            if (userStory.getParentPageName() != null) {
+                writer.write(LINK_START);
+                writer.write(userStory.getParentPageName());
+                writer.write(LINK_TITLE);
+            } else {
+                writer.write(ID_START);
+            }
+            writer.write(userStory.getParentId());
+            writer.write(ID_SEPARATOR);
+            writer.write(userStory.getParentName());
+            if (userStory.getParentPageName() != null) {
+                writer.write(LINK_END);
+            }
+            writer.write(CUSTOM_FIELD_END);
+        }
+        if (children != null) {
+            for (UserStory child : children) {
+                writer.write(CUSTOM_FIELD_START);
+                writer.write(child.getType().getLabel());
+                writer.write(CUSTOM_FIELD_SEPARATOR);
+                writer.write(LINK_START);
+                writer.write(child.getPageName());
+                writer.write(LINK_TITLE);
+                writer.write(child.getId());
+                writer.write(ID_SEPARATOR);
+                writer.write(child.getTitle());
+                writer.write(ATTACHMENT_END);
+            }
+        }
+
+        // Custom fields
+        writer.write(US_CUSTOM_FIELDS);
+        final Map<String, String> customFields = userStory.getCustomFields();
+        if (customFields != null) {
+            if (customFields.isEmpty()) {
+                writer.write(NO_CUSTOM_FIELD);
+            }
+            for (Map.Entry<String, String> customField : customFields.entrySet()) {
+                writer.write(CUSTOM_FIELD_START);
+                writer.write(customField.getKey());
+                writer.write(CUSTOM_FIELD_SEPARATOR);
+                writer.write(customField.getValue());
+                writer.write(CUSTOM_FIELD_END);
+            }
+        }
+
+        // Description
+        writer.write(US_DESCRIPTION_TITLE);
+        writer.write(userStory.getId());
+        writer.write(ID_SEPARATOR);
+        writer.write(userStory.getTitle());
+        writer.write(US_DESCRIPTION);
+        if (userStory.getDescription() != null) {
+            writer.write(INDENTATION);
+            writer.write(userStory.getDescription());
+            writer.write(NEW_LINE);
+        }
+
+        // Attachments
+        writer.write(US_ATTACHMENTS);
+        final File[] attachments = userStory.getAttachments();
+        if (attachments != null) {
+            if (attachments.length == 0) {
+                writer.write(NO_ATTACHMENT);
+            }
+            for (File attachment : attachments) {
+                writer.write(ATTACHMENT_START);
+                writer.write(attachment.toString());
+                writer.write(ATTACHMENT_SEPARATOR);
+                writer.write(attachment.getName());
+                writer.write(ATTACHMENT_END);
+            }
+        }
+
+        writer.write(US_FOOT);
+        writer.flush();
+    }
+
+    @Override
+    public void renderListingPage(final @NotNull Map<String, List<UserStory>> featureUserStoriesMap, final @NotNull WritableByteChannel channel) throws IOException {
+        final PageWriter writer = new PageWriter(channel);
+        writer.write(LISTING_HEAD);
+
+        // One block by feature
+        for (Map.Entry<String, List<UserStory>> userStoriesEntry : featureUserStoriesMap.entrySet()) {
+            writer.write(FEATURE_BLOCK_START);
+            if (userStoriesEntry.getKey() != null && !userStoriesEntry.getKey().isEmpty()) {
+                writer.write(userStoriesEntry.getKey());
+            } else {
+                writer.write(NO_FEATURE);
+            }
+            writer.write(FEATURE_USER_STORIES_START);
+            for (UserStory userStory : userStoriesEntry.getValue()) {
+                writer.write(FEATURE_USER_STORY_START);
+                writer.write(userStory.getPageName());
+                writer.write(FEATURE_USER_STORY_LINK);
+                writer.write(userStory.getDisplayedType());
+                writer.write(ID_START);
+                writer.write(userStory.getId());
+                writer.write(ID_SEPARATOR);
+                writer.write(userStory.getTitle());
+                writer.write(FEATURE_USER_STORY_END);
+            }
+            writer.write(FEATURE_BLOCK_END);
+        }
+
+        writer.write(LISTING_FOOT);
+        writer.flush();
+    }
+}
@@ -34,6 +34,23 @@ public class ConfigurationProperties {
         return getPropertiesResource().getProperty(key);
     }
 
+    /**
+     * Return the value of a key written the configuration file, or a default value if the key is missing
+     *
+     * @param key          String - Key of the property
+     * @param defaultValue String - Value returned when the key is missing or empty
+     * @return String - Value of the property
+     */
+    public static
+    @NotNull
+    String getProperty(@NotNull String key, @NotNull String defaultValue) {
+        final String value = getPropertiesResource().getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        return value.trim();
+    }
+
     /**
      * Return properties of configuration file
      *
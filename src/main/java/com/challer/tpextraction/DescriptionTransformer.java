@@ -0,0 +1,299 @@
+package com.challer.tpextraction;
+
+import com.sun.istack.internal.NotNull;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Rewrite the description of an User Story for the website, in a single pass over the text :
+ * <ul>
+ * <li>a link to another entity, "id&amp;#58;" followed by its number, becomes a link to its page,</li>
+ * <li>the source of an image saved by the extraction becomes the path of its file, relative to the page.</li>
+ * </ul>
+ * The text is read once from the start to the end, without regular expression, so the time is linear in the length
+ * of the description. A transformer only reads the types of the entities of the website, it is shared by all the
+ * threads generating pages.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public class DescriptionTransformer {
+
+    /**
+     * Start of a link to another User Story, "id:" with the colon encoded
+     */
+    private final static String US_LINK = "id&#58;";
+
+    /**
+     * Maximum length of an entity skipped between "id&#58;" and the number of the User Story, like "&amp;nbsp;"
+     */
+    private final static int MAX_ENTITY_LENGTH = 10;
+
+    private final String baseUrl;
+
+    private final String nonSecureBaseUrl;
+
+    /**
+     * Types of the entities of the website by ID, an entity without type is an User Story
+     */
+    private final Map<String, EntityType> entityTypes;
+
+    /**
+     * Constructor of a transformer linking all the entities to User Stories pages
+     *
+     * @param baseUrl          Base URL of Target Process, removed from the source of the images
+     * @param nonSecureBaseUrl Non-secure base URL of Target Process, removed from the source of the images
+     */
+    public DescriptionTransformer(final String baseUrl, final String nonSecureBaseUrl) {
+        this(baseUrl, nonSecureBaseUrl, Collections.<String, EntityType>emptyMap());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param baseUrl          Base URL of Target Process, removed from the source of the images
+     * @param nonSecureBaseUrl Non-secure base URL of Target Process, removed from the source of the images
+     * @param entityTypes      Types of the entities of the website by ID, thread-safe as it is read by all the threads
+     */
+    public DescriptionTransformer(final String baseUrl, final String nonSecureBaseUrl, final @NotNull Map<String, EntityType> entityTypes) {
+        this.baseUrl = baseUrl;
+        this.nonSecureBaseUrl = nonSecureBaseUrl;
+        this.entityTypes = entityTypes;
+    }
+
+    /**
+     * Rewrite a description.
+     *
+     * @param description - Description of the User Story
+     * @return the description rewritten
+     */
+    public String transform(final @NotNull String description) {
+        final int length = description.length();
+        final StringBuilder result = new StringBuilder(length + length / 16);
+
+        // Text not rewritten is copied by blocks, from the end of the previous token
+        int copied = 0;
+        int i = 0;
+        while (i < length) {
+            final char c = description.charAt(i);
+            int next = -1;
+            if (c == '<' && isImageTag(description, i)) {
+                result.append(description, copied, i);
+                next = appendImageTag(description, i, result);
+            } else if (c == 'i' && description.startsWith(US_LINK, i)) {
+                result.append(description, copied, i);
+                next = appendUserStoryLink(description, i, result);
+            }
+
+            if (next < 0) {
+                i++;
+            } else {
+                copied = next;
+                i = next;
+            }
+        }
+        result.append(description, copied, length);
+
+        return result.toString();
+    }
+
+    /**
+     * Append the link to another entity : "id&amp;#58;", the characters before the number (spaces, entities) and the
+     * number are replaced by a link to the page of the entity. Without number before the next tag, the text is copied
+     * as it is.
+     *
+     * @param description - Description of the User Story
+     * @param start       - Index of "id&amp;#58;"
+     * @param result      - Description rewritten
+     * @return the index following the link
+     */
+    private int appendUserStoryLink(final @NotNull String description, final int start, final @NotNull StringBuilder result) {
+        final int length = description.length();
+
+        // Skip what separates "id:" from the number, the digits of an entity are not a number
+        int i = start + US_LINK.length();
+        while (i < length && !isDigit(description.charAt(i)) && description.charAt(i) != '<') {
+            if (description.charAt(i) == '&') {
+                i = skipEntity(description, i);
+            } else {
+                i++;
+            }
+        }
+
+        int end = i;
+        while (end < length && isDigit(description.charAt(end))) {
+            end++;
+        }
+
+        if (end == i) {
+            result.append(description, start, i);
+        } else {
+            final String id = description.substring(i, end);
+            final EntityType type = entityTypes.get(id);
+            result.append("<a href=\"").append((type == null ? EntityType.USER_STORY : type).getPageName(id)).append("\">").append(id).append("</a>");
+        }
+        return end;
+    }
+
+    /**
+     * Append an image tag, its source being rewritten if it is an image saved by the extraction.
+     *
+     * @param description - Description of the User Story
+     * @param start       - Index of the tag
+     * @param result      - Description rewritten
+     * @return the index following the tag
+     */
+    private int appendImageTag(final @NotNull String description, final int start, final @NotNull StringBuilder result) {
+        final int length = description.length();
+
+        // Attributes are read until the end of the tag, a quoted value may contain '>'
+        int copied = start;
+        int i = start + 4;
+        while (i < length && description.charAt(i) != '>') {
+            final char c = description.charAt(i);
+            if (!isNameCharacter(c)) {
+                i++;
+                continue;
+            }
+
+            // Name of the attribute
+            final int nameStart = i;
+            while (i < length && isNameCharacter(description.charAt(i))) {
+                i++;
+            }
+            final int nameEnd = i;
+            while (i < length && Character.isWhitespace(description.charAt(i))) {
+                i++;
+            }
+            if (i >= length || description.charAt(i) != '=') {
+                continue;
+            }
+            i++;
+            while (i < length && Character.isWhitespace(description.charAt(i))) {
+                i++;
+            }
+            if (i >= length) {
+                break;
+            }
+
+            // Value of the attribute, quoted or not
+            final int valueStart;
+            final int valueEnd;
+            final char quote = description.charAt(i);
+            if (quote == '"' || quote == '\'') {
+                valueStart = i + 1;
+                final int end = description.indexOf(quote, valueStart);
+                valueEnd = end < 0 ? length : end;
+                i = end < 0 ? length : end + 1;
+            } else {
+                valueStart = i;
+                while (i < length && !Character.isWhitespace(description.charAt(i)) && description.charAt(i) != '>') {
+                    i++;
+                }
+                valueEnd = i;
+            }
+
+            if (nameEnd - nameStart == 3 && description.regionMatches(true, nameStart, "src", 0, 3)) {
+                result.append(description, copied, valueStart);
+                appendImageSource(description.substring(valueStart, valueEnd), result);
+                copied = valueEnd;
+            }
+        }
+
+        final int end = i < length ? i + 1 : length;
+        result.append(description, copied, end);
+        return end;
+    }
+
+    /**
+     * Append the source of an image. The images saved by the extraction are in the directory "images" of the website,
+     * their path is the source without Target Process base URL, "~" and starting "/". As the name of the file is the
+     * source itself, characters having a meaning in an URL (%, #, ? and space) are percent-encoded.
+     *
+     * @param source - Source of the image
+     * @param result - Description rewritten
+     */
+    private void appendImageSource(final @NotNull String source, final @NotNull StringBuilder result) {
+
+        // Same images as the ones saved by the extraction
+        if (source.equals("#") || !source.contains("images/")) {
+            result.append(source);
+            return;
+        }
+
+        String path = source.replace("~", "");
+        if (baseUrl != null && path.startsWith(baseUrl)) {
+            path = path.substring(baseUrl.length());
+        } else if (nonSecureBaseUrl != null && path.startsWith(nonSecureBaseUrl)) {
+            path = path.substring(nonSecureBaseUrl.length());
+        }
+
+        final int length = path.length();
+        int i = 0;
+        while (i < length && path.charAt(i) == '/') {
+            i++;
+        }
+        for (; i < length; i++) {
+            final char c = path.charAt(i);
+            switch (c) {
+                case '%':
+                    result.append("%25");
+                    break;
+                case '#':
+                    result.append("%23");
+                    break;
+                case '?':
+                    result.append("%3F");
+                    break;
+                case ' ':
+                    result.append("%20");
+                    break;
+                default:
+                    result.append(c);
+            }
+        }
+    }
+
+    /**
+     * Check if an image tag starts at an index.
+     *
+     * @param description - Description of the User Story
+     * @param start       - Index of '&lt;'
+     * @return true if it is an image tag
+     */
+    private static boolean isImageTag(final @NotNull String description, final int start) {
+        if (!description.regionMatches(true, start + 1, "img", 0, 3)) {
+            return false;
+        }
+        if (start + 4 >= description.length()) {
+            return false;
+        }
+        final char c = description.charAt(start + 4);
+        return Character.isWhitespace(c) || c == '/' || c == '>';
+    }
+
+    /**
+     * Skip an entity, only its first characters are read so the time stays linear.
+     *
+     * @param description - Description of the User Story
+     * @param start       - Index of '&amp;'
+     * @return the index following the entity, or following '&amp;' if it does not start an entity
+     */
+    private static int skipEntity(final @NotNull String description, final int start) {
+        final int limit = Math.min(description.length(), start + MAX_ENTITY_LENGTH);
+        for (int i = start + 1; i < limit; i++) {
+            if (description.charAt(i) == ';') {
+                return i + 1;
+            }
+        }
+        return start + 1;
+    }
+
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isNameCharacter(final char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c) || c == '-' || c == '_' || c == ':';
+    }
+}
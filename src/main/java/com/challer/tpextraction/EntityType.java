@@ -0,0 +1,194 @@
+package com.challer.tpextraction;
+
+import com.sun.istack.internal.NotNull;
+
+/**
+ * Types of the entities of Target Process which can be extracted, and their mapping : element of their XML content,
+ * collection of the REST service, prefix of their files, and the entity they belong to.
+ * <p>
+ * The REST service of a type is given by "tp.&lt;name&gt;.url" in the configuration file, by default the one of the
+ * User Stories with the collection of the type. The fields downloaded by the collection queries are given by
+ * "tp.&lt;name&gt;.batch.include".
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public enum EntityType {
+
+    USER_STORY("UserStory", "Userstories", "userstory", "us", "User Story", "Feature",
+            "[Id,Name,Description,CreateDate,ModifyDate,EntityState,Feature,CustomFields,Attachments]"),
+
+    BUG("Bug", "Bugs", "bug", "bug", "Bug", "UserStory",
+            "[Id,Name,Description,CreateDate,ModifyDate,EntityState,Feature,UserStory,CustomFields,Attachments]"),
+
+    TASK("Task", "Tasks", "task", "task", "Task", "UserStory",
+            "[Id,Name,Description,CreateDate,ModifyDate,EntityState,UserStory,CustomFields,Attachments]"),
+
+    FEATURE("Feature", "Features", "feature", "feature", "Feature", "Epic",
+            "[Id,Name,Description,CreateDate,ModifyDate,EntityState,Epic,CustomFields,Attachments]"),
+
+    EPIC("Epic", "Epics", "epic", "epic", "Epic", null,
+            "[Id,Name,Description,CreateDate,ModifyDate,EntityState,CustomFields,Attachments]");
+
+    /**
+     * Root element of the XML content of an entity
+     */
+    private final String element;
+
+    /**
+     * Collection of the REST service
+     */
+    private final String collection;
+
+    /**
+     * Name of the type in the configuration file
+     */
+    private final String name;
+
+    /**
+     * Prefix of the XML file and of the page of an entity
+     */
+    private final String prefix;
+
+    /**
+     * Name of the type for display
+     */
+    private final String label;
+
+    /**
+     * Element referencing the entity this one belongs to, null if it belongs to none
+     */
+    private final String parent;
+
+    private final String defaultBatchInclude;
+
+    EntityType(final String element, final String collection, final String name, final String prefix, final String label,
+               final String parent, final String defaultBatchInclude) {
+        this.element = element;
+        this.collection = collection;
+        this.name = name;
+        this.prefix = prefix;
+        this.label = label;
+        this.parent = parent;
+        this.defaultBatchInclude = defaultBatchInclude;
+    }
+
+    public String getElement() {
+        return element;
+    }
+
+    public String getCollection() {
+        return collection;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @return the element referencing the entity this one belongs to, null if it belongs to none
+     */
+    public String getParent() {
+        return parent;
+    }
+
+    /**
+     * @return the type of the entity this one belongs to, null if it belongs to none
+     */
+    public EntityType getParentType() {
+        return parent == null ? null : fromElement(parent);
+    }
+
+    /**
+     * Return the url of the REST service of the type. By default, it is the url of the User Stories with the
+     * collection of the type.
+     *
+     * @return the url
+     */
+    public String getUrl() {
+        final String userStoryUrl = ConfigurationProperties.getProperty("tp.userstory.url");
+        if (this == USER_STORY) {
+            return userStoryUrl;
+        }
+        return ConfigurationProperties.getProperty("tp." + name + ".url",
+                userStoryUrl.substring(0, userStoryUrl.lastIndexOf('/') + 1) + collection);
+    }
+
+    /**
+     * @return the fields of the entities downloaded by the collection queries
+     */
+    public String getBatchInclude() {
+        return ConfigurationProperties.getProperty("tp." + name + ".batch.include", defaultBatchInclude);
+    }
+
+    /**
+     * @param id - Entity ID
+     * @return the name of the XML file of the entity
+     */
+    public String getFileName(final @NotNull String id) {
+        return prefix + "-" + id + ".xml";
+    }
+
+    /**
+     * @param id - Entity ID
+     * @return the name of the page of the entity
+     */
+    public String getPageName(final @NotNull String id) {
+        return prefix + "-" + id + ".html";
+    }
+
+    /**
+     * Return the type of a root element.
+     *
+     * @param element - Name of the element
+     * @return the type, or null if the element is not an entity
+     */
+    public static EntityType fromElement(final String element) {
+        for (EntityType type : values()) {
+            if (type.element.equals(element)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return the type of a XML file or of a page, given by the prefix of its name.
+     *
+     * @param fileName - Name of the file
+     * @return the type, or null if the prefix is not the one of a type
+     */
+    public static EntityType fromFileName(final @NotNull String fileName) {
+        final int separator = fileName.indexOf('-');
+        if (separator < 0) {
+            return null;
+        }
+        final String filePrefix = fileName.substring(0, separator);
+        for (EntityType type : values()) {
+            if (type.prefix.equalsIgnoreCase(filePrefix)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return the type written in the list of the entities to extract : its element, its collection or its name in the
+     * configuration file, in any case.
+     *
+     * @param text - Type written
+     * @return the type, or null if it is unknown
+     */
+    public static EntityType parse(final @NotNull String text) {
+        final String value = text.trim().replace(" ", "");
+        for (EntityType type : values()) {
+            if (type.element.equalsIgnoreCase(value) || type.collection.equalsIgnoreCase(value) || type.name.equalsIgnoreCase(value)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,202 @@
+package com.challer.tpextraction;
+
+import com.sun.istack.internal.NotNull;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Manifest of an extraction : for each User Story, its last modification date, the hash of its content and the
+ * files (artifacts) saved for it in the snapshot directory.
+ * <p>
+ * The manifest is written as a text file, one User Story by line, the fields being separated by tabulations :
+ * <pre>
+ * # snapshot	20150126-1121
+ * 1234	2015-01-26T11:21:53	(sha-256 of the XML content)	us-1234.xml	attachments\1234-spec.pdf
+ * </pre>
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public class ExtractionManifest {
+
+    /**
+     * Name of the manifest file, stored in the root directory of extractions
+     */
+    public final static String MANIFEST_FILE = "extraction-manifest.txt";
+
+    /**
+     * Header line giving the snapshot directory of the extraction
+     */
+    private final static String SNAPSHOT_HEADER = "# snapshot";
+
+    /**
+     * Name of the snapshot directory (Date/Hour of starting extraction)
+     */
+    private final String snapshot;
+
+    /**
+     * Entries by User Story ID
+     */
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param snapshot Name of the snapshot directory
+     */
+    public ExtractionManifest(final @NotNull String snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Load a manifest file.
+     *
+     * @param manifestFile - Manifest file
+     * @return the manifest, or null if the file does not exist
+     * @throws ExtractionException
+     */
+    public static ExtractionManifest load(final @NotNull File manifestFile) throws ExtractionException {
+        if (!manifestFile.exists()) {
+            return null;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifestFile), StandardCharsets.UTF_8))) {
+            final String header = reader.readLine();
+            if (header == null || !header.startsWith(SNAPSHOT_HEADER + "\t")) {
+                throw new ExtractionException("Manifest " + manifestFile.getAbsolutePath() + " is incorrect");
+            }
+
+            final ExtractionManifest manifest = new ExtractionManifest(header.substring(SNAPSHOT_HEADER.length() + 1));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final Entry entry = Entry.parse(line);
+                if (entry != null) {
+                    manifest.put(entry);
+                }
+            }
+            return manifest;
+        } catch (IOException e) {
+            throw new ExtractionException("Failed to read the manifest " + manifestFile.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Save the manifest. The file is replaced at once, so a crash can not leave a partial manifest.
+     *
+     * @param manifestFile - Manifest file
+     * @throws ExtractionException
+     */
+    public void save(final @NotNull File manifestFile) throws ExtractionException {
+        final File temporaryFile = new File(manifestFile.getAbsolutePath() + ".tmp");
+        try {
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temporaryFile), StandardCharsets.UTF_8))) {
+                writer.write(SNAPSHOT_HEADER + "\t" + snapshot + "\n");
+                for (Entry entry : new TreeMap<>(entries).values()) {
+                    writer.write(entry.toLine());
+                    writer.write("\n");
+                }
+            }
+            Files.move(temporaryFile.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new ExtractionException("Failed to write the manifest " + manifestFile.getAbsolutePath(), e);
+        }
+    }
+
+    public String getSnapshot() {
+        return snapshot;
+    }
+
+    public Entry get(final @NotNull String userStoryId) {
+        return entries.get(userStoryId);
+    }
+
+    public void put(final @NotNull Entry entry) {
+        entries.put(entry.getUserStoryId(), entry);
+    }
+
+    /**
+     * Return the most recent modification date of the User Stories of the manifest.
+     * As the dates are given by Target Process, it can be used to query the User Stories modified since.
+     *
+     * @return the modification date, or null if the manifest is empty
+     */
+    public String getLastModifyDate() {
+        String lastModifyDate = null;
+        for (Entry entry : entries.values()) {
+            if (lastModifyDate == null || entry.getModifyDate().compareTo(lastModifyDate) > 0) {
+                lastModifyDate = entry.getModifyDate();
+            }
+        }
+        return lastModifyDate;
+    }
+
+    /**
+     * Manifest entry of an User Story
+     */
+    public static class Entry {
+
+        private final String userStoryId;
+
+        private final String modifyDate;
+
+        private final String hash;
+
+        private final List<String> artifacts;
+
+        public Entry(final @NotNull String userStoryId, final @NotNull String modifyDate, final @NotNull String hash, final @NotNull List<String> artifacts) {
+            this.userStoryId = userStoryId;
+            this.modifyDate = modifyDate;
+            this.hash = hash;
+            this.artifacts = Collections.unmodifiableList(new ArrayList<>(artifacts));
+        }
+
+        /**
+         * Read an entry written by {@link #toLine()}.
+         *
+         * @param line - Line of a manifest or journal file
+         * @return the entry, or null if the line is not an entry
+         */
+        public static Entry parse(final @NotNull String line) {
+            final String[] fields = line.split("\t");
+            if (fields.length < 3 || line.startsWith("#")) {
+                return null;
+            }
+            return new Entry(fields[0], fields[1], fields[2], Arrays.asList(fields).subList(3, fields.length));
+        }
+
+        /**
+         * @return the entry as a line of fields separated by tabulations, without line separator
+         */
+        public String toLine() {
+            final StringBuilder line = new StringBuilder(userStoryId).append('\t').append(modifyDate).append('\t').append(hash);
+            for (String artifact : artifacts) {
+                line.append('\t').append(artifact);
+            }
+            return line.toString();
+        }
+
+        public String getUserStoryId() {
+            return userStoryId;
+        }
+
+        public String getModifyDate() {
+            return modifyDate;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        /**
+         * @return paths of the files saved for the User Story, relative to the snapshot directory
+         */
+        public List<String> getArtifacts() {
+            return artifacts;
+        }
+    }
+}
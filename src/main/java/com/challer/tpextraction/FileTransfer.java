@@ -0,0 +1,82 @@
+package com.challer.tpextraction;
+
+import com.sun.istack.internal.NotNull;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Save downloaded content in files.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public final class FileTransfer {
+
+    /**
+     * Maximum number of bytes transferred by one call to the file channel
+     */
+    private final static long TRANSFER_SIZE = 1024 * 1024;
+
+    private FileTransfer() {
+    }
+
+    /**
+     * Stream a content into a file and return the SHA-256 hash of the content.
+     * <p>
+     * The content is streamed to the file channel in chunks, copied through small buffers but never loaded whole in
+     * memory, and hashed as it is read. It is written in a ".part" file, which one is renamed at once when the last byte is received : a
+     * file which exists is complete.
+     *
+     * @param inputStream - Content to save, not closed by this method
+     * @param file        - File where the content has to be saved
+     * @return SHA-256 hash of the content, in hexadecimal
+     * @throws IOException
+     */
+    public static String transfer(final @NotNull InputStream inputStream, final @NotNull File file) throws IOException {
+
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not available", e);
+        }
+
+        final File partFile = new File(file.getAbsolutePath() + ".part");
+        final File directory = partFile.getParentFile();
+        if (directory != null) {
+            FileUtils.forceMkdir(directory);
+        }
+
+        try {
+            final ReadableByteChannel source = Channels.newChannel(new DigestInputStream(inputStream, digest));
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(partFile, "rw")) {
+                final FileChannel target = randomAccessFile.getChannel();
+                target.truncate(0);
+                long position = 0;
+                long transferred;
+                while ((transferred = target.transferFrom(source, position, TRANSFER_SIZE)) > 0) {
+                    position += transferred;
+                }
+                RunMetrics.getInstance().addBytesWritten(position);
+            }
+            Files.move(partFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(partFile);
+            throw e;
+        }
+
+        return Hex.encodeHexString(digest.digest());
+    }
+}
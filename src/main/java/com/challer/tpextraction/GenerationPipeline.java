@@ -0,0 +1,228 @@
+package com.challer.tpextraction;
+
+import com.sun.istack.internal.NotNull;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Generate the website while User Stories are extracted.
+ * <p>
+ * User Stories go through two stages, linked by bounded queues : loading of the XML file, then generation of the HTML
+ * page. When a queue is full, the previous stage waits, so the extraction is slowed down rather than the memory
+ * filled. The pages shared by the User Stories are generated by {@link #finish()}, once the extraction is done.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public class GenerationPipeline implements UserStoryListener {
+
+    /**
+     * Logger Class
+     */
+    private final static org.slf4j.Logger logger = LoggerFactory.getLogger(GenerationPipeline.class);
+
+    /**
+     * Marker of the end of the files to load
+     */
+    private final static File END_OF_FILES = new File("");
+
+    /**
+     * Marker of the end of the User Stories to generate
+     */
+    private final static UserStory END_OF_USER_STORIES = new UserStory();
+
+    /**
+     * Generator of the pages
+     */
+    private final WebsiteGenerator generator;
+
+    /**
+     * Number of threads of each stage
+     */
+    private final int parallelism;
+
+    /**
+     * XML files saved by the extraction, waiting to be loaded
+     */
+    private final BlockingQueue<File> filesQueue;
+
+    /**
+     * User Stories loaded, waiting for their page to be generated
+     */
+    private final BlockingQueue<UserStory> userStoriesQueue;
+
+    /**
+     * User Stories loaded by XML file, sorted as the files listed by {@link WebsiteGenerator#generateHTML()}
+     */
+    private final ConcurrentMap<File, UserStory> userStories = new ConcurrentSkipListMap<>();
+
+    /**
+     * Number of loading threads still running
+     */
+    private final AtomicInteger runningLoaders;
+
+    /**
+     * First failure of the stages
+     */
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+    /**
+     * Threads of the stages
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Constructor, the stages are started at once
+     *
+     * @param generator   - Generator of the pages
+     * @param parallelism - Number of threads of each stage
+     * @param queueSize   - Capacity of the queues between the stages
+     */
+    GenerationPipeline(final @NotNull WebsiteGenerator generator, final int parallelism, final int queueSize) {
+        this.generator = generator;
+        this.parallelism = parallelism;
+        this.filesQueue = new ArrayBlockingQueue<>(queueSize);
+        this.userStoriesQueue = new ArrayBlockingQueue<>(queueSize);
+        this.runningLoaders = new AtomicInteger(parallelism);
+
+        executor = Executors.newFixedThreadPool(parallelism * 2);
+        for (int i = 0; i < parallelism; i++) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    load();
+                }
+            });
+            executor.execute(new Runnable() {
+                public void run() {
+                    generate();
+                }
+            });
+        }
+    }
+
+    @Override
+    public void userStorySaved(final @NotNull File userStoryFile) throws ExtractionException {
+        try {
+            filesQueue.put(userStoryFile);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExtractionException("HTML generation interrupted", e);
+        }
+    }
+
+    /**
+     * Wait for the pages of the User Stories saved, then generate the pages shared by the User Stories.
+     *
+     * @throws ExtractionException
+     * @throws IOException
+     */
+    public void finish() throws ExtractionException, IOException {
+        try {
+            for (int i = 0; i < parallelism; i++) {
+                filesQueue.put(END_OF_FILES);
+            }
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.debug("PIPELINE - WAITING FOR HTML PAGES - {} US TO LOAD - {} US TO GENERATE", filesQueue.size(), userStoriesQueue.size());
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            throw new ExtractionException("HTML generation interrupted", e);
+        }
+
+        final Exception e = failure.get();
+        if (e instanceof ExtractionException) {
+            throw (ExtractionException) e;
+        }
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        }
+        if (e != null) {
+            throw new ExtractionException("Failed to generate the website", e);
+        }
+
+        generator.finishWebsite(new ArrayList<>(userStories.values()));
+    }
+
+    /**
+     * Stop the stages without generating the pages left, when the extraction has failed.
+     */
+    public void abort() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Loading stage : load the XML files until the end marker.
+     */
+    private void load() {
+        try {
+            File userStoryFile;
+            while ((userStoryFile = filesQueue.take()) != END_OF_FILES) {
+                if (failure.get() != null) {
+                    continue;
+                }
+                try {
+                    logger.debug("START LOADING US {}", userStoryFile.getAbsolutePath());
+
+                    final UserStory userStory = generator.readUserStorieFromXmlFile(userStoryFile);
+                    userStories.put(userStoryFile, userStory);
+                    userStoriesQueue.put(userStory);
+
+                    logger.debug("LOADING ARE FINISHED FOR US {}", userStoryFile.getAbsolutePath());
+                } catch (ExtractionException | RuntimeException e) {
+                    fail(e);
+                }
+            }
+
+            // The last loader tells the generating threads that no more User Story will come
+            if (runningLoaders.decrementAndGet() == 0) {
+                for (int i = 0; i < parallelism; i++) {
+                    userStoriesQueue.put(END_OF_USER_STORIES);
+                }
+            }
+        } catch (InterruptedException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Generating stage : generate the HTML pages until the end marker.
+     */
+    private void generate() {
+        try {
+            UserStory userStory;
+            while ((userStory = userStoriesQueue.take()) != END_OF_USER_STORIES) {
+                if (failure.get() != null) {
+                    continue;
+                }
+                try {
+                    logger.debug("START GENERATE HTML PAGE FOR US {}", userStory.getId());
+
+                    generator.generateHtmlFromUserStory(userStory);
+
+                    logger.debug("END GENERATE HTML PAGE FOR US {}", userStory.getId());
+                } catch (ExtractionException | IOException | RuntimeException e) {
+                    fail(e);
+                }
+            }
+        } catch (InterruptedException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Keep the first failure of the stages, the next User Stories are skipped.
+     *
+     * @param e - Failure
+     */
+    private void fail(final @NotNull Exception e) {
+        if (failure.compareAndSet(null, e)) {
+            logger.error("Failed to generate the website", e);
+        }
+    }
+}
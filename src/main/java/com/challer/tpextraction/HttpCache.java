@@ -0,0 +1,394 @@
+package com.challer.tpextraction;
+
+import com.sun.istack.internal.NotNull;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * On-disk cache of the HTTP responses of Target Process, used to send conditional requests.
+ * <p>
+ * For each URL, the body of the last response is kept with its validators (ETag, Last-Modified). They are sent back
+ * with the next request of the URL : if the resource has not changed, the server only answers "304 Not Modified"
+ * and the body is taken from the cache. The images and attachments are already kept by the {@link BlobStore}, so
+ * only the hash of their content is cached with their validators, not their body.
+ * <p>
+ * The size of the cache is bounded, the least recently used responses are evicted first. The order of use is kept
+ * between extractions through the modification date of the metadata files. A failure of the cache never fails a
+ * download : the response is just not cached.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public class HttpCache {
+
+    /**
+     * Logger Class
+     */
+    private final static org.slf4j.Logger logger = LoggerFactory.getLogger(HttpCache.class);
+
+    /**
+     * Name of the cache directory, in the root directory of extractions
+     */
+    public final static String CACHE_DIRECTORY = "http-cache";
+
+    private final static String BODY_EXTENSION = ".body";
+
+    private final static String METADATA_EXTENSION = ".meta";
+
+    private final static String URL_PROPERTY = "url";
+
+    private final static String ETAG_PROPERTY = "etag";
+
+    private final static String LAST_MODIFIED_PROPERTY = "last-modified";
+
+    private final static String HASH_PROPERTY = "hash";
+
+    /**
+     * Cache directory
+     */
+    private final String cachePath;
+
+    /**
+     * Maximum size of the responses kept in the cache (in bytes)
+     */
+    private final long maxSize;
+
+    /**
+     * Size of the response by key (its body, or its metadata if the body is in the blob store), from the least to the
+     * most recently used
+     */
+    private final LinkedHashMap<String, Long> sizes = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Size of all the responses kept in the cache (in bytes)
+     */
+    private long totalSize;
+
+    /**
+     * Counter naming the temporary files
+     */
+    private final AtomicLong temporaryFileCounter = new AtomicLong();
+
+    /**
+     * Open a cache directory, the responses already cached are kept.
+     *
+     * @param cachePath - Cache directory
+     * @param maxSize   - Maximum size of the responses kept in the cache (in bytes)
+     */
+    public HttpCache(final @NotNull String cachePath, final long maxSize) {
+        this.cachePath = cachePath;
+        this.maxSize = maxSize;
+
+        final File cacheDirectory = new File(cachePath);
+        try {
+            FileUtils.forceMkdir(cacheDirectory);
+        } catch (IOException e) {
+            logger.warn("HTTP CACHE - FAILED TO CREATE " + cacheDirectory.getAbsolutePath() + " - RESPONSES ARE NOT CACHED", e);
+        }
+
+        // Temporary files left by an interrupted extraction
+        final File[] temporaryFiles = cacheDirectory.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".tmp");
+            }
+        });
+        if (temporaryFiles != null) {
+            for (File temporaryFile : temporaryFiles) {
+                FileUtils.deleteQuietly(temporaryFile);
+            }
+        }
+
+        final File[] metadataFiles = cacheDirectory.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(METADATA_EXTENSION);
+            }
+        });
+        if (metadataFiles == null) {
+            return;
+        }
+
+        // The responses are registered from the least to the most recently used
+        Arrays.sort(metadataFiles, new Comparator<File>() {
+            public int compare(File file1, File file2) {
+                return Long.compare(file1.lastModified(), file2.lastModified());
+            }
+        });
+        synchronized (this) {
+            for (File metadataFile : metadataFiles) {
+                final String key = metadataFile.getName().substring(0, metadataFile.getName().length() - METADATA_EXTENSION.length());
+                final File bodyFile = getBodyFile(key);
+                final long size = bodyFile.exists() ? bodyFile.length() : getBlobEntrySize(metadataFile);
+                if (size >= 0) {
+                    sizes.put(key, size);
+                    totalSize += size;
+                } else {
+                    FileUtils.deleteQuietly(metadataFile);
+                }
+            }
+            evict();
+        }
+        logger.debug("HTTP CACHE - {} RESPONSES ({} BYTES) IN {}", sizes.size(), totalSize, cachePath);
+    }
+
+    /**
+     * Return the response cached for an URL.
+     *
+     * @param url - URL of the resource
+     * @return the response, or null if the URL is not in the cache
+     */
+    public synchronized Entry get(final @NotNull String url) {
+        final String key = getKey(url);
+
+        // The response becomes the most recently used
+        if (sizes.get(key) == null) {
+            return null;
+        }
+
+        final File metadataFile = getMetadataFile(key);
+        final Properties metadata = new Properties();
+        try (Reader reader = new InputStreamReader(new FileInputStream(metadataFile), StandardCharsets.UTF_8)) {
+            metadata.load(reader);
+        } catch (IOException e) {
+            logger.warn("HTTP CACHE - FAILED TO READ " + metadataFile.getAbsolutePath(), e);
+            removeKey(key);
+            return null;
+        }
+        if (!url.equals(metadata.getProperty(URL_PROPERTY))) {
+            return null;
+        }
+
+        // The use is recorded for the next extractions
+        metadataFile.setLastModified(System.currentTimeMillis());
+        final String hash = metadata.getProperty(HASH_PROPERTY);
+        return new Entry(hash == null ? getBodyFile(key) : null, hash, metadata.getProperty(ETAG_PROPERTY), metadata.getProperty(LAST_MODIFIED_PROPERTY));
+    }
+
+    /**
+     * Cache the response of an URL whose body is kept by the blob store : only its validators and the hash of its
+     * content are cached.
+     *
+     * @param url          - URL of the resource
+     * @param hash         - SHA-256 hash of the body of the response
+     * @param eTag         - ETag header of the response, or null
+     * @param lastModified - Last-Modified header of the response, or null
+     */
+    public void putStoredContent(final @NotNull String url, final @NotNull String hash, final String eTag, final String lastModified) {
+        if (!isCacheable(0, eTag, lastModified)) {
+            return;
+        }
+        store(url, null, hash, eTag, lastModified);
+    }
+
+    /**
+     * Cache the response of an URL read as a text.
+     *
+     * @param url          - URL of the resource
+     * @param content      - Body of the response
+     * @param eTag         - ETag header of the response, or null
+     * @param lastModified - Last-Modified header of the response, or null
+     */
+    public void put(final @NotNull String url, final @NotNull String content, final String eTag, final String lastModified) {
+        final byte[] body = content.getBytes(StandardCharsets.UTF_8);
+        if (!isCacheable(body.length, eTag, lastModified)) {
+            return;
+        }
+
+        final File temporaryFile = getTemporaryFile();
+        try {
+            FileUtils.writeByteArrayToFile(temporaryFile, body);
+        } catch (IOException e) {
+            logger.warn("HTTP CACHE - FAILED TO CACHE THE RESPONSE OF " + url, e);
+            FileUtils.deleteQuietly(temporaryFile);
+            return;
+        }
+        store(url, temporaryFile, null, eTag, lastModified);
+    }
+
+    /**
+     * Remove the response cached for an URL, when its body can not be found anymore.
+     *
+     * @param url - URL of the resource
+     */
+    public synchronized void remove(final @NotNull String url) {
+        removeKey(getKey(url));
+    }
+
+    /**
+     * @param size         - Size of the body
+     * @param eTag         - ETag header of the response, or null
+     * @param lastModified - Last-Modified header of the response, or null
+     * @return true if the response can be revalidated and fits in the cache
+     */
+    private boolean isCacheable(final long size, final String eTag, final String lastModified) {
+        return (eTag != null || lastModified != null) && size <= maxSize;
+    }
+
+    /**
+     * Register in the cache a body written in a temporary file, or the hash of a body kept by the blob store, with
+     * its metadata.
+     *
+     * @param url           - URL of the resource
+     * @param temporaryFile - Temporary file of the cache directory containing the body, or null if it is in the blob
+     *                      store
+     * @param hash          - SHA-256 hash of the body kept by the blob store, or null if it is in the cache
+     * @param eTag          - ETag header of the response, or null
+     * @param lastModified  - Last-Modified header of the response, or null
+     */
+    private void store(final @NotNull String url, final File temporaryFile, final String hash, final String eTag, final String lastModified) {
+        final String key = getKey(url);
+
+        final Properties metadata = new Properties();
+        metadata.setProperty(URL_PROPERTY, url);
+        if (hash != null) {
+            metadata.setProperty(HASH_PROPERTY, hash);
+        }
+        if (eTag != null) {
+            metadata.setProperty(ETAG_PROPERTY, eTag);
+        }
+        if (lastModified != null) {
+            metadata.setProperty(LAST_MODIFIED_PROPERTY, lastModified);
+        }
+        final File temporaryMetadataFile = getTemporaryFile();
+        try {
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(temporaryMetadataFile), StandardCharsets.UTF_8)) {
+                metadata.store(writer, null);
+            }
+
+            // Workers fetching the same URL replace the entry in turn
+            synchronized (this) {
+                final Long previousSize = sizes.remove(key);
+                if (previousSize != null) {
+                    totalSize -= previousSize;
+                }
+                if (temporaryFile != null) {
+                    Files.move(temporaryFile.toPath(), getBodyFile(key).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } else {
+                    Files.deleteIfExists(getBodyFile(key).toPath());
+                }
+                Files.move(temporaryMetadataFile.toPath(), getMetadataFile(key).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                final long size = temporaryFile != null ? getBodyFile(key).length() : getMetadataFile(key).length();
+                sizes.put(key, size);
+                totalSize += size;
+                evict();
+            }
+        } catch (IOException e) {
+            logger.warn("HTTP CACHE - FAILED TO CACHE THE RESPONSE OF " + url, e);
+        } finally {
+            if (temporaryFile != null) {
+                FileUtils.deleteQuietly(temporaryFile);
+            }
+            FileUtils.deleteQuietly(temporaryMetadataFile);
+        }
+    }
+
+    /**
+     * Evict the least recently used responses until the cache fits in its maximum size.
+     */
+    private void evict() {
+        final Iterator<Map.Entry<String, Long>> iterator = sizes.entrySet().iterator();
+        while (totalSize > maxSize && iterator.hasNext()) {
+            final Map.Entry<String, Long> entry = iterator.next();
+            iterator.remove();
+            totalSize -= entry.getValue();
+            FileUtils.deleteQuietly(getMetadataFile(entry.getKey()));
+            FileUtils.deleteQuietly(getBodyFile(entry.getKey()));
+            logger.debug("HTTP CACHE - EVICTED {}", entry.getKey());
+        }
+    }
+
+    /**
+     * Size of a response whose body is kept by the blob store : the size of its metadata.
+     *
+     * @param metadataFile - Metadata file of the response
+     * @return the size, or -1 if the response has neither body nor hash
+     */
+    private static long getBlobEntrySize(final @NotNull File metadataFile) {
+        final Properties metadata = new Properties();
+        try (Reader reader = new InputStreamReader(new FileInputStream(metadataFile), StandardCharsets.UTF_8)) {
+            metadata.load(reader);
+        } catch (IOException e) {
+            return -1;
+        }
+        return metadata.getProperty(HASH_PROPERTY) == null ? -1 : metadataFile.length();
+    }
+
+    /**
+     * Remove a response from the cache.
+     *
+     * @param key - Key of the response
+     */
+    private void removeKey(final @NotNull String key) {
+        final Long size = sizes.remove(key);
+        if (size != null) {
+            totalSize -= size;
+        }
+        FileUtils.deleteQuietly(getMetadataFile(key));
+        FileUtils.deleteQuietly(getBodyFile(key));
+    }
+
+    private static String getKey(final @NotNull String url) {
+        return DigestUtils.sha256Hex(url);
+    }
+
+    private File getBodyFile(final @NotNull String key) {
+        return new File(cachePath + "\\" + key + BODY_EXTENSION);
+    }
+
+    private File getMetadataFile(final @NotNull String key) {
+        return new File(cachePath + "\\" + key + METADATA_EXTENSION);
+    }
+
+    private File getTemporaryFile() {
+        return new File(cachePath + "\\" + System.nanoTime() + "-" + temporaryFileCounter.incrementAndGet() + ".tmp");
+    }
+
+    /**
+     * Response cached for an URL
+     */
+    public static class Entry {
+
+        /**
+         * File containing the body of the response, null if it is kept by the blob store
+         */
+        private final File body;
+
+        /**
+         * SHA-256 hash of the body kept by the blob store, null if it is in the cache
+         */
+        private final String hash;
+
+        private final String eTag;
+
+        private final String lastModified;
+
+        public Entry(final File body, final String hash, final String eTag, final String lastModified) {
+            this.body = body;
+            this.hash = hash;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+        }
+
+        public File getBody() {
+            return body;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package com.challer.tpextraction;
+
+import com.sun.istack.internal.NotNull;
+import org.apache.commons.io.FileUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.CookieSpecs;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.cookie.BasicClientCookie;
+import org.apache.http.util.EntityUtils;
+import org.openqa.selenium.Cookie;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Fetch the content of Target Process through direct HTTP calls.
+ * <p>
+ * Connections are pooled and kept alive between calls. The authentification is still done by the browser, then
+ * the session cookies are reused by the HTTP client and the browser is closed.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public class HttpStoryFetcher implements StoryFetcher {
+
+    /**
+     * Logger Class
+     */
+    private final static org.slf4j.Logger logger = LoggerFactory.getLogger(HttpStoryFetcher.class);
+
+    /**
+     * Characters of the Target Process URLs (where, include...) which are not allowed in an URI
+     */
+    private final static String UNSAFE_URI_CHARACTERS = " \"<>[]{}|\\^`";
+
+    /**
+     * Directory where the browser downloads attachments (only used during the authentification)
+     */
+    private final String attachmentsDirectory;
+
+    /**
+     * Cookies of the Target Process session
+     */
+    private final BasicCookieStore cookieStore;
+
+    /**
+     * Pool of connections to Target Process
+     */
+    private final PoolingHttpClientConnectionManager connectionManager;
+
+    /**
+     * HTTP client used to connect to Target Process
+     */
+    private final CloseableHttpClient httpClient;
+
+    /**
+     * Maximum number of requests per second sent to a host, 0 for no limit
+     */
+    private final double rateLimit;
+
+    /**
+     * Rate limiters by host
+     */
+    private final ConcurrentMap<String, RateLimiter> rateLimiters = new ConcurrentHashMap<>();
+
+    /**
+     * Cache of the responses, used to send conditional requests (null if disabled)
+     */
+    private final HttpCache cache;
+
+    /**
+     * Constructor
+     *
+     * @param attachmentsDirectory Directory where the browser downloads attachments
+     */
+    public HttpStoryFetcher(final @NotNull String attachmentsDirectory) {
+        this.attachmentsDirectory = attachmentsDirectory;
+
+        final int maxConnections = Integer.parseInt(ConfigurationProperties.getProperty("extraction.http.maxconnections", "10"));
+        final int timeout = Integer.parseInt(ConfigurationProperties.getProperty("extraction.http.timeout", "30000"));
+
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+
+        final RequestConfig requestConfig = RequestConfig.custom()
+                .setCookieSpec(CookieSpecs.BROWSER_COMPATIBILITY)
+                .setConnectTimeout(timeout)
+                .setConnectionRequestTimeout(timeout)
+                .setSocketTimeout(timeout)
+                .build();
+
+        rateLimit = Double.parseDouble(ConfigurationProperties.getProperty("extraction.ratelimit", "0"));
+
+        cookieStore = new BasicCookieStore();
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultCookieStore(cookieStore)
+                .setDefaultRequestConfig(requestConfig)
+                .build();
+
+        // Responses are kept between extractions, an unchanged resource is not downloaded again
+        final long cacheSize = Long.parseLong(ConfigurationProperties.getProperty("extraction.httpcache.maxsize", "1024"));
+        if (cacheSize > 0) {
+            cache = new HttpCache(ConfigurationProperties.getProperty("outputpathuserstoriessaving") + "\\" + HttpCache.CACHE_DIRECTORY, cacheSize * 1024 * 1024);
+        } else {
+            cache = null;
+        }
+    }
+
+    @Override
+    public void authentification() throws ExtractionException {
+
+        // The login form of Target Process is filled by the browser, then its session is reused
+        final SeleniumStoryFetcher browser = new SeleniumStoryFetcher(attachmentsDirectory);
+        try {
+            browser.authentification();
+
+            for (Cookie cookie : browser.getCookies()) {
+                final BasicClientCookie clientCookie = new BasicClientCookie(cookie.getName(), cookie.getValue());
+                clientCookie.setDomain(cookie.getDomain());
+                clientCookie.setPath(cookie.getPath());
+                clientCookie.setExpiryDate(cookie.getExpiry());
+                clientCookie.setSecure(cookie.isSecure());
+                cookieStore.addCookie(clientCookie);
+            }
+        } finally {
+            browser.close();
+        }
+
+        logger.debug("SESSION COOKIES REUSED BY HTTP CLIENT - {} COOKIES", cookieStore.getCookies().size());
+    }
+
+    @Override
+    public String getContent(final @NotNull String url) throws ExtractionException {
+        // A text is cached with its body
+        HttpCache.Entry cached = cache == null ? null : cache.get(url);
+        if (cached != null && cached.getBody() == null) {
+            cached = null;
+        }
+        try (CloseableHttpResponse response = execute(url, cached)) {
+            if (isNotModified(response)) {
+                logger.debug("HTTP CACHE - NOT MODIFIED - {}", url);
+                return FileUtils.readFileToString(cached.getBody(), StandardCharsets.UTF_8);
+            }
+
+            final HttpEntity entity = response.getEntity();
+            final byte[] body = EntityUtils.toByteArray(entity);
+            RunMetrics.getInstance().addBytesDownloaded(body.length);
+            final Charset charset = ContentType.getOrDefault(entity).getCharset();
+            final String content = new String(body, charset == null ? StandardCharsets.UTF_8 : charset);
+            if (isCacheable(response)) {
+                cache.put(url, content, getHeader(response, "ETag"), getHeader(response, "Last-Modified"));
+            }
+            return content;
+        } catch (IOException e) {
+            throw new TransientExtractionException("Failed to download " + url, e);
+        }
+    }
+
+    @Override
+    public String saveImage(final @NotNull String url, final @NotNull File imageFile) throws ExtractionException {
+        return saveToFile(url, imageFile);
+    }
+
+    @Override
+    public void saveAttachment(final @NotNull String url, final @NotNull String name, final @NotNull File attachmentFile) throws ExtractionException {
+        saveToFile(url, attachmentFile);
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close the HTTP client", e);
+        }
+        connectionManager.shutdown();
+    }
+
+    /**
+     * Download a resource and save it in a file. The content of an unchanged resource is taken from the blob store.
+     *
+     * @param url  - URL of the resource
+     * @param file - File where the resource has to be saved
+     * @return SHA-256 hash of the resource, in hexadecimal
+     * @throws ExtractionException
+     */
+    private String saveToFile(final @NotNull String url, final @NotNull File file) throws ExtractionException {
+        final HttpCache.Entry cached = cache == null ? null : cache.get(url);
+        try (CloseableHttpResponse response = execute(url, cached)) {
+            if (isNotModified(response)) {
+                final File content = cached.getBody() != null ? cached.getBody()
+                        : BlobStore.getStoredContent(ConfigurationProperties.getProperty("outputpathuserstoriessaving"), cached.getHash());
+                if (content != null) {
+                    logger.debug("HTTP CACHE - NOT MODIFIED - {}", url);
+                    try (InputStream inputStream = new FileInputStream(content)) {
+                        return FileTransfer.transfer(inputStream, file);
+                    }
+                }
+            } else {
+                return saveResponseToFile(url, response, file);
+            }
+        } catch (IOException e) {
+            throw new TransientExtractionException("Failed to save " + url + " in the file " + file.getAbsolutePath(), e);
+        }
+
+        // The content is not in the blob store anymore, the resource is downloaded again without condition
+        logger.debug("HTTP CACHE - CONTENT NOT FOUND IN THE BLOB STORE - {}", url);
+        cache.remove(url);
+        return saveToFile(url, file);
+    }
+
+    /**
+     * Save the body of a response in a file. Only its validators and the hash of its content are cached, the content
+     * being kept by the blob store.
+     *
+     * @param url      - URL of the resource
+     * @param response - Response of the GET request
+     * @param file     - File where the resource has to be saved
+     * @return SHA-256 hash of the resource, in hexadecimal
+     * @throws IOException
+     */
+    private String saveResponseToFile(final @NotNull String url, final @NotNull CloseableHttpResponse response, final @NotNull File file) throws IOException {
+
+        final HttpEntity entity = response.getEntity();
+        final String hash;
+        try (InputStream inputStream = entity.getContent()) {
+            hash = FileTransfer.transfer(inputStream, file);
+        }
+        RunMetrics.getInstance().addBytesDownloaded(file.length());
+        if (isCacheable(response)) {
+            cache.putStoredContent(url, hash, getHeader(response, "ETag"), getHeader(response, "Last-Modified"));
+        }
+        return hash;
+    }
+
+    /**
+     * Execute a GET request and check its status. If a response is cached, the request is conditional and the
+     * status "304 Not Modified" is accepted.
+     *
+     * @param url    - URL to get
+     * @param cached - Response cached for the URL, or null
+     * @return the response, which one has to be closed by the caller
+     * @throws IOException
+     * @throws ExtractionException
+     */
+    private CloseableHttpResponse execute(final @NotNull String url, final HttpCache.Entry cached) throws IOException, ExtractionException {
+        acquirePermit(url);
+        final HttpGet request = new HttpGet(toUri(url));
+        if (cached != null) {
+            if (cached.getETag() != null) {
+                request.setHeader("If-None-Match", cached.getETag());
+            }
+            if (cached.getLastModified() != null) {
+                request.setHeader("If-Modified-Since", cached.getLastModified());
+            }
+        }
+        final CloseableHttpResponse response = httpClient.execute(request);
+        final int status = response.getStatusLine().getStatusCode();
+        if (cached != null && status == HttpStatus.SC_NOT_MODIFIED) {
+            return response;
+        }
+        if (status < 200 || status >= 300 || response.getEntity() == null) {
+            response.close();
+            // Server errors, timeouts and throttling can be retried, not the other statuses
+            if (status >= 500 || status == 408 || status == 429) {
+                throw new TransientExtractionException("Failed to download " + url + " - HTTP status " + status);
+            }
+            throw new ExtractionException("Failed to download " + url + " - HTTP status " + status);
+        }
+        return response;
+    }
+
+    /**
+     * @param response - Response of a GET request
+     * @return true if the resource has not changed since the response cached
+     */
+    private static boolean isNotModified(final @NotNull CloseableHttpResponse response) {
+        return response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED;
+    }
+
+    /**
+     * @param response - Response of a GET request
+     * @return true if the response can be kept in the cache
+     */
+    private boolean isCacheable(final @NotNull CloseableHttpResponse response) {
+        final String cacheControl = getHeader(response, "Cache-Control");
+        return cache != null && (cacheControl == null || !cacheControl.toLowerCase().contains("no-store"));
+    }
+
+    /**
+     * @param response - Response of a GET request
+     * @param name     - Name of the header
+     * @return the value of the header, or null if the response does not have it
+     */
+    private static String getHeader(final @NotNull CloseableHttpResponse response, final @NotNull String name) {
+        final Header header = response.getFirstHeader(name);
+        return header == null ? null : header.getValue();
+    }
+
+    /**
+     * Wait until the rate limiter of the host allows a new request.
+     *
+     * @param url - URL to get
+     * @throws ExtractionException
+     */
+    private void acquirePermit(final @NotNull String url) throws ExtractionException {
+        if (rateLimit <= 0) {
+            return;
+        }
+
+        final String host = toUri(url).getHost();
+        RateLimiter rateLimiter = rateLimiters.get(host);
+        if (rateLimiter == null) {
+            rateLimiters.putIfAbsent(host, new RateLimiter(rateLimit));
+            rateLimiter = rateLimiters.get(host);
+        }
+
+        final long start = System.nanoTime();
+        try {
+            rateLimiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExtractionException("Interrupted while waiting for the rate limiter of " + host, e);
+        } finally {
+            RunMetrics.getInstance().record(RunMetrics.Stage.RATE_LIMIT, start);
+        }
+    }
+
+    /**
+     * Build the URI of an URL written as in a browser, unsafe characters are percent-encoded.
+     *
+     * @param url - URL to convert
+     * @return the URI
+     */
+    private static URI toUri(final @NotNull String url) {
+        final StringBuilder uri = new StringBuilder(url.length());
+        for (byte b : url.getBytes(StandardCharsets.UTF_8)) {
+            final char c = (char) (b & 0xFF);
+            if (c >= 0x80 || UNSAFE_URI_CHARACTERS.indexOf(c) >= 0) {
+                uri.append('%').append(String.format("%02X", (int) c));
+            } else {
+                uri.append(c);
+            }
+        }
+        return URI.create(uri.toString());
+    }
+}
@@ -0,0 +1,121 @@
+package com.challer.tpextraction;
+
+import com.sun.istack.internal.NotNull;
+import org.jdom2.Content;
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read the XML file of an User Story, or of another entity, by loading it in a JDOM Document.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public class JdomUserStoryReader extends UserStoryReader {
+
+    @Override
+    public UserStory read(final @NotNull File userStoryFile) throws ExtractionException {
+
+        final UserStory us = new UserStory();
+
+        // Parse the XML flow describing the content of the User Story
+        final Document jdomDocument;
+        try (InputStream userStoryInputStream = new FileInputStream(userStoryFile)) {
+            jdomDocument = XmlSupport.getSAXBuilder().build(userStoryInputStream);
+        } catch (FileNotFoundException e) {
+            throw new ExtractionException("Failed to open file " + userStoryFile.getName(), e);
+        } catch (IOException | JDOMException e) {
+            throw new ExtractionException("Failed to load US " + userStoryFile.getAbsolutePath(), e);
+        }
+
+        // The root element gives the type of the entity, a document without entity root is read as an User Story
+        final Element root = jdomDocument.getRootElement();
+        final EntityType type = EntityType.fromElement(root.getName());
+        if (type != null) {
+            us.setType(type);
+            us.setId(root.getAttributeValue("Id"));
+            us.setTitle(root.getAttributeValue("Name"));
+        } else {
+            us.setId(XmlSupport.getAttributeValueOfElement(jdomDocument, XmlSupport.USER_STORY, "Id"));
+            us.setTitle(XmlSupport.getAttributeValueOfElement(jdomDocument, XmlSupport.USER_STORY, "Name"));
+        }
+
+        // Entity this one belongs to
+        if (us.getType().getParent() != null) {
+            us.setParentId(XmlSupport.getAttributeValueOfElement(jdomDocument, "//" + us.getType().getParent(), "Id"));
+            us.setParentName(XmlSupport.getAttributeValueOfElement(jdomDocument, "//" + us.getType().getParent(), "Name"));
+        }
+
+        final String description = XmlSupport.getValueOfElement(jdomDocument, XmlSupport.DESCRIPTION);
+        us.setDescription(description);
+
+        final String creationDate = XmlSupport.getValueOfElement(jdomDocument, XmlSupport.CREATE_DATE);
+        us.setCreationDay(toDay(creationDate));
+
+        final String lastModificationDate = XmlSupport.getValueOfElement(jdomDocument, XmlSupport.MODIFY_DATE);
+        us.setLastModificationDay(toDay(lastModificationDate));
+
+        // A Feature is grouped with its User Stories
+        String feature = us.getType() == EntityType.FEATURE ? us.getTitle()
+                : XmlSupport.getAttributeValueOfElement(jdomDocument, XmlSupport.FEATURE, "Name");
+        if (feature == null) {
+            feature = "";
+        }
+        us.setFeature(feature);
+
+        final String state = XmlSupport.getAttributeValueOfElement(jdomDocument, XmlSupport.ENTITY_STATE, "Name");
+        us.setState(state);
+
+        // Load custom fields
+        us.setCustomFields(getCustomFields(jdomDocument));
+
+        return us;
+    }
+
+    /**
+     * Return custom fields in the Map
+     *
+     * @param jdomDocument - XML Document loaded by Jdom
+     * @return custm fields
+     */
+    private Map<String, String> getCustomFields(final @NotNull Document jdomDocument) {
+
+        final Map<String, String> customFields = new HashMap<>();
+
+        final List<Element> listFields = XmlSupport.getElements(jdomDocument, XmlSupport.CUSTOM_FIELDS);
+
+        for (Element field : listFields) {
+            if (field.getCType().equals(Content.CType.Element)) {
+
+                boolean isDate = false;
+                if (field.getAttribute("Type").getValue().equals("Date")) {
+                    isDate = true;
+                }
+
+                final List<Content> fieldContent = field.getContent();
+                String name = null;
+                String value = null;
+                for (Content content : fieldContent) {
+                    if (content.getCType().equals(Content.CType.Element) && ((Element) content).getName().equals("Name")) {
+                        name = content.getValue();
+                    }
+                    if (content.getCType().equals(Content.CType.Element) && ((Element) content).getName().equals("Value")) {
+                        value = content.getValue();
+
+                        if (isDate && value != null && value.length() > 0) {
+                            value = formatDate(value);
+                        }
+                    }
+                }
+                customFields.put(name, value);
+            }
+        }
+
+        return customFields;
+    }
+}
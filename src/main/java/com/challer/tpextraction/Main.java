@@ -1,14 +1,17 @@
 package com.challer.tpextraction;
 
+import com.sun.istack.internal.NotNull;
 import org.joda.time.DateTime;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
 
 /**
- * Extract all information of User Stories which are contained in Target Process
+ * Extract all information of User Stories, and of the other entities listed with them, which are contained in
+ * Target Process
  *
  * @author Cyril Haller - cyril.haller@gmail.com
  */
@@ -33,27 +36,147 @@ public class Main {
         }
         logger.info("CONFIGURATION FILE IS OK");
 
+        // Snapshot directory of the extraction : a new one, the one of an interrupted extraction to resume, or the one
+        // of the website to serve
+        String snapshot = startDateTime.toString("YYYYMMDD-HHmm");
+        final boolean serve = args.length > 0 && "--serve".equals(args[0]);
+        if (args.length > 0) {
+            if (args.length != 2 || !("--resume".equals(args[0]) || serve)) {
+                logger.error("USAGE : Main [--resume <snapshot directory> | --serve <snapshot directory>]");
+                return;
+            }
+            snapshot = main.getExistingSnapshot(args[1]);
+            if (snapshot == null) {
+                return;
+            }
+            if (!serve) {
+                logger.info("RESUMING EXTRACTION " + snapshot);
+            }
+        }
+
+        // Metrics of the run, readable through JMX while the extraction is running
+        if (Boolean.parseBoolean(ConfigurationProperties.getProperty("metrics.jmx", "true"))) {
+            RunMetrics.getInstance().registerMBeans();
+        }
+
+        // The website of an extraction is browsed through a local server, without extraction
+        if (serve) {
+            main.serveWebsite(snapshot);
+            return;
+        }
+
         try {
-            // Execute process extraction of User Stories
-            logger.info("STARTING US EXTRACTION");
-            UserStoryExtractor extractor = UserStoryExtractor.getInstance(startDateTime.toString("YYYYMMDD-HHmm"));
-            extractor.processUserStoriesExtraction();
-            logger.info("US EXTRACTION IS DONE");
-
-            // Generate a static html website as parsing xml information extracted from Target Process
-            logger.info("STARTING WEBSITE GENERATION");
-            WebsiteGenerator generator = WebsiteGenerator.getInstance(startDateTime.toString("YYYYMMDD-HHmm"));
-            generator.generateHTML();
-            logger.info("WEBSITE GENERATION IS DONE");
+            UserStoryExtractor extractor = UserStoryExtractor.getInstance(snapshot);
+            WebsiteGenerator generator = WebsiteGenerator.getInstance(snapshot);
+
+            // The website resolves the files of each User Story through the manifest of the extraction
+            generator.setManifest(extractor.getManifest());
+
+            if (Boolean.parseBoolean(ConfigurationProperties.getProperty("generator.pipeline", "false"))) {
+                // Generate the website while User Stories are extracted
+                logger.info("STARTING US EXTRACTION AND WEBSITE GENERATION");
+
+                // The pages are generated before all the entities are saved, they are linked through the csv file
+                generator.setEntityTypes(extractor.getEntityTypes());
+                final GenerationPipeline pipeline = generator.startPipeline();
+                extractor.setUserStoryListener(pipeline);
+                try {
+                    extractor.processUserStoriesExtraction();
+                } catch (ExtractionException | RuntimeException e) {
+                    pipeline.abort();
+                    throw e;
+                }
+                logger.info("US EXTRACTION IS DONE");
+                pipeline.finish();
+                logger.info("WEBSITE GENERATION IS DONE");
+            } else {
+                // Execute process extraction of User Stories
+                logger.info("STARTING US EXTRACTION");
+                extractor.processUserStoriesExtraction();
+                logger.info("US EXTRACTION IS DONE");
+
+                // Generate a static html website as parsing xml information extracted from Target Process
+                logger.info("STARTING WEBSITE GENERATION");
+                generator.generateHTML();
+                logger.info("WEBSITE GENERATION IS DONE");
+            }
 
         } catch (IOException | ExtractionException e) {
             logger.error(e.getMessage(), e);
             return;
+        } finally {
+            // The report is also written for a failed run, in order to see where it has stopped
+            main.writeRunMetrics(snapshot);
         }
 
         logger.info("TP EXTRACTION COMPLETED SUCCESSFULLY");
     }
 
+    /**
+     * Write the metrics of the run in the snapshot directory, in the format chosen in the configuration file.
+     *
+     * @param snapshot - Name of the snapshot directory
+     */
+    private void writeRunMetrics(final @NotNull String snapshot) {
+        final String format = ConfigurationProperties.getProperty("metrics.report", "json").toLowerCase();
+        if ("none".equals(format)) {
+            return;
+        }
+
+        final File reportFile = new File(ConfigurationProperties.getProperty("outputpathuserstoriessaving") + "\\" + snapshot
+                + "\\" + ("prometheus".equals(format) ? "run-metrics.prom" : "run-metrics.json"));
+        try {
+            RunMetrics.getInstance().writeReport(reportFile, format);
+            logger.info("RUN METRICS WRITTEN IN " + reportFile.getAbsolutePath());
+        } catch (ExtractionException e) {
+            logger.warn(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Start the local server of the website of a snapshot directory. It runs until the JVM is stopped.
+     *
+     * @param snapshot - Name of the snapshot directory
+     */
+    private void serveWebsite(final @NotNull String snapshot) {
+        final WebsiteServer server;
+        try {
+            server = WebsiteGenerator.getInstance(snapshot).startServer();
+        } catch (ExtractionException e) {
+            logger.error(e.getMessage(), e);
+            return;
+        }
+
+        // Ctrl+C stops the server
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            public void run() {
+                server.stop();
+            }
+        });
+        logger.info("WEBSITE IS SERVED ON " + server.getUrl() + " - STOP IT WITH CTRL+C");
+    }
+
+    /**
+     * Return the snapshot directory of an extraction, to resume it or to serve its website.
+     *
+     * @param directory - Snapshot directory, by its name or its path
+     * @return the name of the snapshot directory, or null if it does not exist
+     */
+    private String getExistingSnapshot(final String directory) {
+        String snapshot = directory;
+        while (snapshot.endsWith("\\") || snapshot.endsWith("/")) {
+            snapshot = snapshot.substring(0, snapshot.length() - 1);
+        }
+        snapshot = snapshot.substring(Math.max(snapshot.lastIndexOf('\\'), snapshot.lastIndexOf('/')) + 1);
+
+        final File snapshotDirectory = new File(ConfigurationProperties.getProperty("outputpathuserstoriessaving") + "\\" + snapshot);
+        if (snapshot.isEmpty() || !snapshotDirectory.isDirectory()) {
+            logger.error("SNAPSHOT DIRECTORY " + snapshotDirectory.getAbsolutePath() + " DOES NOT EXIST");
+            return null;
+        }
+        return snapshot;
+    }
+
     /**
      * Check if all parameters in configuration file are OK.
      *
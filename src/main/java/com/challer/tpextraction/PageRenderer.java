@@ -0,0 +1,138 @@
+package com.challer.tpextraction;
+
+import com.sun.istack.internal.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Render the pages of the website : the page of an User Story, and the listing page.
+ * <p>
+ * A renderer is shared by all the threads generating pages.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public abstract class PageRenderer {
+
+    /**
+     * Return the renderer chosen in the configuration file.
+     *
+     * @return the renderer
+     */
+    public static PageRenderer getInstance() {
+        if ("compiled".equalsIgnoreCase(ConfigurationProperties.getProperty("generator.renderer", "velocity"))) {
+            return new CompiledPageRenderer();
+        }
+        return new VelocityPageRenderer();
+    }
+
+    /**
+     * Render the page of an User Story in a file.
+     *
+     * @param userStory - User Story to render
+     * @param file      - HTML file of the page
+     * @throws ExtractionException
+     */
+    public void renderUserStoryPage(final @NotNull UserStory userStory, final @NotNull File file) throws ExtractionException {
+        final long start = System.nanoTime();
+        try (FileChannel channel = open(file)) {
+            renderUserStoryPage(userStory, channel);
+            RunMetrics.getInstance().addBytesWritten(channel.position());
+        } catch (IOException ex) {
+            throw new ExtractionException("Failed to write the file " + file.getAbsolutePath(), ex);
+        } finally {
+            RunMetrics.getInstance().record(RunMetrics.Stage.RENDER, start);
+        }
+    }
+
+    /**
+     * Render the listing page in a file.
+     *
+     * @param featureUserStoriesMap - Map containing US list classified by feature
+     * @param file                  - HTML file of the page
+     * @throws ExtractionException
+     */
+    public void renderListingPage(final @NotNull Map<String, List<UserStory>> featureUserStoriesMap, final @NotNull File file) throws ExtractionException {
+        final long start = System.nanoTime();
+        try (FileChannel channel = open(file)) {
+            renderListingPage(featureUserStoriesMap, channel);
+            RunMetrics.getInstance().addBytesWritten(channel.position());
+        } catch (IOException ex) {
+            throw new ExtractionException("Failed to write the file " + file.getAbsolutePath(), ex);
+        } finally {
+            RunMetrics.getInstance().record(RunMetrics.Stage.RENDER, start);
+        }
+    }
+
+    /**
+     * Render the page of an User Story in memory.
+     *
+     * @param userStory - User Story to render
+     * @return the content of the page
+     * @throws IOException
+     */
+    public byte[] renderUserStoryPage(final @NotNull UserStory userStory) throws IOException {
+        final long start = System.nanoTime();
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (WritableByteChannel channel = Channels.newChannel(outputStream)) {
+            renderUserStoryPage(userStory, channel);
+        } finally {
+            RunMetrics.getInstance().record(RunMetrics.Stage.RENDER, start);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Render the listing page in memory.
+     *
+     * @param featureUserStoriesMap - Map containing US list classified by feature
+     * @return the content of the page
+     * @throws IOException
+     */
+    public byte[] renderListingPage(final @NotNull Map<String, List<UserStory>> featureUserStoriesMap) throws IOException {
+        final long start = System.nanoTime();
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (WritableByteChannel channel = Channels.newChannel(outputStream)) {
+            renderListingPage(featureUserStoriesMap, channel);
+        } finally {
+            RunMetrics.getInstance().record(RunMetrics.Stage.RENDER, start);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Render the page of an User Story.
+     *
+     * @param userStory - User Story to render
+     * @param channel   - Channel where the page is written, not closed by this method
+     * @throws IOException
+     */
+    public abstract void renderUserStoryPage(final @NotNull UserStory userStory, final @NotNull WritableByteChannel channel) throws IOException;
+
+    /**
+     * Render the listing page.
+     *
+     * @param featureUserStoriesMap - Map containing US list classified by feature
+     * @param channel               - Channel where the page is written, not closed by this method
+     * @throws IOException
+     */
+    public abstract void renderListingPage(final @NotNull Map<String, List<UserStory>> featureUserStoriesMap, final @NotNull WritableByteChannel channel) throws IOException;
+
+    /**
+     * Open the file of a page, its content is replaced.
+     *
+     * @param file - HTML file of the page
+     * @return the channel of the file
+     * @throws IOException
+     */
+    private static FileChannel open(final @NotNull File file) throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+}
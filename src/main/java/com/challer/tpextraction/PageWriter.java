@@ -0,0 +1,117 @@
+package com.challer.tpextraction;
+
+import com.sun.istack.internal.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Write a page in UTF-8 straight to a channel, through a buffer of bytes.
+ * <p>
+ * The static parts of the pages are encoded once, see {@link #encode(String)}. The texts are encoded as they are
+ * written in the buffer, without intermediate String or byte array.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public final class PageWriter {
+
+    /**
+     * Size of the buffer, most pages are written in one call to the channel
+     */
+    private final static int BUFFER_SIZE = 32 * 1024;
+
+    private final WritableByteChannel channel;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /**
+     * Constructor
+     *
+     * @param channel Channel where the page is written, not closed by the writer
+     */
+    public PageWriter(final @NotNull WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Encode a static part of the pages in UTF-8.
+     *
+     * @param text - Static part
+     * @return the bytes to write
+     */
+    public static byte[] encode(final @NotNull String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write bytes already encoded.
+     *
+     * @param bytes - Bytes to write
+     * @throws IOException
+     */
+    public void write(final @NotNull byte[] bytes) throws IOException {
+        if (bytes.length > buffer.remaining()) {
+            flush();
+            if (bytes.length > buffer.capacity()) {
+                channel.write(ByteBuffer.wrap(bytes));
+                return;
+            }
+        }
+        buffer.put(bytes);
+    }
+
+    /**
+     * Write a text in UTF-8. Nothing is written for a null text.
+     *
+     * @param text - Text to write
+     * @throws IOException
+     */
+    public void write(final String text) throws IOException {
+        if (text == null) {
+            return;
+        }
+
+        final int length = text.length();
+        for (int i = 0; i < length; i++) {
+            if (buffer.remaining() < 4) {
+                flush();
+            }
+
+            final char c = text.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                // A lone surrogate can not be encoded, it is replaced as by the String encoder
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    /**
+     * Write the content of the buffer in the channel, it has to be called once the page is written.
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
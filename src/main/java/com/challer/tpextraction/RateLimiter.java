@@ -0,0 +1,73 @@
+package com.challer.tpextraction;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket limiting the number of requests per second sent to a host.
+ * <p>
+ * The bucket is refilled continuously and can hold up to one second of requests, which allows short bursts
+ * while keeping the average rate under the limit.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public class RateLimiter {
+
+    /**
+     * Number of tokens added per nanosecond
+     */
+    private final double tokensPerNano;
+
+    /**
+     * Maximum number of tokens stored in the bucket
+     */
+    private final double capacity;
+
+    /**
+     * Number of tokens currently available
+     */
+    private double tokens;
+
+    /**
+     * Last time (in ns) the bucket was refilled
+     */
+    private long lastRefill;
+
+    /**
+     * Constructor
+     *
+     * @param permitsPerSecond Number of requests allowed per second
+     */
+    public RateLimiter(final double permitsPerSecond) {
+        this.tokensPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = Math.max(1, permitsPerSecond);
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Wait until a request is allowed.
+     *
+     * @throws InterruptedException
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            refill();
+            // The token is taken now, the caller waits for the bucket to cover the debt
+            tokens -= 1;
+            waitNanos = tokens >= 0 ? 0 : (long) (-tokens / tokensPerNano);
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Add the tokens earned since the last refill.
+     */
+    private void refill() {
+        final long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
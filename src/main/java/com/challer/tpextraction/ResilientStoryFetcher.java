@@ -0,0 +1,158 @@
+package com.challer.tpextraction;
+
+import com.sun.istack.internal.NotNull;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetch layer trying again the downloads which fail for a transient reason, see {@link TransientExtractionException}.
+ * <p>
+ * All the calls are GET requests, which ones can be done again without side effect. The calls of all the workers go
+ * through the same circuit breaker, so they are paused together when Target Process is overloaded.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public class ResilientStoryFetcher implements StoryFetcher {
+
+    /**
+     * Logger Class
+     */
+    private final static org.slf4j.Logger logger = LoggerFactory.getLogger(ResilientStoryFetcher.class);
+
+    /**
+     * Fetch layer doing the calls
+     */
+    private final StoryFetcher fetcher;
+
+    private final RetryPolicy retryPolicy;
+
+    private final CircuitBreaker circuitBreaker;
+
+    /**
+     * Number of calls tried again since the start of the extraction
+     */
+    private final AtomicInteger retries = new AtomicInteger();
+
+    /**
+     * Constructor
+     *
+     * @param fetcher        Fetch layer doing the calls
+     * @param retryPolicy    Delays between the attempts of a call
+     * @param circuitBreaker Circuit breaker shared by all the calls
+     */
+    public ResilientStoryFetcher(final @NotNull StoryFetcher fetcher, final @NotNull RetryPolicy retryPolicy, final @NotNull CircuitBreaker circuitBreaker) {
+        this.fetcher = fetcher;
+        this.retryPolicy = retryPolicy;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    public void authentification() throws ExtractionException {
+        fetcher.authentification();
+    }
+
+    @Override
+    public String getContent(final @NotNull String url) throws ExtractionException {
+        return call(url, new Call<String>() {
+            public String call() throws ExtractionException {
+                return fetcher.getContent(url);
+            }
+        });
+    }
+
+    @Override
+    public String saveImage(final @NotNull String url, final @NotNull File imageFile) throws ExtractionException {
+        return call(url, new Call<String>() {
+            public String call() throws ExtractionException {
+                return fetcher.saveImage(url, imageFile);
+            }
+        });
+    }
+
+    @Override
+    public void saveAttachment(final @NotNull String url, final @NotNull String name, final @NotNull File attachmentFile) throws ExtractionException {
+        call(url, new Call<Void>() {
+            public Void call() throws ExtractionException {
+                fetcher.saveAttachment(url, name, attachmentFile);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return fetcher.isThreadSafe();
+    }
+
+    @Override
+    public void close() {
+        fetcher.close();
+    }
+
+    /**
+     * @return the number of calls tried again since the start of the extraction
+     */
+    public int getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * Do a call, trying it again while it fails for a transient reason and the retry policy allows it.
+     *
+     * @param url  - URL of the call, for the logs
+     * @param call - Call to do
+     * @return the result of the call
+     * @throws ExtractionException
+     */
+    private <T> T call(final @NotNull String url, final @NotNull Call<T> call) throws ExtractionException {
+        int attempts = 0;
+        while (true) {
+            try {
+                circuitBreaker.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ExtractionException("Interrupted while waiting for the circuit breaker - " + url, e);
+            }
+
+            attempts++;
+            try {
+                final T result = call.call();
+                circuitBreaker.recordSuccess();
+                return result;
+            } catch (TransientExtractionException e) {
+                circuitBreaker.recordFailure();
+                if (!retryPolicy.canRetry(attempts)) {
+                    throw e;
+                }
+
+                final long delay = retryPolicy.getDelay(attempts);
+                logger.warn("RETRYING IN " + delay + " MS - ATTEMPT " + (attempts + 1) + " - " + url + " - " + e.getMessage());
+                retries.incrementAndGet();
+                RunMetrics.getInstance().addRetry();
+                final long waitStart = System.nanoTime();
+                try {
+                    TimeUnit.MILLISECONDS.sleep(delay);
+                } catch (InterruptedException e1) {
+                    Thread.currentThread().interrupt();
+                    throw new ExtractionException("Interrupted while waiting to retry " + url, e1);
+                } finally {
+                    RunMetrics.getInstance().record(RunMetrics.Stage.RETRY_WAIT, waitStart);
+                }
+            } catch (ExtractionException | RuntimeException e) {
+                // The failure does not come from the load of Target Process
+                circuitBreaker.recordSuccess();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Call to Target Process
+     */
+    private interface Call<T> {
+        T call() throws ExtractionException;
+    }
+}
@@ -0,0 +1,65 @@
+package com.challer.tpextraction;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Delays between the attempts of an operation which has failed : exponential backoff with jitter.
+ * <p>
+ * The delay before the attempt n is a random duration between 0 and min(maxDelay, initialDelay * 2^(n-1)), so the
+ * workers failing at the same time do not come back at the same time.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public class RetryPolicy {
+
+    /**
+     * Maximum number of attempts of an operation, the first one included
+     */
+    private final int maxAttempts;
+
+    /**
+     * Upper bound of the delay before the first retry (in ms)
+     */
+    private final long initialDelay;
+
+    /**
+     * Upper bound of all the delays (in ms)
+     */
+    private final long maxDelay;
+
+    /**
+     * Constructor
+     *
+     * @param maxAttempts  Maximum number of attempts of an operation, the first one included
+     * @param initialDelay Upper bound of the delay before the first retry (in ms)
+     * @param maxDelay     Upper bound of all the delays (in ms)
+     */
+    public RetryPolicy(final int maxAttempts, final long initialDelay, final long maxDelay) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialDelay = Math.max(0, initialDelay);
+        this.maxDelay = Math.max(this.initialDelay, maxDelay);
+    }
+
+    /**
+     * @param attempts - Number of attempts already done
+     * @return true if an operation which has failed can be tried again
+     */
+    public boolean canRetry(final int attempts) {
+        return attempts < maxAttempts;
+    }
+
+    /**
+     * Return the delay to wait before trying again an operation.
+     *
+     * @param attempts - Number of attempts already done
+     * @return the delay (in ms)
+     */
+    public long getDelay(final int attempts) {
+        long bound = initialDelay;
+        for (int i = 1; i < attempts && bound < maxDelay; i++) {
+            bound *= 2;
+        }
+        bound = Math.min(bound, maxDelay);
+        return bound <= 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+}
@@ -0,0 +1,394 @@
+package com.challer.tpextraction;
+
+import com.sun.istack.internal.NotNull;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of a run : number and latency histogram of each stage, bytes downloaded and written, retries and failures.
+ * <p>
+ * The metrics are shared by all the threads of the run and recorded without lock. They can be read through JMX during
+ * the run, see {@link #registerMBeans()}, and are written at the end in a JSON or Prometheus text file, see
+ * {@link #writeReport(File, String)}.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public final class RunMetrics implements RunMetricsMXBean {
+
+    /**
+     * Logger Class
+     */
+    private final static org.slf4j.Logger logger = LoggerFactory.getLogger(RunMetrics.class);
+
+    /**
+     * Domain of the names of the MBeans
+     */
+    private final static String JMX_NAME = "com.challer.tpextraction:type=RunMetrics";
+
+    /**
+     * Upper bounds (in ms) of the buckets of the histograms, a last bucket takes the longer durations
+     */
+    private final static long[] BUCKETS_MILLIS = {1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+
+    /**
+     * Singleton instance
+     */
+    private final static RunMetrics instance = new RunMetrics();
+
+    /**
+     * Stages of a run. The fetch stages include the waits of the rate limiter and of the retries, which ones are
+     * also measured alone.
+     */
+    public enum Stage {
+        /**
+         * Authentification on Target Process
+         */
+        AUTHENTIFICATION,
+        /**
+         * Download of the content of an User Story, or of a batch of User Stories
+         */
+        STORY_FETCH,
+        /**
+         * Download of the attachments list of an User Story
+         */
+        ATTACHMENT_LIST,
+        /**
+         * Download of an attachment
+         */
+        ATTACHMENT_DOWNLOAD,
+        /**
+         * Download of an image
+         */
+        IMAGE_FETCH,
+        /**
+         * Wait for the rate limiter before a request
+         */
+        RATE_LIMIT,
+        /**
+         * Wait before a call is tried again
+         */
+        RETRY_WAIT,
+        /**
+         * Reading of an User Story, from its XML file or from the snapshot file
+         */
+        PARSE,
+        /**
+         * Rewriting of the description of an User Story for the website
+         */
+        REWRITE,
+        /**
+         * Rendering of a page, written in its file at the same time
+         */
+        RENDER,
+        /**
+         * Writing of the other files : XML files of the User Stories, snapshot file and search index
+         */
+        WRITE;
+
+        /**
+         * @return the name of the stage in the reports
+         */
+        public String getName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Start of the run, in ns
+     */
+    private final long startNanos = System.nanoTime();
+
+    private final StageMetrics[] stages = new StageMetrics[Stage.values().length];
+
+    private final LongAdder bytesDownloaded = new LongAdder();
+
+    private final LongAdder bytesWritten = new LongAdder();
+
+    private final LongAdder retries = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * Constructor
+     */
+    private RunMetrics() {
+        for (Stage stage : Stage.values()) {
+            stages[stage.ordinal()] = new StageMetrics();
+        }
+    }
+
+    /**
+     * Singleton pattern
+     *
+     * @return singleton of RunMetrics
+     */
+    public static RunMetrics getInstance() {
+        return instance;
+    }
+
+    /**
+     * Record a stage which has been done.
+     *
+     * @param stage      - Stage done
+     * @param startNanos - Start of the stage, given by {@link System#nanoTime()}
+     */
+    public void record(final @NotNull Stage stage, final long startNanos) {
+        stages[stage.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    public void addBytesDownloaded(final long bytes) {
+        bytesDownloaded.add(bytes);
+    }
+
+    public void addBytesWritten(final long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    public void addRetry() {
+        retries.increment();
+    }
+
+    public void addFailures(final int count) {
+        failures.add(count);
+    }
+
+    /**
+     * @param stage - Stage of the run
+     * @return the metrics of the stage
+     */
+    public StageMetrics getStage(final @NotNull Stage stage) {
+        return stages[stage.ordinal()];
+    }
+
+    @Override
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public long getBytesDownloaded() {
+        return bytesDownloaded.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * Register the MBeans of the run and of each stage in the platform MBean server. A failure is only logged, the
+     * run does not need JMX.
+     */
+    public void registerMBeans() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            register(server, new ObjectName(JMX_NAME), this);
+            for (Stage stage : Stage.values()) {
+                register(server, new ObjectName(JMX_NAME + ",stage=" + stage.getName()), getStage(stage));
+            }
+        } catch (JMException e) {
+            logger.warn("Failed to register the run metrics in JMX", e);
+        }
+    }
+
+    /**
+     * Register a MBean, unless it is already registered.
+     *
+     * @param server - MBean server
+     * @param name   - Name of the MBean
+     * @param mbean  - MBean to register
+     * @throws JMException
+     */
+    private static void register(final @NotNull MBeanServer server, final @NotNull ObjectName name, final @NotNull Object mbean) throws JMException {
+        if (!server.isRegistered(name)) {
+            server.registerMBean(mbean, name);
+        }
+    }
+
+    /**
+     * Write the metrics in a file. The file is replaced at once, a reader never sees a partial report.
+     *
+     * @param reportFile - Report file
+     * @param format     - json or prometheus
+     * @throws ExtractionException
+     */
+    public void writeReport(final @NotNull File reportFile, final @NotNull String format) throws ExtractionException {
+        final String report = "prometheus".equalsIgnoreCase(format) ? toPrometheus() : toJson();
+        final File temporaryFile = new File(reportFile.getAbsolutePath() + ".tmp");
+        try {
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temporaryFile), StandardCharsets.UTF_8))) {
+                writer.write(report);
+            }
+            Files.move(temporaryFile.toPath(), reportFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new ExtractionException("Failed to write the run metrics " + reportFile.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Return the metrics as a JSON object. The histograms give the number of durations of each bucket, by upper
+     * bound in ms.
+     *
+     * @return the JSON report
+     */
+    String toJson() {
+        final StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"elapsedMillis\": ").append(getElapsedMillis()).append(",\n");
+        json.append("  \"bytesDownloaded\": ").append(getBytesDownloaded()).append(",\n");
+        json.append("  \"bytesWritten\": ").append(getBytesWritten()).append(",\n");
+        json.append("  \"retries\": ").append(getRetries()).append(",\n");
+        json.append("  \"failures\": ").append(getFailures()).append(",\n");
+        json.append("  \"stages\": {");
+        for (Stage stage : Stage.values()) {
+            final StageMetrics metrics = getStage(stage);
+            json.append(stage.ordinal() == 0 ? "\n" : ",\n");
+            json.append("    \"").append(stage.getName()).append("\": {");
+            json.append("\"count\": ").append(metrics.getCount());
+            json.append(", \"totalMillis\": ").append(format(metrics.getTotalMillis()));
+            json.append(", \"meanMillis\": ").append(format(metrics.getMeanMillis()));
+            json.append(", \"maxMillis\": ").append(format(metrics.getMaxMillis()));
+            json.append(", \"histogramMillis\": {");
+            for (int i = 0; i <= BUCKETS_MILLIS.length; i++) {
+                json.append(i == 0 ? "" : ", ").append('"').append(i < BUCKETS_MILLIS.length ? String.valueOf(BUCKETS_MILLIS[i]) : "+Inf")
+                        .append("\": ").append(metrics.buckets[i].sum());
+            }
+            json.append("}}");
+        }
+        json.append("\n  }\n}\n");
+        return json.toString();
+    }
+
+    /**
+     * Return the metrics in the text format of Prometheus. The latencies are histograms in seconds, their buckets are
+     * cumulative.
+     *
+     * @return the Prometheus report
+     */
+    String toPrometheus() {
+        final StringBuilder text = new StringBuilder();
+        appendMetric(text, "tpextraction_run_duration_seconds", "gauge", "Duration of the run", format(getElapsedMillis() / 1000d));
+        appendMetric(text, "tpextraction_downloaded_bytes_total", "counter", "Bytes downloaded from Target Process", String.valueOf(getBytesDownloaded()));
+        appendMetric(text, "tpextraction_written_bytes_total", "counter", "Bytes written in the snapshot directory", String.valueOf(getBytesWritten()));
+        appendMetric(text, "tpextraction_retries_total", "counter", "Calls to Target Process tried again", String.valueOf(getRetries()));
+        appendMetric(text, "tpextraction_failures_total", "counter", "User Stories which have failed to be saved", String.valueOf(getFailures()));
+
+        text.append("# HELP tpextraction_stage_duration_seconds Duration of the stages of the run\n");
+        text.append("# TYPE tpextraction_stage_duration_seconds histogram\n");
+        for (Stage stage : Stage.values()) {
+            final StageMetrics metrics = getStage(stage);
+            long cumulativeCount = 0;
+            for (int i = 0; i <= BUCKETS_MILLIS.length; i++) {
+                cumulativeCount += metrics.buckets[i].sum();
+                text.append("tpextraction_stage_duration_seconds_bucket{stage=\"").append(stage.getName()).append("\",le=\"")
+                        .append(i < BUCKETS_MILLIS.length ? format(BUCKETS_MILLIS[i] / 1000d) : "+Inf").append("\"} ").append(cumulativeCount).append('\n');
+            }
+            text.append("tpextraction_stage_duration_seconds_sum{stage=\"").append(stage.getName()).append("\"} ")
+                    .append(format(metrics.getTotalMillis() / 1000d)).append('\n');
+            text.append("tpextraction_stage_duration_seconds_count{stage=\"").append(stage.getName()).append("\"} ")
+                    .append(cumulativeCount).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static void appendMetric(final @NotNull StringBuilder text, final @NotNull String name, final @NotNull String type, final @NotNull String help, final @NotNull String value) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * @param value - Decimal value of a report
+     * @return the value with 3 decimals, whatever the locale
+     */
+    private static String format(final double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    /**
+     * Number, total and maximum duration, and histogram of the durations of a stage.
+     */
+    public static final class StageMetrics implements StageMetricsMXBean {
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        /**
+         * Number of durations by bucket, see {@link #BUCKETS_MILLIS}
+         */
+        private final LongAdder[] buckets = new LongAdder[BUCKETS_MILLIS.length + 1];
+
+        private StageMetrics() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Record a duration of the stage.
+         *
+         * @param nanos - Duration, in ns
+         */
+        private void record(final long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+
+            int bucket = 0;
+            while (bucket < BUCKETS_MILLIS.length && nanos > TimeUnit.MILLISECONDS.toNanos(BUCKETS_MILLIS[bucket])) {
+                bucket++;
+            }
+            buckets[bucket].increment();
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+
+        @Override
+        public double getTotalMillis() {
+            return totalNanos.sum() / 1e6;
+        }
+
+        @Override
+        public double getMeanMillis() {
+            final long n = count.sum();
+            return n == 0 ? 0 : totalNanos.sum() / 1e6 / n;
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return maxNanos.get() / 1e6;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.challer.tpextraction;
+
+/**
+ * Counters of the run, exposed through JMX under the name "com.challer.tpextraction:type=RunMetrics".
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public interface RunMetricsMXBean {
+
+    /**
+     * @return the time elapsed since the start of the run, in ms
+     */
+    long getElapsedMillis();
+
+    /**
+     * @return the number of bytes downloaded from Target Process
+     */
+    long getBytesDownloaded();
+
+    /**
+     * @return the number of bytes written in the snapshot directory
+     */
+    long getBytesWritten();
+
+    /**
+     * @return the number of calls to Target Process tried again
+     */
+    long getRetries();
+
+    /**
+     * @return the number of User Stories which have failed to be saved, the ones saved by the final pass included
+     */
+    long getFailures();
+}
@@ -0,0 +1,459 @@
+package com.challer.tpextraction;
+
+import com.sun.istack.internal.NotNull;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringEscapeUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Full-text index of the website, searched by the pages through the script js/search.js.
+ * <p>
+ * The index is built while the pages are generated : the threads add the terms of each User Story (title, description
+ * without its HTML, feature, state and values of the custom fields), then the User Story can be released. The terms
+ * are spread in shards by their first two characters, the postings of a shard being written in a temporary file
+ * once its buffer is full, so the index is never complete in memory.
+ * <p>
+ * The index is written in the directory "search" of the website as scripts, which ones can be loaded when the website
+ * is opened from the file system :
+ * <ul>
+ * <li>t-&lt;prefix&gt;.js : the terms starting with the prefix, and the User Stories containing each term. A page
+ * searching a word only loads the shard of its first two characters, all the terms of the shard starting with the
+ * word match.</li>
+ * <li>d-&lt;n&gt;.js : the "ID - Title" of {@link #DOCUMENTS_PER_SHARD} User Stories, displayed by the results. The
+ * other entities are displayed as "Type ID - Title", js/search.js gives the page of a result from it.</li>
+ * </ul>
+ * The User Stories are numbered in the order of their ids, a term gives their numbers as differences in base 36.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public class SearchIndex {
+
+    /**
+     * Directory of the index, in the snapshot directory
+     */
+    public final static String SEARCH_DIRECTORY = "search";
+
+    /**
+     * Number of User Stories by shard of documents, it is also set in js/search.js
+     */
+    private final static int DOCUMENTS_PER_SHARD = 1000;
+
+    /**
+     * Words shorter than this length are not indexed, it is the length of the prefix of the shards
+     */
+    private final static int MIN_TERM_LENGTH = 2;
+
+    /**
+     * Longer words are indexed by their first characters
+     */
+    private final static int MAX_TERM_LENGTH = 32;
+
+    /**
+     * Size of the postings kept in memory by a shard before they are written in its temporary file
+     */
+    private final static int SHARD_BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * Maximum length of a character entity of the descriptions, a longer one is not an entity
+     */
+    private final static int MAX_ENTITY_LENGTH = 10;
+
+    private final File directory;
+
+    /**
+     * Directory of the temporary files of the shards
+     */
+    private final File postingsDirectory;
+
+    /**
+     * Number of each User Story, in the order they are added
+     */
+    private final ConcurrentMap<String, Integer> numbers = new ConcurrentHashMap<>();
+
+    /**
+     * Id and "ID - Title" of each User Story, by number
+     */
+    private final List<String[]> documents = new ArrayList<>();
+
+    /**
+     * Shards of terms, by prefix
+     */
+    private final ConcurrentMap<String, Shard> shards = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor, the index previously written in the directory is deleted.
+     *
+     * @param directory Directory of the index
+     * @throws ExtractionException
+     */
+    public SearchIndex(final @NotNull File directory) throws ExtractionException {
+        this.directory = directory;
+        this.postingsDirectory = new File(directory, "postings.tmp");
+        try {
+            FileUtils.deleteDirectory(directory);
+            FileUtils.forceMkdir(postingsDirectory);
+        } catch (IOException e) {
+            throw new ExtractionException("Failed to create the search index " + directory.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Add an User Story to the index. It can be called by several threads at the same time.
+     *
+     * @param userStory - User Story, its description being the one of its page
+     * @throws ExtractionException
+     */
+    public void add(final @NotNull UserStory userStory) throws ExtractionException {
+
+        // The terms of the User Story, each one is only indexed once
+        final Set<String> terms = new HashSet<>();
+        addTerms(userStory.getId(), false, terms);
+        addTerms(userStory.getTitle(), false, terms);
+        addTerms(userStory.getDescription(), true, terms);
+        addTerms(userStory.getFeature(), false, terms);
+        addTerms(userStory.getState(), false, terms);
+        if (userStory.getType() != EntityType.USER_STORY) {
+            // The other entities can be searched by their type
+            addTerms(userStory.getType().getLabel(), false, terms);
+        }
+        if (userStory.getCustomFields() != null) {
+            for (String value : userStory.getCustomFields().values()) {
+                addTerms(value, false, terms);
+            }
+        }
+
+        final int number = getNumber(userStory);
+        for (String term : terms) {
+            getShard(term.substring(0, MIN_TERM_LENGTH)).add(term, number);
+        }
+    }
+
+    /**
+     * Write the shards of the index, in parallel.
+     *
+     * @param parallelism - Number of shards written at the same time
+     * @return the number of bytes written
+     * @throws ExtractionException
+     */
+    public long write(final int parallelism) throws ExtractionException {
+
+        // The User Stories are numbered in the order of their ids, so the results are sorted by id
+        final List<String[]> sortedDocuments;
+        synchronized (documents) {
+            sortedDocuments = new ArrayList<>(documents);
+        }
+        final Integer[] order = new Integer[sortedDocuments.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer number1, Integer number2) {
+                return UserStorySnapshot.compareIds(sortedDocuments.get(number1)[0], sortedDocuments.get(number2)[0]);
+            }
+        });
+        final int[] ranks = new int[order.length];
+        for (int rank = 0; rank < order.length; rank++) {
+            ranks[order[rank]] = rank;
+        }
+
+        long bytes = 0;
+        for (int first = 0; first < order.length; first += DOCUMENTS_PER_SHARD) {
+            final StringBuilder script = new StringBuilder("userStoriesSearch.addDocuments(").append(first / DOCUMENTS_PER_SHARD).append(", [");
+            for (int rank = first; rank < Math.min(first + DOCUMENTS_PER_SHARD, order.length); rank++) {
+                script.append(rank == first ? "\n\"" : ",\n\"").append(StringEscapeUtils.escapeEcmaScript(sortedDocuments.get(order[rank])[1])).append('"');
+            }
+            script.append("]);\n");
+            bytes += writeScript(new File(directory, "d-" + first / DOCUMENTS_PER_SHARD + ".js"), script);
+        }
+
+        // Each shard is read back from its temporary file and written by a thread of its own
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        try {
+            final List<Future<Long>> writtenShards = new ArrayList<>();
+            for (final Shard shard : shards.values()) {
+                writtenShards.add(executor.submit(new Callable<Long>() {
+                    public Long call() throws ExtractionException {
+                        return shard.write(ranks);
+                    }
+                }));
+            }
+            for (Future<Long> writtenShard : writtenShards) {
+                bytes += writtenShard.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExtractionException("Search index writing interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ExtractionException) {
+                throw (ExtractionException) e.getCause();
+            }
+            throw new ExtractionException("Failed to write the search index " + directory.getAbsolutePath(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        FileUtils.deleteQuietly(postingsDirectory);
+        return bytes;
+    }
+
+    /**
+     * Add the terms of a text : its words in lower case, made of letters (latin alphabet) and digits.
+     *
+     * @param text  - Text to index, may be null
+     * @param html  - true if the text is HTML, its tags and entities are then skipped
+     * @param terms - Terms found
+     */
+    static void addTerms(final String text, final boolean html, final @NotNull Set<String> terms) {
+        if (text == null) {
+            return;
+        }
+
+        final StringBuilder term = new StringBuilder(MAX_TERM_LENGTH);
+        final int length = text.length();
+        for (int i = 0; i < length; i++) {
+            final char c = Character.toLowerCase(text.charAt(i));
+            if (isTermCharacter(c)) {
+                if (term.length() < MAX_TERM_LENGTH) {
+                    term.append(c);
+                }
+                continue;
+            }
+
+            // Any other character ends the current word
+            if (term.length() >= MIN_TERM_LENGTH) {
+                terms.add(term.toString());
+            }
+            term.setLength(0);
+
+            if (html && c == '<') {
+                final int end = text.indexOf('>', i);
+                i = end < 0 ? length : end;
+            } else if (html && c == '&') {
+                final int end = text.indexOf(';', i);
+                if (end > 0 && end - i <= MAX_ENTITY_LENGTH) {
+                    i = end;
+                }
+            }
+        }
+        if (term.length() >= MIN_TERM_LENGTH) {
+            terms.add(term.toString());
+        }
+    }
+
+    /**
+     * @param c - Character in lower case
+     * @return true if the character belongs to a term, the same characters are kept by js/search.js
+     */
+    private static boolean isTermCharacter(final char c) {
+        return c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c >= '\u00C0' && c <= '\u024F' && c != '\u00D7' && c != '\u00F7';
+    }
+
+    /**
+     * Return the name of the shard file of a prefix, the letters out of a-z are written in hexadecimal.
+     *
+     * @param prefix - Prefix of the terms of the shard
+     * @return the name of the file
+     */
+    static String getShardFileName(final @NotNull String prefix) {
+        final StringBuilder name = new StringBuilder("t-");
+        for (int i = 0; i < prefix.length(); i++) {
+            final char c = prefix.charAt(i);
+            if (c >= 'a' && c <= 'z' || c >= '0' && c <= '9') {
+                name.append(c);
+            } else {
+                name.append('_').append(String.format("%04x", (int) c));
+            }
+        }
+        return name.append(".js").toString();
+    }
+
+    /**
+     * Return the number of an User Story, it is given at its first addition.
+     *
+     * @param userStory - User Story
+     * @return the number of the User Story
+     */
+    private int getNumber(final @NotNull UserStory userStory) {
+        final Integer number = numbers.get(userStory.getId());
+        if (number != null) {
+            return number;
+        }
+        synchronized (documents) {
+            final Integer existingNumber = numbers.get(userStory.getId());
+            if (existingNumber != null) {
+                return existingNumber;
+            }
+            documents.add(new String[]{userStory.getId(), userStory.getDisplayedType() + userStory.getId() + " - " + userStory.getTitleHtmlSafe()});
+            numbers.put(userStory.getId(), documents.size() - 1);
+            return documents.size() - 1;
+        }
+    }
+
+    private Shard getShard(final @NotNull String prefix) {
+        Shard shard = shards.get(prefix);
+        if (shard == null) {
+            shards.putIfAbsent(prefix, new Shard(prefix));
+            shard = shards.get(prefix);
+        }
+        return shard;
+    }
+
+    /**
+     * Write a script of the index.
+     *
+     * @param file   - File of the script
+     * @param script - Content of the script
+     * @return the number of bytes written
+     * @throws ExtractionException
+     */
+    private static long writeScript(final @NotNull File file, final @NotNull CharSequence script) throws ExtractionException {
+        final byte[] bytes = script.toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            FileUtils.writeByteArrayToFile(file, bytes);
+        } catch (IOException e) {
+            throw new ExtractionException("Failed to write the file " + file.getAbsolutePath(), e);
+        }
+        return bytes.length;
+    }
+
+    /**
+     * Terms sharing the same prefix, and the numbers of the User Stories containing them.
+     */
+    private class Shard {
+
+        private final String prefix;
+
+        /**
+         * Temporary file of the postings which are not in the buffer
+         */
+        private final File postingsFile;
+
+        /**
+         * Postings not written yet in the temporary file : term and number of the User Story
+         */
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+
+        private final DataOutputStream output = new DataOutputStream(buffer);
+
+        private Shard(final @NotNull String prefix) {
+            this.prefix = prefix;
+            this.postingsFile = new File(postingsDirectory, getShardFileName(prefix) + ".tmp");
+        }
+
+        /**
+         * Add a posting : an User Story containing a term.
+         *
+         * @param term   - Term
+         * @param number - Number of the User Story
+         * @throws ExtractionException
+         */
+        private synchronized void add(final @NotNull String term, final int number) throws ExtractionException {
+            try {
+                output.writeUTF(term);
+                output.writeInt(number);
+                if (buffer.size() >= SHARD_BUFFER_SIZE) {
+                    try (OutputStream outputStream = new FileOutputStream(postingsFile, true)) {
+                        buffer.writeTo(outputStream);
+                    }
+                    buffer.reset();
+                }
+            } catch (IOException e) {
+                throw new ExtractionException("Failed to write the file " + postingsFile.getAbsolutePath(), e);
+            }
+        }
+
+        /**
+         * Write the script of the shard.
+         *
+         * @param ranks - Rank of each User Story in the order of the ids, by number
+         * @return the number of bytes written
+         * @throws ExtractionException
+         */
+        private synchronized long write(final @NotNull int[] ranks) throws ExtractionException {
+
+            // The postings of the temporary file, then the ones of the buffer
+            final Map<String, Postings> postingsByTerm = new TreeMap<>();
+            try {
+                if (postingsFile.exists()) {
+                    try (InputStream inputStream = new BufferedInputStream(new FileInputStream(postingsFile))) {
+                        readPostings(inputStream, ranks, postingsByTerm);
+                    }
+                }
+                readPostings(new ByteArrayInputStream(buffer.toByteArray()), ranks, postingsByTerm);
+            } catch (IOException e) {
+                throw new ExtractionException("Failed to read the file " + postingsFile.getAbsolutePath(), e);
+            }
+
+            final StringBuilder script = new StringBuilder("userStoriesSearch.addTerms(\"")
+                    .append(StringEscapeUtils.escapeEcmaScript(prefix)).append("\", {");
+            boolean first = true;
+            for (Map.Entry<String, Postings> entry : postingsByTerm.entrySet()) {
+                script.append(first ? "\n\"" : ",\n\"").append(StringEscapeUtils.escapeEcmaScript(entry.getKey())).append("\":\"");
+                entry.getValue().append(script);
+                script.append('"');
+                first = false;
+            }
+            script.append("});\n");
+            return writeScript(new File(directory, getShardFileName(prefix)), script);
+        }
+
+        private void readPostings(final @NotNull InputStream inputStream, final @NotNull int[] ranks, final @NotNull Map<String, Postings> postingsByTerm) throws IOException {
+            final DataInputStream input = new DataInputStream(inputStream);
+            while (true) {
+                final String term;
+                try {
+                    term = input.readUTF();
+                } catch (EOFException e) {
+                    return;
+                }
+                Postings postings = postingsByTerm.get(term);
+                if (postings == null) {
+                    postings = new Postings();
+                    postingsByTerm.put(term, postings);
+                }
+                postings.add(ranks[input.readInt()]);
+            }
+        }
+    }
+
+    /**
+     * Ranks of the User Stories containing a term.
+     */
+    private static class Postings {
+
+        private int[] ranks = new int[4];
+
+        private int size;
+
+        private void add(final int rank) {
+            if (size == ranks.length) {
+                ranks = Arrays.copyOf(ranks, size * 2);
+            }
+            ranks[size++] = rank;
+        }
+
+        /**
+         * Append the ranks, sorted and without duplicate, as differences in base 36 separated by commas.
+         *
+         * @param script - Script of the shard
+         */
+        private void append(final @NotNull StringBuilder script) {
+            Arrays.sort(ranks, 0, size);
+            int previous = -1;
+            for (int i = 0; i < size; i++) {
+                if (ranks[i] == previous) {
+                    continue;
+                }
+                if (previous >= 0) {
+                    script.append(',');
+                }
+                script.append(Integer.toString(previous < 0 ? ranks[i] : ranks[i] - previous, 36));
+                previous = ranks[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.challer.tpextraction;
+
+import com.sun.istack.internal.NotNull;
+import org.openqa.selenium.*;
+import org.openqa.selenium.firefox.FirefoxDriver;
+import org.openqa.selenium.firefox.FirefoxProfile;
+import org.openqa.selenium.support.ui.ExpectedCondition;
+import org.openqa.selenium.support.ui.WebDriverWait;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.*;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetch the content of Target Process through the browser Firefox (Selenium API).
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public class SeleniumStoryFetcher implements StoryFetcher {
+
+    /**
+     * Logger Class
+     */
+    private final static org.slf4j.Logger logger = LoggerFactory.getLogger(SeleniumStoryFetcher.class);
+
+    /**
+     * Webdriver used to connect to Target Process
+     */
+    private final WebDriver driver;
+
+    /**
+     * Directory where the browser downloads attachments
+     */
+    private final String attachmentsDirectory;
+
+    /**
+     * Constructor
+     *
+     * @param attachmentsDirectory Directory where the browser downloads attachments
+     */
+    public SeleniumStoryFetcher(final @NotNull String attachmentsDirectory) {
+        this.attachmentsDirectory = attachmentsDirectory;
+
+        // Configure and call the browser FireFox
+        final FirefoxProfile firefoxProfile = new FirefoxProfile();
+
+        firefoxProfile.setPreference("browser.download.folderList", 2);
+        firefoxProfile.setPreference("browser.download.manager.showWhenStarting", false);
+        firefoxProfile.setPreference("browser.download.dir", attachmentsDirectory);
+
+        // Get different typemine allowed for the downloading
+        final String typemime = ConfigurationProperties.getProperty("tp.attachment.typemime");
+        firefoxProfile.setPreference("browser.helperApps.neverAsk.saveToDisk", typemime);
+
+        // Disable Firefox's built-in PDF viewer
+        firefoxProfile.setPreference("pdfjs.disabled", true);
+
+        // Disable Adobe Acrobat PDF preview plugin
+        //firefoxProfile.setPreference("plugin.scan.plid.all", false);
+        //firefoxProfile.setPreference("plugin.scan.Acrobat", "99.0");
+
+        // Call the browser Firefox
+        driver = new FirefoxDriver(firefoxProfile);
+
+        // Set the timeout at 30 seconds
+        driver.manage().timeouts().implicitlyWait(30, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void authentification() throws ExtractionException {
+
+        // Loading of Target Process information connection
+        final String username = ConfigurationProperties.getProperty("tp.username");
+        final String password = ConfigurationProperties.getProperty("tp.password");
+        final String connectionUrl = ConfigurationProperties.getProperty("tp.connection.url");
+
+        driver.get(connectionUrl);
+        driver.findElement(By.id("UserName")).clear();
+        driver.findElement(By.id("UserName")).sendKeys(username);
+        driver.findElement(By.id("Password")).clear();
+        driver.findElement(By.id("Password")).sendKeys(password);
+        driver.findElement(By.id("btnLogin")).click();
+
+        // Wait for the global context of Target Process : the login page is left and the new page is loaded
+        final long timeout = Long.parseLong(ConfigurationProperties.getProperty("tp.connection.timeout", "30000"));
+        try {
+            new WebDriverWait(driver, TimeUnit.MILLISECONDS.toSeconds(timeout)).until(new ExpectedCondition<Boolean>() {
+                public Boolean apply(WebDriver webDriver) {
+                    return !webDriver.getCurrentUrl().startsWith(connectionUrl)
+                            && "complete".equals(((JavascriptExecutor) webDriver).executeScript("return document.readyState"));
+                }
+            });
+        } catch (TimeoutException e) {
+            throw new ExtractionException("Authentification failed, still on " + driver.getCurrentUrl() + " after " + timeout + " ms", e);
+        }
+    }
+
+    /**
+     * Return the cookies of the browser session, which one is authenticated after the call of authentification().
+     *
+     * @return cookies of the session
+     */
+    public Set<Cookie> getCookies() {
+        return driver.manage().getCookies();
+    }
+
+    @Override
+    public String getContent(final @NotNull String url) throws ExtractionException {
+        driver.get(url);
+        return driver.getPageSource();
+    }
+
+    @Override
+    public String saveImage(final @NotNull String url, final @NotNull File imageFile) throws ExtractionException {
+
+        // The image is downloaded as it is, in the browser session
+        final StringBuilder cookieHeader = new StringBuilder();
+        for (Cookie cookie : getCookies()) {
+            if (cookieHeader.length() > 0) {
+                cookieHeader.append("; ");
+            }
+            cookieHeader.append(cookie.getName()).append('=').append(cookie.getValue());
+        }
+
+        HttpURLConnection connection = null;
+        try {
+            // A stalled server must not block the browser session, the download is then tried again
+            final int timeout = Integer.parseInt(ConfigurationProperties.getProperty("extraction.http.timeout", "30000"));
+            connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(timeout);
+            connection.setReadTimeout(timeout);
+            connection.setRequestProperty("Cookie", cookieHeader.toString());
+            final int status = connection.getResponseCode();
+            if (status >= 500 || status == 408 || status == 429) {
+                throw new TransientExtractionException("Failed to download the image " + url + " - HTTP status " + status);
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new ExtractionException("Failed to download the image " + url + " - HTTP status " + status);
+            }
+            try (InputStream inputStream = connection.getInputStream()) {
+                return FileTransfer.transfer(inputStream, imageFile);
+            }
+        } catch (IOException e) {
+            throw new TransientExtractionException("Failed to save the image " + url, e);
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    @Override
+    public void saveAttachment(final @NotNull String url, final @NotNull String name, final @NotNull File attachmentFile) throws ExtractionException {
+
+        // Get the maximum time to wait for the download of an attachment of an User Storie
+        final long timeoutdownload = Long.parseLong(ConfigurationProperties.getProperty("tp.attachment.timeoutdownload"));
+
+        // The browser saves the document with its original name
+        final File file = new File(attachmentsDirectory + "\\" + name);
+
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            // Watch the directory before the download starts, so no event can be missed
+            new File(attachmentsDirectory).toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+
+            driver.get(url);
+
+            // A download not finished in time is a failure, the partial document is removed for the next attempt
+            if (!waitForDownload(watchService, file, timeoutdownload)) {
+                if (file.exists() && !file.delete()) {
+                    logger.warn("PARTIAL ATTACHMENT NOT DELETED - " + file.getAbsolutePath());
+                }
+                throw new TransientExtractionException("Download of " + url + " not finished after " + timeoutdownload + " ms - " + file.getAbsolutePath());
+            }
+        } catch (IOException e) {
+            throw new ExtractionException("Failed to watch the download of " + url, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExtractionException("Interrupted while downloading " + url, e);
+        }
+
+        // Rename the document with the expected name
+        if (!file.renameTo(attachmentFile)) {
+            throw new TransientExtractionException("Failed to rename the attachment " + file.getAbsolutePath() + " to " + attachmentFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Wait until the browser has finished to download a file.
+     * <p>
+     * Firefox writes the content in a ".part" file, then renames it with the name of the document. The download is
+     * finished when the document exists and the ".part" file does not exist anymore.
+     *
+     * @param watchService - Watch service registered on the download directory
+     * @param file         - File downloaded
+     * @param timeout      - Maximum time to wait (in ms)
+     * @return true if the download is finished, false if the timeout is reached
+     * @throws InterruptedException
+     */
+    private boolean waitForDownload(final @NotNull WatchService watchService, final @NotNull File file, final long timeout) throws InterruptedException {
+        final File partFile = new File(file.getAbsolutePath() + ".part");
+        final long deadline = System.currentTimeMillis() + timeout;
+        boolean partFileSeen = false;
+
+        while (true) {
+            partFileSeen |= partFile.exists();
+            // An empty document is created at the start of the download, so it is only finished once content is written
+            // or the ".part" file is gone
+            if (file.exists() && !partFile.exists() && (partFileSeen || file.length() > 0)) {
+                return true;
+            }
+
+            final long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+
+            final WatchKey key = watchService.poll(remaining, TimeUnit.MILLISECONDS);
+            if (key == null) {
+                return false;
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (partFile.getName().equals(String.valueOf(event.context()))) {
+                    partFileSeen = true;
+                }
+            }
+            key.reset();
+        }
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        // Only one page can be loaded at a time in the browser
+        return false;
+    }
+
+    @Override
+    public void close() {
+        // Close the browser
+        driver.quit();
+    }
+}
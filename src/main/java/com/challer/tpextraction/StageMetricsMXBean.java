@@ -0,0 +1,30 @@
+package com.challer.tpextraction;
+
+/**
+ * Latencies of a stage of the run, exposed through JMX under the name
+ * "com.challer.tpextraction:type=RunMetrics,stage=&lt;stage&gt;".
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public interface StageMetricsMXBean {
+
+    /**
+     * @return the number of times the stage has been done
+     */
+    long getCount();
+
+    /**
+     * @return the time spent in the stage by all the threads, in ms
+     */
+    double getTotalMillis();
+
+    /**
+     * @return the mean duration of the stage, in ms
+     */
+    double getMeanMillis();
+
+    /**
+     * @return the longest duration of the stage, in ms
+     */
+    double getMaxMillis();
+}
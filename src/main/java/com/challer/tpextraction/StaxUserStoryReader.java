@@ -0,0 +1,209 @@
+package com.challer.tpextraction;
+
+import com.sun.istack.internal.NotNull;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read the XML file of an User Story in a single pass with the StAX API, without loading the whole document.
+ * <p>
+ * Values are the same as the ones of {@link JdomUserStoryReader} : the root element giving the entity, the first
+ * Description, CreateDate, ModifyDate, Feature and EntityState elements of the document, the first element referencing
+ * the parent of the entity, and the Field elements under CustomFields.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public class StaxUserStoryReader extends UserStoryReader {
+
+    /**
+     * Factory of StAX readers, which one can be shared by threads once configured
+     */
+    private final static XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+
+    static {
+        xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    @Override
+    public UserStory read(final @NotNull File userStoryFile) throws ExtractionException {
+        try (InputStream userStoryInputStream = new BufferedInputStream(new FileInputStream(userStoryFile))) {
+            final XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(userStoryInputStream);
+            try {
+                return read(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (FileNotFoundException e) {
+            throw new ExtractionException("Failed to open file " + userStoryFile.getName(), e);
+        } catch (IOException | XMLStreamException e) {
+            throw new ExtractionException("Failed to load US " + userStoryFile.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Populate an object User Story from a StAX reader.
+     *
+     * @param reader - StAX reader positioned at the start of the document
+     * @return the User Story populated
+     * @throws XMLStreamException
+     */
+    private UserStory read(final @NotNull XMLStreamReader reader) throws XMLStreamException {
+
+        final UserStory us = new UserStory();
+        final Map<String, String> customFields = new HashMap<>();
+
+        boolean rootRead = false;
+        boolean userStoryRead = false;
+        boolean parentRead = false;
+        boolean descriptionRead = false;
+        boolean creationDateRead = false;
+        boolean lastModificationDateRead = false;
+        boolean featureRead = false;
+        boolean stateRead = false;
+
+        // Depth of the reader in CustomFields elements
+        int customFieldsDepth = 0;
+
+        while (reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT && "CustomFields".equals(reader.getLocalName())) {
+                customFieldsDepth--;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+
+            final String element = reader.getLocalName();
+
+            // The root element gives the type of the entity, a document without entity root is read as an User Story
+            if (!rootRead) {
+                rootRead = true;
+                final EntityType type = EntityType.fromElement(element);
+                if (type != null) {
+                    userStoryRead = true;
+                    us.setType(type);
+                    us.setId(reader.getAttributeValue(null, "Id"));
+                    us.setTitle(reader.getAttributeValue(null, "Name"));
+                    continue;
+                }
+            }
+
+            if (!parentRead && element.equals(us.getType().getParent())) {
+                parentRead = true;
+                us.setParentId(reader.getAttributeValue(null, "Id"));
+                us.setParentName(reader.getAttributeValue(null, "Name"));
+            }
+
+            if ("UserStory".equals(element) && !userStoryRead) {
+                userStoryRead = true;
+                us.setId(reader.getAttributeValue(null, "Id"));
+                us.setTitle(reader.getAttributeValue(null, "Name"));
+            } else if ("Description".equals(element) && !descriptionRead) {
+                descriptionRead = true;
+                us.setDescription(emptyToNull(readText(reader)));
+            } else if ("CreateDate".equals(element) && !creationDateRead) {
+                creationDateRead = true;
+                us.setCreationDay(toDay(emptyToNull(readText(reader))));
+            } else if ("ModifyDate".equals(element) && !lastModificationDateRead) {
+                lastModificationDateRead = true;
+                us.setLastModificationDay(toDay(emptyToNull(readText(reader))));
+            } else if ("Feature".equals(element) && !featureRead) {
+                featureRead = true;
+                us.setFeature(reader.getAttributeValue(null, "Name"));
+            } else if ("EntityState".equals(element) && !stateRead) {
+                stateRead = true;
+                us.setState(reader.getAttributeValue(null, "Name"));
+            } else if ("CustomFields".equals(element)) {
+                customFieldsDepth++;
+            } else if ("Field".equals(element) && customFieldsDepth > 0) {
+                readCustomField(reader, customFields);
+            }
+        }
+
+        if (us.getType() == EntityType.FEATURE) {
+            us.setFeature(us.getTitle());
+        } else if (us.getFeature() == null) {
+            us.setFeature("");
+        }
+        us.setCustomFields(customFields);
+
+        return us;
+    }
+
+    /**
+     * Read a custom field and add it to the Map.
+     *
+     * @param reader       - StAX reader positioned on the start of the Field element
+     * @param customFields - custom fields of the User Story
+     * @throws XMLStreamException
+     */
+    private void readCustomField(final @NotNull XMLStreamReader reader, final @NotNull Map<String, String> customFields) throws XMLStreamException {
+
+        final boolean isDate = "Date".equals(reader.getAttributeValue(null, "Type"));
+        String name = null;
+        String value = null;
+
+        int depth = 1;
+        while (depth > 0) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (depth == 1 && "Name".equals(reader.getLocalName())) {
+                    name = readText(reader);
+                } else if (depth == 1 && "Value".equals(reader.getLocalName())) {
+                    value = readText(reader);
+                    if (isDate && value.length() > 0) {
+                        value = formatDate(value);
+                    }
+                } else {
+                    depth++;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+
+        customFields.put(name, value);
+    }
+
+    /**
+     * Read the text of the current element, including the text of its children.
+     *
+     * @param reader - StAX reader positioned on the start of the element, and on its end when returning
+     * @return the text
+     * @throws XMLStreamException
+     */
+    private String readText(final @NotNull XMLStreamReader reader) throws XMLStreamException {
+        final StringBuilder text = new StringBuilder();
+        int depth = 1;
+        while (depth > 0) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE) {
+                text.append(reader.getText());
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * An empty element has no content, its value is null as for {@link JdomUserStoryReader}.
+     *
+     * @param text - Text of an element
+     * @return the text, or null if it is empty
+     */
+    private static String emptyToNull(final @NotNull String text) {
+        return text.isEmpty() ? null : text;
+    }
+}
@@ -0,0 +1,61 @@
+package com.challer.tpextraction;
+
+import com.sun.istack.internal.NotNull;
+
+import java.io.File;
+
+/**
+ * Fetch layer used to download the content of Target Process (User Stories, images and attachments).
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public interface StoryFetcher {
+
+    /**
+     * Perform the authentification on Target Process website.
+     *
+     * @throws ExtractionException
+     */
+    void authentification() throws ExtractionException;
+
+    /**
+     * Download a resource of the Target Process REST service and return its content.
+     *
+     * @param url - URL of the resource
+     * @return the XML content of the resource
+     * @throws ExtractionException
+     */
+    String getContent(final @NotNull String url) throws ExtractionException;
+
+    /**
+     * Download an image and save it in a file, as it is stored by Target Process.
+     *
+     * @param url       - URL of the image
+     * @param imageFile - File where the image has to be saved
+     * @return SHA-256 hash of the image, in hexadecimal
+     * @throws ExtractionException
+     */
+    String saveImage(final @NotNull String url, final @NotNull File imageFile) throws ExtractionException;
+
+    /**
+     * Download an attachment and save it in a file.
+     *
+     * @param url            - URL of the attachment
+     * @param name           - Name of the attachment in Target Process
+     * @param attachmentFile - File where the attachment has to be saved
+     * @throws ExtractionException
+     */
+    void saveAttachment(final @NotNull String url, final @NotNull String name, final @NotNull File attachmentFile) throws ExtractionException;
+
+    /**
+     * Indicate if the fetcher can be used by several threads at the same time.
+     *
+     * @return true if the fetcher is thread-safe
+     */
+    boolean isThreadSafe();
+
+    /**
+     * Release the resources used to connect to Target Process.
+     */
+    void close();
+}
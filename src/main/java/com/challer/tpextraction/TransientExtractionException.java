@@ -0,0 +1,21 @@
+package com.challer.tpextraction;
+
+/**
+ * Is used for failures which can disappear by themselves (network errors, server overloaded...) : the operation can
+ * be tried again.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public class TransientExtractionException extends ExtractionException {
+
+    private static final long serialVersionUID = 1L;
+
+    public TransientExtractionException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+
+    public TransientExtractionException(final String message) {
+        super(message);
+    }
+
+}
@@ -1,41 +1,121 @@
 package com.challer.tpextraction;
 
 import org.apache.commons.lang3.StringEscapeUtils;
+import org.joda.time.Days;
+import org.joda.time.LocalDate;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
 
 import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * Represent the content of an User Story
+ * Represent the content of an User Story, or of another entity of Target Process given by its {@link EntityType}
+ * <p>
+ * A website can have more than 100 000 User Stories in memory, so the representation is compact : the names of
+ * features, parents, states and custom fields are shared by all the User Stories, dates are stored as days since
+ * 1970-01-01, and custom fields in an array. The content of the page (description, custom fields, attachments) is
+ * released once the page is generated, see {@link #releaseContent()}.
  *
  * @author Cyril Haller - cyril.haller@gmail.com
  */
 public class UserStory {
 
+    /**
+     * Day of an User Story without date
+     */
+    public final static int NO_DATE = Integer.MIN_VALUE;
+
+    /**
+     * First day, its number is 0
+     */
+    private final static LocalDate EPOCH = new LocalDate(1970, 1, 1);
+
+    /**
+     * Format of dates for display
+     */
+    private final static DateTimeFormatter DISPLAY_FORMAT = DateTimeFormat.forPattern("dd/MM/yyyy");
+
+    /**
+     * Names shared by all the User Stories : features, parents, states and custom fields
+     */
+    private final static ConcurrentMap<String, String> NAMES = new ConcurrentHashMap<>();
+
+    private EntityType type = EntityType.USER_STORY;
+
     private String id;
 
     private String title;
 
+    /**
+     * ID and name of the entity this one belongs to, null if it belongs to none
+     */
+    private String parentId;
+
+    private String parentName;
+
+    /**
+     * True if the entity this one belongs to has a page in the website
+     */
+    private boolean parentInWebsite;
+
+    /**
+     * Entities of the website belonging to this one, only set while its page is generated
+     */
+    private List<UserStory> children;
+
     private String description;
 
     private String feature;
 
-    private String creationDate;
+    /**
+     * Days since 1970-01-01, or {@link #NO_DATE}
+     */
+    private int creationDay = NO_DATE;
 
-    private String lastModificationDate;
+    /**
+     * Days since 1970-01-01, or {@link #NO_DATE}
+     */
+    private int lastModificationDay = NO_DATE;
 
     private String state;
 
-    private Map<String, String> customFields;
+    /**
+     * Names and values of the custom fields, one after the other
+     */
+    private String[] customFields;
 
     private File[] attachments;
 
+    /**
+     * @return the custom fields, in the order they were set
+     */
     public Map<String, String> getCustomFields() {
-        return customFields;
+        if (customFields == null) {
+            return null;
+        }
+        final Map<String, String> map = new LinkedHashMap<>();
+        for (int i = 0; i < customFields.length; i += 2) {
+            map.put(customFields[i], customFields[i + 1]);
+        }
+        return map;
     }
 
     public void setCustomFields(Map<String, String> customFields) {
-        this.customFields = customFields;
+        if (customFields == null) {
+            this.customFields = null;
+            return;
+        }
+        this.customFields = new String[customFields.size() * 2];
+        int i = 0;
+        for (Map.Entry<String, String> customField : customFields.entrySet()) {
+            this.customFields[i++] = share(customField.getKey());
+            this.customFields[i++] = customField.getValue();
+        }
     }
 
     public File[] getAttachments() {
@@ -51,7 +131,7 @@ public class UserStory {
     }
 
     public void setState(String state) {
-        this.state = state;
+        this.state = share(state);
     }
 
     public String getId() {
@@ -62,6 +142,77 @@ public class UserStory {
         this.id = id;
     }
 
+    public EntityType getType() {
+        return type;
+    }
+
+    public void setType(EntityType type) {
+        this.type = type;
+    }
+
+    /**
+     * @return the type displayed before the ID of the entity, like "Bug ", empty for an User Story
+     */
+    public String getDisplayedType() {
+        return type == EntityType.USER_STORY ? "" : type.getLabel() + " ";
+    }
+
+    /**
+     * @return the name of the page of the entity
+     */
+    public String getPageName() {
+        return type.getPageName(id);
+    }
+
+    public String getParentId() {
+        return parentId;
+    }
+
+    public void setParentId(String parentId) {
+        this.parentId = parentId;
+    }
+
+    public String getParentName() {
+        return parentName;
+    }
+
+    public void setParentName(String parentName) {
+        this.parentName = share(parentName);
+    }
+
+    /**
+     * @return the type of the entity this one belongs to, null if it belongs to none
+     */
+    public EntityType getParentType() {
+        return type.getParentType();
+    }
+
+    public boolean isParentInWebsite() {
+        return parentInWebsite;
+    }
+
+    public void setParentInWebsite(boolean parentInWebsite) {
+        this.parentInWebsite = parentInWebsite;
+    }
+
+    /**
+     * @return the name of the page of the entity this one belongs to, null if it belongs to none or if it has no page
+     */
+    public String getParentPageName() {
+        if (parentId == null || !parentInWebsite || type.getParentType() == null) {
+            return null;
+        }
+        return type.getParentType().getPageName(parentId);
+    }
+
+    public List<UserStory> getChildren() {
+        return children;
+    }
+
+    public void setChildren(List<UserStory> children) {
+        this.children = children;
+    }
+
     public String getTitle() {
         return title;
     }
@@ -83,23 +234,37 @@ public class UserStory {
     }
 
     public void setFeature(String feature) {
-        this.feature = feature;
+        this.feature = share(feature);
     }
 
+    /**
+     * @return the creation date formatted for display, or null if there is no date
+     */
     public String getCreationDate() {
-        return creationDate;
+        return formatDay(creationDay);
     }
 
-    public void setCreationDate(String creationDate) {
-        this.creationDate = creationDate;
+    public int getCreationDay() {
+        return creationDay;
     }
 
+    public void setCreationDay(int creationDay) {
+        this.creationDay = creationDay;
+    }
+
+    /**
+     * @return the last modification date formatted for display, or null if there is no date
+     */
     public String getLastModificationDate() {
-        return lastModificationDate;
+        return formatDay(lastModificationDay);
+    }
+
+    public int getLastModificationDay() {
+        return lastModificationDay;
     }
 
-    public void setLastModificationDate(String lastModificationDate) {
-        this.lastModificationDate = lastModificationDate;
+    public void setLastModificationDay(int lastModificationDay) {
+        this.lastModificationDay = lastModificationDay;
     }
 
     public String getTitleHtmlSafe() {
@@ -107,4 +272,52 @@ public class UserStory {
         temp = temp.replace("\"", "");
         return StringEscapeUtils.escapeHtml4(temp);
     }
+
+    /**
+     * Release the content of the page once it is generated and indexed. Only what the listing page displays stays in
+     * memory : type, id, title, parent, feature and state.
+     */
+    public void releaseContent() {
+        description = null;
+        children = null;
+        customFields = null;
+        attachments = null;
+    }
+
+    /**
+     * Return the number of a day.
+     *
+     * @param date - Date
+     * @return the days since 1970-01-01
+     */
+    public static int toDay(final LocalDate date) {
+        return Days.daysBetween(EPOCH, date).getDays();
+    }
+
+    /**
+     * Format a day for display.
+     *
+     * @param day - Days since 1970-01-01, or {@link #NO_DATE}
+     * @return the date formatted, or null if there is no date
+     */
+    private static String formatDay(final int day) {
+        if (day == NO_DATE) {
+            return null;
+        }
+        return DISPLAY_FORMAT.print(EPOCH.plusDays(day));
+    }
+
+    /**
+     * Return the instance of a name shared by all the User Stories.
+     *
+     * @param name - Name of a feature, a parent, a state or a custom field
+     * @return the shared instance
+     */
+    private static String share(final String name) {
+        if (name == null) {
+            return null;
+        }
+        final String sharedName = NAMES.putIfAbsent(name, name);
+        return sharedName == null ? name : sharedName;
+    }
 }
@@ -1,28 +1,30 @@
 package com.challer.tpextraction;
 
 import com.sun.istack.internal.NotNull;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
-import org.jdom2.Content;
 import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.JDOMException;
-import org.jdom2.filter.Filters;
-import org.jdom2.input.SAXBuilder;
-import org.jdom2.xpath.XPathExpression;
-import org.jdom2.xpath.XPathFactory;
-import org.openqa.selenium.*;
-import org.openqa.selenium.firefox.FirefoxDriver;
-import org.openqa.selenium.firefox.FirefoxProfile;
+import org.jdom2.output.XMLOutputter;
 import org.slf4j.LoggerFactory;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
 import java.io.*;
-import java.util.List;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 /**
- * This class provides methods to extract User Stories from Target Process.
+ * This class provides methods to extract User Stories from Target Process, and the other entities listed with them :
+ * Bugs, Tasks, Features and Epics. All the entities are extracted in the same run, through the same connections and
+ * workers, in the same snapshot directory.
  *
  * @author Cyril Haller - cyril.haller@gmail.com
  */
@@ -39,15 +41,61 @@ public class UserStoryExtractor {
     private static UserStoryExtractor instance;
 
     /**
-     * Webdriver used to connect to Target Process
+     * Fetch layer used to connect to Target Process
      */
-    private final WebDriver driver;
+    private final ResilientStoryFetcher fetcher;
 
     /**
      * Date/Hour of starting extraction
      */
     private final String startDateTime;
 
+    /**
+     * Images already saved or being saved, an image referenced by several User Stories is only downloaded once : the
+     * other User Stories wait for the result of its download
+     */
+    private final ConcurrentMap<String, CompletableFuture<Void>> savedImages = new ConcurrentHashMap<>();
+
+    /**
+     * Result of an image already in the snapshot directory
+     */
+    private final static CompletableFuture<Void> IMAGE_SAVED = CompletableFuture.completedFuture(null);
+
+    /**
+     * Store of the images and attachments, shared by all the extractions
+     */
+    private BlobStore blobStore;
+
+    /**
+     * Manifest of the current extraction
+     */
+    private final ExtractionManifest manifest;
+
+    /**
+     * Metrics of the run
+     */
+    private final RunMetrics metrics = RunMetrics.getInstance();
+
+    /**
+     * IDs of the User Stories which have failed to be saved
+     */
+    private final Set<String> failedUserStoryIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Journal of the User Stories completely saved, used to resume an interrupted extraction
+     */
+    private CheckpointJournal journal;
+
+    /**
+     * Listener notified of each User Story saved, if any
+     */
+    private UserStoryListener userStoryListener;
+
+    /**
+     * Types of the entities to extract by ID, in the order of the csv file
+     */
+    private Map<String, EntityType> entityTypes;
+
     /**
      * Constructor
      *
@@ -55,12 +103,7 @@ public class UserStoryExtractor {
      */
     private UserStoryExtractor(final @NotNull String startDateTime) {
         this.startDateTime = startDateTime;
-
-        // Configure and call the browser FireFox
-        final FirefoxProfile firefoxProfile = new FirefoxProfile();
-
-        firefoxProfile.setPreference("browser.download.folderList", 2);
-        firefoxProfile.setPreference("browser.download.manager.showWhenStarting", false);
+        this.manifest = new ExtractionManifest(startDateTime);
 
         // Get the directory where User Stories information have to be stored
         final String outputPathUserStoriesSaving = ConfigurationProperties.getProperty("outputpathuserstoriessaving") + "\\" + startDateTime;
@@ -72,24 +115,26 @@ public class UserStoryExtractor {
         final File imagesDirectory = new File(outputPathUserStoriesSaving + "\\images");
         imagesDirectory.mkdir();
 
-        firefoxProfile.setPreference("browser.download.dir", outputPathUserStoriesSaving + "\\attachments");
-
-        // Get different typemine allowed for the downloading
-        final String typemime = ConfigurationProperties.getProperty("tp.attachment.typemime");
-        firefoxProfile.setPreference("browser.helperApps.neverAsk.saveToDisk", typemime);
-
-        // Disable Firefox's built-in PDF viewer
-        firefoxProfile.setPreference("pdfjs.disabled", true);
-
-        // Disable Adobe Acrobat PDF preview plugin
-        //firefoxProfile.setPreference("plugin.scan.plid.all", false);
-        //firefoxProfile.setPreference("plugin.scan.Acrobat", "99.0");
-
-        // Call the browser Firefox
-        driver = new FirefoxDriver(firefoxProfile);
-
-        // Set the timeout at 30 seconds
-        driver.manage().timeouts().implicitlyWait(30, TimeUnit.SECONDS);
+        // Choose the fetch layer : direct HTTP calls, or the browser Firefox as fallback
+        final String fetcherMode = ConfigurationProperties.getProperty("extraction.fetcher", "http");
+        final StoryFetcher storyFetcher;
+        if ("selenium".equalsIgnoreCase(fetcherMode)) {
+            storyFetcher = new SeleniumStoryFetcher(outputPathUserStoriesSaving + "\\attachments");
+        } else {
+            storyFetcher = new HttpStoryFetcher(outputPathUserStoriesSaving + "\\attachments");
+        }
+        logger.debug("FETCHER USED - {}", storyFetcher.getClass().getSimpleName());
+
+        // Transient failures are tried again, and the calls paused when Target Process is overloaded
+        final RetryPolicy retryPolicy = new RetryPolicy(
+                Integer.parseInt(ConfigurationProperties.getProperty("extraction.retry.maxattempts", "3")),
+                Long.parseLong(ConfigurationProperties.getProperty("extraction.retry.initialdelay", "1000")),
+                Long.parseLong(ConfigurationProperties.getProperty("extraction.retry.maxdelay", "30000")));
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(
+                Integer.parseInt(ConfigurationProperties.getProperty("extraction.circuitbreaker.window", "20")),
+                Double.parseDouble(ConfigurationProperties.getProperty("extraction.circuitbreaker.threshold", "0.5")),
+                Long.parseLong(ConfigurationProperties.getProperty("extraction.circuitbreaker.pause", "30000")));
+        fetcher = new ResilientStoryFetcher(storyFetcher, retryPolicy, circuitBreaker);
     }
 
     /**
@@ -106,11 +151,34 @@ public class UserStoryExtractor {
     }
 
     /**
-     * Save all User Stories referenced in the csv file.
+     * Register the listener notified of each User Story saved.
+     *
+     * @param userStoryListener - Listener, or null to notify nobody
+     */
+    public void setUserStoryListener(final UserStoryListener userStoryListener) {
+        this.userStoryListener = userStoryListener;
+    }
+
+    /**
+     * Return the manifest of the current extraction, filled as the User Stories are saved.
      *
+     * @return the manifest
+     */
+    public ExtractionManifest getManifest() {
+        return manifest;
+    }
+
+    /**
+     * Return the entities referenced in the csv file. A line is the ID of an User Story, or the type and the ID of
+     * another entity separated by a comma or a semicolon, like "Bug,1234".
+     *
+     * @return the types of the entities by ID, in the order of the csv file
      * @throws ExtractionException
      */
-    public void saveUserStories() throws ExtractionException {
+    public synchronized Map<String, EntityType> getEntityTypes() throws ExtractionException {
+        if (entityTypes != null) {
+            return entityTypes;
+        }
 
         // Get the csv User Stories list
         final String inputUserStoriesListFile = ConfigurationProperties.getProperty("inputuserstorieslistfile");
@@ -122,22 +190,550 @@ public class UserStoryExtractor {
             throw new ExtractionException("Failed to open file " + inputUserStoriesListFile, e);
         }
 
+        final Map<String, EntityType> types = new LinkedHashMap<>();
         InputStreamReader userStoriesInputStreamReader = new InputStreamReader(userStoriesInputStream);
         BufferedReader br = new BufferedReader(userStoriesInputStreamReader);
         try {
-            String userStoryId;
-            while ((userStoryId = br.readLine()) != null) {
-                try {
-                    saveUserStorie(userStoryId);
-                } catch (ExtractionException e) {
-                    logger.error("Failed to save US " + userStoryId, e);
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+
+                // The type is optional, an ID alone (separator ending the line included) is an User Story
+                line = line.trim();
+                while (line.endsWith(",") || line.endsWith(";")) {
+                    line = line.substring(0, line.length() - 1).trim();
                 }
+                final int separator = Math.max(line.indexOf(','), line.indexOf(';'));
+                EntityType type = EntityType.USER_STORY;
+                if (separator >= 0) {
+                    type = EntityType.parse(line.substring(0, separator));
+                    if (type == null) {
+                        throw new ExtractionException("Unknown entity type " + line.substring(0, separator).trim() + " in file " + inputUserStoriesListFile);
+                    }
+                }
+                types.put(line.substring(separator + 1).trim(), type);
             }
 
             br.close();
         } catch (IOException e) {
             throw new ExtractionException("Failed to read file " + inputUserStoriesListFile, e);
         }
+
+        entityTypes = Collections.unmodifiableMap(types);
+        return entityTypes;
+    }
+
+    /**
+     * Save all User Stories and other entities referenced in the csv file.
+     *
+     * @throws ExtractionException
+     */
+    public void saveUserStories() throws ExtractionException {
+
+        List<String> userStoryIds = new ArrayList<>(getEntityTypes().keySet());
+        logger.debug("US SAVING - ENTITIES TO SAVE BY TYPE - {}", countByType(userStoryIds));
+
+        // Get the directory where User Stories information have to be stored
+        final String outputPathUserStoriesSaving = ConfigurationProperties.getProperty("outputpathuserstoriessaving") + "\\" + startDateTime;
+
+        // Images and attachments already downloaded by previous extractions are linked from the blob store
+        blobStore = new BlobStore(ConfigurationProperties.getProperty("outputpathuserstoriessaving"));
+
+        // A snapshot file left by an interrupted extraction would not contain the User Stories saved now
+        final File snapshotFile = new File(outputPathUserStoriesSaving + "\\" + UserStorySnapshot.SNAPSHOT_FILE);
+        if (snapshotFile.exists() && !snapshotFile.delete()) {
+            throw new ExtractionException("Failed to delete the snapshot file " + snapshotFile.getAbsolutePath());
+        }
+
+        // The User Stories already saved in this snapshot directory by an interrupted extraction are not saved again
+        final File journalFile = new File(outputPathUserStoriesSaving + "\\" + CheckpointJournal.JOURNAL_FILE);
+        if (journalFile.exists()) {
+            userStoryIds = skipCompletedUserStories(userStoryIds, CheckpointJournal.load(journalFile));
+        }
+        journal = new CheckpointJournal(journalFile, Integer.parseInt(ConfigurationProperties.getProperty("extraction.checkpoint.syncinterval", "50")));
+        try {
+            saveUserStories(userStoryIds);
+        } finally {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close the journal " + journalFile.getAbsolutePath(), e);
+            }
+            blobStore.save();
+        }
+
+        // The manifest is the starting point of the next incremental extraction
+        manifest.save(new File(ConfigurationProperties.getProperty("outputpathuserstoriessaving") + "\\" + ExtractionManifest.MANIFEST_FILE));
+
+        // All the User Stories in a single file, the website and the other tools read it instead of the XML files
+        if (Boolean.parseBoolean(ConfigurationProperties.getProperty("extraction.snapshotfile", "true"))) {
+            logger.info("WRITING SNAPSHOT FILE " + snapshotFile.getAbsolutePath());
+            final long writeStart = System.nanoTime();
+            try {
+                UserStorySnapshot.write(snapshotFile, WebsiteGenerator.listUserStoriesFiles(outputPathUserStoriesSaving), UserStoryReader.getInstance());
+                metrics.addBytesWritten(snapshotFile.length());
+            } catch (ExtractionException e) {
+                // The XML files stay the reference, the website is then generated from them
+                logger.warn("Failed to write the snapshot file " + snapshotFile.getAbsolutePath(), e);
+            } finally {
+                metrics.record(RunMetrics.Stage.WRITE, writeStart);
+            }
+        }
+    }
+
+    /**
+     * Save User Stories, checkpointing each one saved in the journal.
+     *
+     * @param userStoryIds - IDs of the User Stories to save
+     * @throws ExtractionException
+     */
+    private void saveUserStories(List<String> userStoryIds) throws ExtractionException {
+
+        // In incremental mode, the User Stories not modified since the previous extraction are not downloaded again
+        if (Boolean.parseBoolean(ConfigurationProperties.getProperty("extraction.incremental", "false"))) {
+            userStoryIds = copyForwardUnmodifiedUserStories(userStoryIds);
+        }
+
+        // Number of User Stories extracted at the same time
+        int parallelism = Integer.parseInt(ConfigurationProperties.getProperty("extraction.parallelism", "1"));
+        if (parallelism > 1 && !fetcher.isThreadSafe()) {
+            logger.warn("FETCHER " + ConfigurationProperties.getProperty("extraction.fetcher", "http").toUpperCase() + " CAN NOT BE SHARED - US ARE EXTRACTED ONE BY ONE");
+            parallelism = 1;
+        }
+
+        final int batchSize = Integer.parseInt(ConfigurationProperties.getProperty("extraction.batchsize", "0"));
+        runTasks(createTasks(userStoryIds, batchSize), parallelism);
+
+        // A last pass tries again, one by one, the User Stories which have failed
+        int finalPassUserStories = 0;
+        if (!failedUserStoryIds.isEmpty() && Boolean.parseBoolean(ConfigurationProperties.getProperty("extraction.retry.finalpass", "true"))) {
+            final List<String> userStoryIdsToRetry = new ArrayList<>(new TreeSet<>(failedUserStoryIds));
+            failedUserStoryIds.clear();
+            finalPassUserStories = userStoryIdsToRetry.size();
+            for (String userStoryId : userStoryIdsToRetry) {
+                deleteFilesOfUserStorie(userStoryId);
+            }
+            logger.info("US SAVING - FINAL PASS ON " + finalPassUserStories + " FAILED US");
+            runTasks(createTasks(userStoryIdsToRetry, 0), parallelism);
+        }
+
+        // Report of the extraction
+        final Set<String> failedIds = new TreeSet<>(failedUserStoryIds);
+        logger.info("US SAVING - REPORT - " + (userStoryIds.size() - failedIds.size()) + " US SAVED - " + failedIds.size()
+                + " US FAILED - " + fetcher.getRetries() + " CALLS RETRIED - " + finalPassUserStories + " US RETRIED BY THE FINAL PASS");
+        if (!failedIds.isEmpty()) {
+            logger.error("US NOT SAVED - " + failedIds);
+        }
+    }
+
+    /**
+     * Split the extraction in tasks : one task by US, or one task by batch of US. A batch only contains entities of
+     * the same type, the tasks of all the types are run by the same workers.
+     *
+     * @param userStoryIds - IDs of the User Stories to save
+     * @param batchSize    - Number of User Stories of a batch, 0 or 1 to save them one by one
+     * @return the tasks
+     */
+    private List<Runnable> createTasks(final @NotNull List<String> userStoryIds, final int batchSize) {
+        final List<Runnable> tasks = new ArrayList<>();
+        if (batchSize > 1) {
+            final Map<EntityType, List<String>> idsByType = new EnumMap<>(EntityType.class);
+            for (String userStoryId : userStoryIds) {
+                List<String> ids = idsByType.get(getEntityType(userStoryId));
+                if (ids == null) {
+                    ids = new ArrayList<>();
+                    idsByType.put(getEntityType(userStoryId), ids);
+                }
+                ids.add(userStoryId);
+            }
+            for (Map.Entry<EntityType, List<String>> typeIds : idsByType.entrySet()) {
+                final EntityType type = typeIds.getKey();
+                final List<String> ids = typeIds.getValue();
+                for (int i = 0; i < ids.size(); i += batchSize) {
+                    final List<String> batch = new ArrayList<>(ids.subList(i, Math.min(i + batchSize, ids.size())));
+                    tasks.add(new Runnable() {
+                        public void run() {
+                            saveUserStoriesBatchAndLogFailure(type, batch);
+                        }
+                    });
+                }
+            }
+        } else {
+            for (final String userStoryId : userStoryIds) {
+                tasks.add(new Runnable() {
+                    public void run() {
+                        saveUserStorieAndLogFailure(userStoryId);
+                    }
+                });
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * Run the tasks of the extraction and wait for their end.
+     *
+     * @param tasks       - Tasks of the extraction
+     * @param parallelism - Number of tasks run at the same time
+     * @throws ExtractionException
+     */
+    private void runTasks(final @NotNull List<Runnable> tasks, final int parallelism) throws ExtractionException {
+        if (parallelism <= 1) {
+            for (Runnable task : tasks) {
+                task.run();
+            }
+        } else {
+            logger.debug("US SAVING - {} TASKS WITH {} WORKERS", tasks.size(), parallelism);
+            final ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+            for (Runnable task : tasks) {
+                executor.execute(task);
+            }
+            executor.shutdown();
+            try {
+                while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    logger.debug("US SAVING - WAITING FOR WORKERS");
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                throw new ExtractionException("US saving interrupted", e);
+            }
+        }
+    }
+
+    /**
+     * Return the type of an entity to extract.
+     *
+     * @param id - Entity ID
+     * @return the type given by the csv file, User Story by default
+     */
+    private EntityType getEntityType(final @NotNull String id) {
+        final EntityType type = entityTypes == null ? null : entityTypes.get(id);
+        return type == null ? EntityType.USER_STORY : type;
+    }
+
+    /**
+     * Count entities by type, for the logs.
+     *
+     * @param ids - Entity IDs
+     * @return the number of entities by type
+     */
+    private Map<EntityType, Integer> countByType(final @NotNull Collection<String> ids) {
+        final Map<EntityType, Integer> counts = new EnumMap<>(EntityType.class);
+        for (String id : ids) {
+            final Integer count = counts.get(getEntityType(id));
+            counts.put(getEntityType(id), count == null ? 1 : count + 1);
+        }
+        return counts;
+    }
+
+    /**
+     * Resume an interrupted extraction : the User Stories recorded in the journal, whose files are all present, are
+     * kept. The files left by the User Stories not completed are deleted, so they can be saved again.
+     *
+     * @param userStoryIds - IDs of the User Stories to save
+     * @param entries      - Entries of the journal
+     * @return the IDs of the User Stories which still have to be saved
+     * @throws ExtractionException
+     */
+    private List<String> skipCompletedUserStories(final @NotNull List<String> userStoryIds, final @NotNull List<ExtractionManifest.Entry> entries) throws ExtractionException {
+
+        // Get the directory where User Stories information have to be stored
+        final String outputPathUserStoriesSaving = ConfigurationProperties.getProperty("outputpathuserstoriessaving") + "\\" + startDateTime;
+
+        final Map<String, ExtractionManifest.Entry> completedUserStories = new HashMap<>();
+        for (ExtractionManifest.Entry entry : entries) {
+            completedUserStories.put(entry.getUserStoryId(), entry);
+        }
+
+        final List<String> userStoryIdsToSave = new ArrayList<>();
+        for (String userStoryId : userStoryIds) {
+            final ExtractionManifest.Entry entry = completedUserStories.get(userStoryId);
+            boolean completed = entry != null;
+            if (completed) {
+                for (String artifact : entry.getArtifacts()) {
+                    completed = completed && new File(outputPathUserStoriesSaving + "\\" + artifact).exists();
+                }
+            }
+
+            if (completed) {
+                manifest.put(entry);
+                for (String artifact : entry.getArtifacts()) {
+                    savedImages.put(artifact, IMAGE_SAVED);
+                }
+                notifyUserStorySaved(userStoryId);
+            } else {
+                deleteFilesOfUserStorie(userStoryId);
+                userStoryIdsToSave.add(userStoryId);
+            }
+        }
+
+        logger.debug("RESUMED EXTRACTION - {} US ALREADY SAVED IN {} - {} US TO SAVE",
+                userStoryIds.size() - userStoryIdsToSave.size(), outputPathUserStoriesSaving, userStoryIdsToSave.size());
+        return userStoryIdsToSave;
+    }
+
+    /**
+     * Delete the XML file and the attachments already saved for an User Story, before saving it again. Images are
+     * kept, as they are written at once and can be shared by several User Stories.
+     *
+     * @param userStoryId - User Story ID
+     */
+    private void deleteFilesOfUserStorie(final @NotNull String userStoryId) {
+
+        // Get the directory where User Stories information have to be stored
+        final String outputPathUserStoriesSaving = ConfigurationProperties.getProperty("outputpathuserstoriessaving") + "\\" + startDateTime;
+
+        FileUtils.deleteQuietly(new File(outputPathUserStoriesSaving + "\\" + getEntityType(userStoryId).getFileName(userStoryId)));
+
+        final File[] files = new File(outputPathUserStoriesSaving + "\\attachments").listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.startsWith(userStoryId + "-");
+            }
+        });
+        if (files != null) {
+            for (File file : files) {
+                logger.debug("RESUMED EXTRACTION - DELETING {}", file.getAbsolutePath());
+                FileUtils.deleteQuietly(file);
+            }
+        }
+    }
+
+    /**
+     * Copy forward, from the snapshot directory of the previous extraction, the User Stories which are not modified
+     * since this extraction.
+     *
+     * @param userStoryIds - IDs of the User Stories to save
+     * @return the IDs of the User Stories which still have to be downloaded
+     * @throws ExtractionException
+     */
+    private List<String> copyForwardUnmodifiedUserStories(final @NotNull List<String> userStoryIds) throws ExtractionException {
+
+        // Get the root directory of extractions
+        final String outputPath = ConfigurationProperties.getProperty("outputpathuserstoriessaving");
+
+        final ExtractionManifest previousManifest = ExtractionManifest.load(new File(outputPath + "\\" + ExtractionManifest.MANIFEST_FILE));
+        if (previousManifest == null || previousManifest.getSnapshot().equals(startDateTime)) {
+            logger.debug("INCREMENTAL EXTRACTION - NO PREVIOUS EXTRACTION");
+            return userStoryIds;
+        }
+
+        final String previousOutputPath = outputPath + "\\" + previousManifest.getSnapshot();
+        if (!new File(previousOutputPath).isDirectory()) {
+            logger.warn("INCREMENTAL EXTRACTION - PREVIOUS EXTRACTION " + previousOutputPath + " IS MISSING");
+            return userStoryIds;
+        }
+
+        // Ask Target Process which User Stories are modified since the previous extraction
+        final String lastModifyDate = previousManifest.getLastModifyDate();
+        final Map<String, String> modifiedUserStories = lastModifyDate == null
+                ? Collections.<String, String>emptyMap() : getModifiedUserStories(lastModifyDate);
+
+        final String currentOutputPath = outputPath + "\\" + startDateTime;
+        final List<String> userStoryIdsToSave = new ArrayList<>();
+        for (String userStoryId : userStoryIds) {
+            final ExtractionManifest.Entry entry = previousManifest.get(userStoryId);
+            final boolean modified = entry == null
+                    || (modifiedUserStories.containsKey(userStoryId) && !entry.getModifyDate().equals(modifiedUserStories.get(userStoryId)));
+
+            if (!modified && copyForward(entry, previousOutputPath, currentOutputPath)) {
+                completeUserStorie(entry);
+            } else {
+                userStoryIdsToSave.add(userStoryId);
+            }
+        }
+
+        logger.debug("INCREMENTAL EXTRACTION - {} US COPIED FROM {} - {} US TO DOWNLOAD",
+                userStoryIds.size() - userStoryIdsToSave.size(), previousOutputPath, userStoryIdsToSave.size());
+        return userStoryIdsToSave;
+    }
+
+    /**
+     * Return the User Stories, and the entities of the other types to extract, modified since a date.
+     *
+     * @param since - Modification date given by Target Process
+     * @return the modification date by User Story ID
+     * @throws ExtractionException
+     */
+    private Map<String, String> getModifiedUserStories(final @NotNull String since) throws ExtractionException {
+
+        // The query is done on the day, the exact dates are compared with the manifest
+        final String sinceDay = since.length() > 10 ? since.substring(0, 10) : since;
+
+        final Map<String, String> modifiedUserStories = new HashMap<>();
+        for (EntityType type : new TreeSet<>(getEntityTypes().values())) {
+
+            // Get the url to download the content of the entities of the type
+            final String userStoryUrl = type.getUrl();
+
+            final int take = 1000;
+            int skip = 0;
+            int count;
+            do {
+                final String url = userStoryUrl + "?where=(ModifyDate gte '" + sinceDay + "')&include=[Id,ModifyDate]&take=" + take + "&skip=" + skip;
+                logger.debug("GETTING MODIFIED US - {}", url);
+                final String userStoriesContent = fetcher.getContent(url);
+
+                final Document jdomDocument;
+                try {
+                    jdomDocument = XmlSupport.getSAXBuilder().build(new StringReader(userStoriesContent));
+                } catch (IOException | JDOMException e) {
+                    throw new ExtractionException("Failed to parse the modified US " + url, e);
+                }
+
+                final List<Element> userStories = jdomDocument.getRootElement().getChildren(type.getElement());
+                for (Element userStory : userStories) {
+                    modifiedUserStories.put(userStory.getAttributeValue("Id"), userStory.getChildText("ModifyDate"));
+                }
+                count = userStories.size();
+                skip += count;
+            } while (count == take);
+        }
+
+        return modifiedUserStories;
+    }
+
+    /**
+     * Copy the files of an User Story from a snapshot directory to another one. Files are hard-linked when the
+     * file system allows it.
+     *
+     * @param entry        - Manifest entry of the User Story
+     * @param previousPath - Snapshot directory containing the files
+     * @param currentPath  - Snapshot directory where files have to be copied
+     * @return true if all files are copied
+     */
+    private boolean copyForward(final @NotNull ExtractionManifest.Entry entry, final @NotNull String previousPath, final @NotNull String currentPath) {
+        for (String artifact : entry.getArtifacts()) {
+            final Path source = new File(previousPath + "\\" + artifact).toPath();
+            final Path target = new File(currentPath + "\\" + artifact).toPath();
+            if (!Files.exists(source)) {
+                logger.debug("INCREMENTAL EXTRACTION - US {} - {} IS MISSING", entry.getUserStoryId(), source);
+                return false;
+            }
+            try {
+                Files.createDirectories(target.getParent());
+                if (!Files.exists(target)) {
+                    try {
+                        Files.createLink(target, source);
+                    } catch (IOException | UnsupportedOperationException e) {
+                        Files.copy(source, target);
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("INCREMENTAL EXTRACTION - US " + entry.getUserStoryId() + " - FAILED TO COPY " + source, e);
+                return false;
+            }
+            savedImages.put(artifact, IMAGE_SAVED);
+        }
+        return true;
+    }
+
+    /**
+     * Save the content of an User Story, a failure (unexpected ones included) is only logged in order to continue with
+     * the next ones, the User Story being tried again by the final pass.
+     *
+     * @param userStoryId - ID a the User Storie to save
+     */
+    private void saveUserStorieAndLogFailure(final @NotNull String userStoryId) {
+        try {
+            saveUserStorie(userStoryId);
+        } catch (ExtractionException | IOException | RuntimeException e) {
+            logger.error("Failed to save US " + userStoryId, e);
+            failedUserStoryIds.add(userStoryId);
+            metrics.addFailures(1);
+        }
+    }
+
+    /**
+     * Save the content of a batch of User Stories, a failure (unexpected ones included) is only logged in order to
+     * continue with the next ones, the User Stories being tried again by the final pass.
+     *
+     * @param type         - Type of the entities of the batch
+     * @param userStoryIds - IDs of the User Stories to save
+     */
+    private void saveUserStoriesBatchAndLogFailure(final @NotNull EntityType type, final @NotNull List<String> userStoryIds) {
+        // The User Stories already handled by the pages of the batch downloaded before the failure are not failed
+        final Set<String> missingUserStoryIds = new LinkedHashSet<>(userStoryIds);
+        try {
+            saveUserStoriesBatch(type, userStoryIds, missingUserStoryIds);
+        } catch (ExtractionException | RuntimeException e) {
+            logger.error("Failed to save US " + missingUserStoryIds, e);
+            failedUserStoryIds.addAll(missingUserStoryIds);
+            metrics.addFailures(missingUserStoryIds.size());
+        }
+    }
+
+    /**
+     * Save the content of a batch of User Stories.
+     * <p>
+     * The User Stories are downloaded through paged collection queries of the REST service, their attachments list
+     * included, then each User Story is saved in its own XML file as if it was downloaded alone.
+     *
+     * @param type                - Type of the entities of the batch
+     * @param userStoryIds        - IDs of the User Stories to save
+     * @param missingUserStoryIds - IDs of the User Stories not handled yet, removed as they are saved or failed
+     * @throws ExtractionException
+     */
+    private void saveUserStoriesBatch(final @NotNull EntityType type, final @NotNull List<String> userStoryIds,
+                                      final @NotNull Set<String> missingUserStoryIds) throws ExtractionException {
+
+        logger.debug("US BATCH SAVING - IS STARTING - {} {}", type, userStoryIds);
+
+        // Get the url to download the content of the entities of the type
+        final String userStoryUrl = type.getUrl();
+
+        // Get the fields to download for each entity
+        final String include = type.getBatchInclude();
+
+        final XMLOutputter outputter = new XMLOutputter();
+        int skip = 0;
+        int count;
+        do {
+            final String url = userStoryUrl + "?where=(Id in (" + String.join(",", userStoryIds) + "))&include=" + include
+                    + "&take=" + userStoryIds.size() + "&skip=" + skip;
+            logger.debug("GETTING US BATCH CONTENT - {}", url);
+            final String userStoriesContent;
+            final long fetchStart = System.nanoTime();
+            try {
+                userStoriesContent = fetcher.getContent(url);
+            } finally {
+                metrics.record(RunMetrics.Stage.STORY_FETCH, fetchStart);
+            }
+
+            final Document jdomDocument;
+            try {
+                jdomDocument = XmlSupport.getSAXBuilder().build(new StringReader(userStoriesContent));
+            } catch (IOException | JDOMException e) {
+                throw new ExtractionException("Failed to parse the US batch " + url, e);
+            }
+
+            // Split the collection in User Stories
+            final List<Element> userStories = new ArrayList<>(jdomDocument.getRootElement().getChildren(type.getElement()));
+            count = userStories.size();
+            for (Element userStory : userStories) {
+                final String userStoryId = userStory.getAttributeValue("Id");
+                missingUserStoryIds.remove(userStoryId);
+
+                final Document userStoryDocument = new Document(userStory.detach());
+                try {
+                    saveUserStorieContent(userStoryId, outputter.outputString(userStoryDocument), userStoryDocument);
+                } catch (ExtractionException | IOException | RuntimeException e) {
+                    logger.error("Failed to save US " + userStoryId, e);
+                    failedUserStoryIds.add(userStoryId);
+                    metrics.addFailures(1);
+                }
+            }
+            skip += count;
+        } while (count > 0 && skip < userStoryIds.size());
+
+        for (String userStoryId : missingUserStoryIds) {
+            logger.error("Failed to save US " + userStoryId + " - NOT RETURNED BY TARGET PROCESS");
+            failedUserStoryIds.add(userStoryId);
+            metrics.addFailures(1);
+        }
+
+        logger.debug("US BATCH SAVING - DONE - {} {}", type, userStoryIds);
     }
 
     /**
@@ -149,55 +745,137 @@ public class UserStoryExtractor {
      */
     private void saveUserStorie(final @NotNull String userStoryId) throws ExtractionException, IOException {
 
-        logger.debug("US SAVING - IS STARTING - US " + userStoryId);
+        logger.debug("US SAVING - IS STARTING - {} {}", getEntityType(userStoryId), userStoryId);
 
-        // Get the url to download the content of an User Story
-        final String userStoryUrl = ConfigurationProperties.getProperty("tp.userstory.url");
+        // Get the url to download the content of an User Story, or of an entity of another type
+        final String userStoryUrl = getEntityType(userStoryId).getUrl();
 
-        // Get the directory where User Stories information have to be stored
-        final String outputPathUserStoriesSaving = ConfigurationProperties.getProperty("outputpathuserstoriessaving") + "\\" + startDateTime;
+        // Get params of the url to download the content of an User Storie
+        final String userStoryUrlAttachmentParams = ConfigurationProperties.getProperty("tp.userstory.url.attachment");
 
         // Connection to Target Process URL allowing to download content of an User Storie
-        logger.debug("GETTING US CONTENT - " + userStoryUrl + "/" + userStoryId);
-        driver.get(userStoryUrl + "/" + userStoryId);
+        logger.debug("GETTING US CONTENT - {}/{}", userStoryUrl, userStoryId);
+        final String userStoryContent;
+        final long fetchStart = System.nanoTime();
+        try {
+            userStoryContent = fetcher.getContent(userStoryUrl + "/" + userStoryId);
+        } finally {
+            metrics.record(RunMetrics.Stage.STORY_FETCH, fetchStart);
+        }
+
+        // Downloading the attachments' list of the User Storie
+        final String userStoryAttachments;
+        final long attachmentListStart = System.nanoTime();
+        try {
+            userStoryAttachments = fetcher.getContent(userStoryUrl + "/" + userStoryId + "/" + userStoryUrlAttachmentParams);
+        } finally {
+            metrics.record(RunMetrics.Stage.ATTACHMENT_LIST, attachmentListStart);
+        }
+        final Document attachmentsDocument;
+        try {
+            attachmentsDocument = XmlSupport.getSAXBuilder().build(new StringReader(userStoryAttachments));
+        } catch (JDOMException e) {
+            throw new ExtractionException("Failed to parse the attachments list of the US-" + userStoryId, e);
+        }
+
+        saveUserStorieContent(userStoryId, userStoryContent, attachmentsDocument);
+
+        logger.debug("US SAVING - DONE - US {}", userStoryId);
+    }
+
+    /**
+     * Save the content of an User Story, with its images and attachments.
+     *
+     * @param userStoryId         - ID a the User Storie to save
+     * @param userStoryContent    - XML content of the User Story
+     * @param attachmentsDocument - XML Document listing the attachments of the User Story
+     * @throws ExtractionException
+     * @throws IOException
+     */
+    private void saveUserStorieContent(final @NotNull String userStoryId, final @NotNull String userStoryContent, final @NotNull Document attachmentsDocument) throws ExtractionException, IOException {
 
-        // Downloading the content of the User Story
-        String userStoryContent = driver.getPageSource();
+        // Get the directory where User Stories information have to be stored
+        final String outputPathUserStoriesSaving = ConfigurationProperties.getProperty("outputpathuserstoriessaving") + "\\" + startDateTime;
+
+        // Files saved for the User Story
+        final String userStoryFileName = getEntityType(userStoryId).getFileName(userStoryId);
+        final List<String> artifacts = new ArrayList<>();
+        artifacts.add(userStoryFileName);
 
         // It has to detect if the User Story references one or many images and attachments.
         // If it is the case, then images and attachments have also to be saved.
+        final Document userStoryDocument;
         try {
-            detectAndSaveImagesOfUserStorie(userStoryId, userStoryContent);
-            detectAndSaveAttachmentOfUserStorie(userStoryId);
+            userStoryDocument = XmlSupport.getSAXBuilder().build(new StringReader(userStoryContent));
+            artifacts.addAll(detectAndSaveImagesOfUserStorie(userStoryId, userStoryDocument));
+            artifacts.addAll(detectAndSaveAttachmentOfUserStorie(userStoryId, attachmentsDocument));
         } catch (IOException | JDOMException e) {
             throw new ExtractionException("Failed to save images of the US-" + userStoryId, e);
         }
 
         // Now it has to save the content of the User Story
+        final File userStoryFile = new File(outputPathUserStoriesSaving + "\\" + userStoryFileName);
+        final long writeStart = System.nanoTime();
         FileWriter writer = null;
         try {
-            writer = new FileWriter(outputPathUserStoriesSaving + "\\us-" + userStoryId + ".xml");
+            writer = new FileWriter(userStoryFile);
             writer.write(userStoryContent);
         } catch (IOException ex) {
-            throw new ExtractionException("Failed to write the file " + outputPathUserStoriesSaving + "\\us-" + userStoryId + ".xml", ex);
+            throw new ExtractionException("Failed to write the file " + userStoryFile.getAbsolutePath(), ex);
         } finally {
             if (writer != null) {
                 writer.close();
             }
+            metrics.record(RunMetrics.Stage.WRITE, writeStart);
+        }
+        metrics.addBytesWritten(userStoryFile.length());
+
+        // Register the User Story in the manifest of the extraction
+        String modifyDate = XmlSupport.getValueOfElement(userStoryDocument, XmlSupport.MODIFY_DATE);
+        if (modifyDate == null) {
+            modifyDate = "";
         }
+        completeUserStorie(new ExtractionManifest.Entry(userStoryId, modifyDate, DigestUtils.sha256Hex(userStoryContent), artifacts));
+    }
+
+    /**
+     * Register an User Story completely saved in the manifest and the journal.
+     *
+     * @param entry - Manifest entry of the User Story
+     * @throws ExtractionException
+     */
+    private void completeUserStorie(final @NotNull ExtractionManifest.Entry entry) throws ExtractionException {
+        manifest.put(entry);
+        journal.record(entry);
+        notifyUserStorySaved(entry.getUserStoryId());
+    }
 
-        logger.debug("US SAVING - DONE - US " + userStoryId);
+    /**
+     * Notify the listener, if any, that the XML file of an User Story is saved.
+     *
+     * @param userStoryId - ID of the User Story saved
+     * @throws ExtractionException
+     */
+    private void notifyUserStorySaved(final @NotNull String userStoryId) throws ExtractionException {
+        if (userStoryListener != null) {
+            final String outputPathUserStoriesSaving = ConfigurationProperties.getProperty("outputpathuserstoriessaving") + "\\" + startDateTime;
+            userStoryListener.userStorySaved(new File(outputPathUserStoriesSaving + "\\" + getEntityType(userStoryId).getFileName(userStoryId)));
+        }
     }
 
     /**
      * Detect and save images contained in the User Story.
      *
-     * @param userStoryId      - User Story ID
-     * @param userStoryContent - HTML content of the User Story.
+     * @param userStoryId       - User Story ID
+     * @param userStoryDocument - XML Document describing the content of the User Story.
+     * @return the paths of the images, relative to the snapshot directory
      * @throws IOException
      * @throws JDOMException
+     * @throws ExtractionException
      */
-    private void detectAndSaveImagesOfUserStorie(final @NotNull String userStoryId, final @NotNull String userStoryContent) throws IOException, JDOMException {
+    private List<String> detectAndSaveImagesOfUserStorie(final @NotNull String userStoryId, final @NotNull Document userStoryDocument) throws IOException, JDOMException, ExtractionException {
+
+        final List<String> images = new ArrayList<>();
 
         // Get the base URL of Target Process
         final String baseUrl = ConfigurationProperties.getProperty("tp.baseurl");
@@ -208,33 +886,21 @@ public class UserStoryExtractor {
         // Get the directory where User Stories information have to be stored
         final String outputPathUserStoriesSaving = ConfigurationProperties.getProperty("outputpathuserstoriessaving") + "\\" + startDateTime;
 
-        // Parse the XML flow describing the content of the User Story
-        SAXBuilder sb = new SAXBuilder();
-        Document jdomDocument = sb.build(new StringReader(userStoryContent));
-        XPathFactory xpfac = XPathFactory.instance();
-        XPathExpression<Element> expr = xpfac.compile("//Description", Filters.element());
-
         // Get the description part of the User Story, which one also contains references to images
-        final List<Element> listElements = expr.evaluate(jdomDocument);
-        if (listElements.isEmpty()) {
-            return;
-        }
-        List<Content> listContents = listElements.get(0).getContent();
-        if (listContents.isEmpty()) {
-            return;
+        final String description = XmlSupport.getValueOfElement(userStoryDocument, XmlSupport.DESCRIPTION);
+        if (description == null) {
+            return images;
         }
 
-        String description = listContents.get(0).getValue();
-        jdomDocument = sb.build(new StringReader("<body>" + description + "</body>"));
+        Document jdomDocument = XmlSupport.getSAXBuilder().build(new StringReader("<body>" + description + "</body>"));
 
         // Search images referenced in the User Story
-        expr = xpfac.compile("//img", Filters.element());
-        List<Element> listImages = expr.evaluate(jdomDocument);
+        List<Element> listImages = XmlSupport.getElements(jdomDocument, XmlSupport.IMG);
         for (Element image : listImages) {
             String imageSrc = image.getAttributeValue("src");
             if (imageSrc != null && !imageSrc.equals("#") && imageSrc.contains("images/")) {
 
-                // Get the image via Selenium API
+                // Get the image
                 if (imageSrc.contains("~")) {
                     imageSrc = imageSrc.replace("~", "");
                 }
@@ -244,67 +910,83 @@ public class UserStoryExtractor {
                     imageSrc = imageSrc.replace(nonSecureBaseUrl, "");
                 }
 
-                logger.debug("DOWNLOADING IMAGE - US " + userStoryId + " - " + baseUrl + imageSrc);
-                driver.get(baseUrl + imageSrc);
+                images.add(imageSrc);
 
-                WebElement imgElement = driver.findElement(By.xpath("/html/body/img"));
+                // The image is saved by the first User Story referencing it, the other ones wait for its result
+                final CompletableFuture<Void> download = new CompletableFuture<>();
+                final CompletableFuture<Void> previousDownload = savedImages.putIfAbsent(imageSrc, download);
+                if (previousDownload != null) {
+                    waitForImage(userStoryId, imageSrc, previousDownload);
+                    continue;
+                }
 
-                // Make a screenshot
-                File screenshot = ((TakesScreenshot) driver).getScreenshotAs(OutputType.FILE);
-                BufferedImage fullImg = ImageIO.read(screenshot);
+                // Save the image in the appropriate directory, it is only downloaded if the blob store does not have it
+                try {
+                    final File imageFile = new File(outputPathUserStoriesSaving + "\\" + imageSrc);
+                    final String key = "image:" + imageSrc;
+                    if (!blobStore.link(key, imageFile)) {
+                        logger.debug("DOWNLOADING IMAGE - US {} - {}{}", userStoryId, baseUrl, imageSrc);
+                        final long fetchStart = System.nanoTime();
+                        try {
+                            blobStore.add(key, imageFile, fetcher.saveImage(baseUrl + imageSrc, imageFile));
+                        } finally {
+                            metrics.record(RunMetrics.Stage.IMAGE_FETCH, fetchStart);
+                        }
+                    }
+                    download.complete(null);
+                } catch (ExtractionException | RuntimeException e) {
+                    // A failed image is downloaded again by the next User Story referencing it
+                    savedImages.remove(imageSrc, download);
+                    download.completeExceptionally(e);
+                    throw e;
+                }
+            }
+        }
 
-                // Crop the image
-                Point point = imgElement.getLocation();
-                int eleWidth = imgElement.getSize().getWidth();
-                int eleHeight = imgElement.getSize().getHeight();
-                BufferedImage eleScreenshot = fullImg.getSubimage(point.getX(), point.getY(), eleWidth, eleHeight);
-                ImageIO.write(eleScreenshot, "png", screenshot);
+        return images;
+    }
 
-                // Save the image in the appropriate directory
-                FileUtils.copyFile(screenshot, new File(outputPathUserStoriesSaving + "\\" + imageSrc));
-            }
+    /**
+     * Wait for the download of an image by another User Story.
+     *
+     * @param userStoryId - ID of the User Story waiting for the image
+     * @param imageSrc    - Path of the image
+     * @param download    - Result of the download
+     * @throws ExtractionException if the download has failed
+     */
+    private void waitForImage(final @NotNull String userStoryId, final @NotNull String imageSrc, final @NotNull CompletableFuture<Void> download) throws ExtractionException {
+        try {
+            download.get();
+        } catch (ExecutionException e) {
+            throw new ExtractionException("Failed to save the image " + imageSrc + " of US " + userStoryId + " - FAILED BY ANOTHER US", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExtractionException("Interrupted while waiting for the image " + imageSrc + " of US " + userStoryId, e);
         }
     }
 
     /**
      * Detect and save attachments contained in the User Story.
      *
-     * @param userStoryId - User Storie ID
+     * @param userStoryId         - User Storie ID
+     * @param attachmentsDocument - XML Document listing the attachments of the User Story
+     * @return the paths of the attachments, relative to the snapshot directory
      * @throws JDOMException
      * @throws IOException
      * @throws ExtractionException
      */
-    private void detectAndSaveAttachmentOfUserStorie(final @NotNull String userStoryId) throws JDOMException, IOException, ExtractionException {
+    private List<String> detectAndSaveAttachmentOfUserStorie(final @NotNull String userStoryId, final @NotNull Document attachmentsDocument) throws JDOMException, IOException, ExtractionException {
 
-        // Get the url to download the content of an User Storie
-        final String userStoryUrl = ConfigurationProperties.getProperty("tp.userstory.url");
-
-        // Get params of the url to download the content of an User Storie
-        final String userStoryUrlAttachmentParams = ConfigurationProperties.getProperty("tp.userstory.url.attachment");
+        final List<String> attachments = new ArrayList<>();
 
         // Get the url to download an attachment of an User Storie
         final String attachmentUrl = ConfigurationProperties.getProperty("tp.attachment.url");
 
-        // Get the timeout for downloading an attachment of an User Storie
-        final String timeoutdownload = ConfigurationProperties.getProperty("tp.attachment.timeoutdownload");
-
         // Get the directory where User Stories information have to be stored
-        final String outputPathUserStorieSaving = ConfigurationProperties.getProperty("outputpathuserstoriesaving") + "\\" + startDateTime;
-
-        // Connection to Target Process URL to download attachments list of an User Storie
-        driver.get(userStoryUrl + "/" + userStoryId + "/" + userStoryUrlAttachmentParams);
-
-        // Downloading the attachments' list of the User Storie
-        String userStoryAttachments = driver.getPageSource();
+        final String outputPathUserStorieSaving = ConfigurationProperties.getProperty("outputpathuserstoriessaving") + "\\" + startDateTime;
 
-        // Parse the XML flow describing the content of the User Story
-        SAXBuilder sb = new SAXBuilder();
-        Document jdomDocument = sb.build(new StringReader(userStoryAttachments));
-        XPathFactory xpfac = XPathFactory.instance();
-        XPathExpression<Element> expr = xpfac.compile("//Attachment", Filters.element());
-
-        // Get the description part of the User Story, which one also contains references to images
-        List<Element> listAttachments = expr.evaluate(jdomDocument);
+        // Get the attachments of the User Story
+        List<Element> listAttachments = XmlSupport.getElements(attachmentsDocument, XmlSupport.ATTACHMENT);
 
         String id;
         String name;
@@ -312,28 +994,27 @@ public class UserStoryExtractor {
             id = attachment.getAttributeValue("Id");
             name = attachment.getAttributeValue("Name");
 
-            // Download the attachment
-            logger.debug("DOWNLOADING ATTACHMENT - US " + userStoryId + " - " + attachmentUrl + id);
-            driver.get(attachmentUrl + id);
-
-            // Need to do a tempo in order to download the current file
-            try {
-                Thread.sleep(Long.parseLong(timeoutdownload));
-            } catch (InterruptedException e) {
-                throw new ExtractionException("Thread sleep failed", e);
-            }
-
-            // Rename the document with adding the US ID in prefix
-            File file = new File(outputPathUserStorieSaving + "\\attachments\\" + name);
-
-            // File (or directory) with new name
-            File file2 = new File(outputPathUserStorieSaving + "\\attachments\\" + userStoryId + "-" + name);
-            if (file2.exists())
+            // The document is saved with the US ID in prefix
+            File file = new File(outputPathUserStorieSaving + "\\attachments\\" + userStoryId + "-" + name);
+            if (file.exists())
                 throw new java.io.IOException("File " + outputPathUserStorieSaving + "\\" + userStoryId + "-" + name + " already exists");
 
-            // Rename file (or directory)
-            file.renameTo(file2);
+            // Download the attachment, unless the blob store already has it
+            final String key = "attachment:" + id;
+            if (!blobStore.link(key, file)) {
+                logger.debug("DOWNLOADING ATTACHMENT - US {} - {}{}", userStoryId, attachmentUrl, id);
+                final long downloadStart = System.nanoTime();
+                try {
+                    fetcher.saveAttachment(attachmentUrl + id, name, file);
+                } finally {
+                    metrics.record(RunMetrics.Stage.ATTACHMENT_DOWNLOAD, downloadStart);
+                }
+                blobStore.add(key, file, null);
+            }
+            attachments.add("attachments\\" + userStoryId + "-" + name);
         }
+
+        return attachments;
     }
 
     /**
@@ -346,11 +1027,13 @@ public class UserStoryExtractor {
         // Connection to Target Process in order to all the use of TP RESTFULL URL
         authentification();
 
-        // Save User Stories content
-        saveUserStories();
-
-        // Close the browser
-        driver.quit();
+        try {
+            // Save User Stories content
+            saveUserStories();
+        } finally {
+            // Close the connections to Target Process
+            fetcher.close();
+        }
     }
 
     /**
@@ -362,23 +1045,11 @@ public class UserStoryExtractor {
 
         logger.debug("AUTHENTIFICATION - IS STARTING");
 
-        // Loading of Target Process information connection
-        final String username = ConfigurationProperties.getProperty("tp.username");
-        final String password = ConfigurationProperties.getProperty("tp.password");
-        final String connectionUrl = ConfigurationProperties.getProperty("tp.connection.url");
-
-        driver.get(connectionUrl);
-        driver.findElement(By.id("UserName")).clear();
-        driver.findElement(By.id("UserName")).sendKeys(username);
-        driver.findElement(By.id("Password")).clear();
-        driver.findElement(By.id("Password")).sendKeys(password);
-        driver.findElement(By.id("btnLogin")).click();
-
-        // Need to do a tempo in order to load the global context of Target Process
+        final long start = System.nanoTime();
         try {
-            Thread.sleep(10000);
-        } catch (InterruptedException e) {
-            throw new ExtractionException("Thread sleep failed", e);
+            fetcher.authentification();
+        } finally {
+            metrics.record(RunMetrics.Stage.AUTHENTIFICATION, start);
         }
 
         logger.debug("AUTHENTIFICATION - DONE");
@@ -0,0 +1,21 @@
+package com.challer.tpextraction;
+
+import com.sun.istack.internal.NotNull;
+
+import java.io.File;
+
+/**
+ * Listener notified each time the XML file of an User Story is saved by the extraction.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public interface UserStoryListener {
+
+    /**
+     * Called once the XML file of an User Story is written, by the thread which has saved it.
+     *
+     * @param userStoryFile - XML file of the User Story
+     * @throws ExtractionException
+     */
+    void userStorySaved(final @NotNull File userStoryFile) throws ExtractionException;
+}
@@ -0,0 +1,70 @@
+package com.challer.tpextraction;
+
+import com.sun.istack.internal.NotNull;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import java.io.File;
+
+/**
+ * Read the XML file of an User Story extracted from Target Process.
+ * <p>
+ * The User Story is populated as it is stored by Target Process, except dates which are stored as days and dates of
+ * custom fields which are formatted for display.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public abstract class UserStoryReader {
+
+    /**
+     * Format of dates in Target Process
+     */
+    private final static DateTimeFormatter dtf = DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    /**
+     * Return the reader chosen in the configuration file.
+     *
+     * @return the reader
+     */
+    public static UserStoryReader getInstance() {
+        if ("jdom".equalsIgnoreCase(ConfigurationProperties.getProperty("generator.xmlparser", "stax"))) {
+            return new JdomUserStoryReader();
+        }
+        return new StaxUserStoryReader();
+    }
+
+    /**
+     * Populate an object User Story from its XML file.
+     *
+     * @param userStoryFile XML File which are contained the User Story content
+     * @return the User Story populated
+     * @throws ExtractionException
+     */
+    public abstract UserStory read(final @NotNull File userStoryFile) throws ExtractionException;
+
+    /**
+     * Return the day of a date of Target Process.
+     *
+     * @param date - Date given by Target Process
+     * @return the days since 1970-01-01, or {@link UserStory#NO_DATE} if there is no date
+     */
+    protected static int toDay(final String date) {
+        if (date == null) {
+            return UserStory.NO_DATE;
+        }
+        return UserStory.toDay(dtf.parseLocalDate(date));
+    }
+
+    /**
+     * Format a date of Target Process for display.
+     *
+     * @param date - Date given by Target Process
+     * @return the date formatted, or null if there is no date
+     */
+    protected static String formatDate(final String date) {
+        if (date == null) {
+            return null;
+        }
+        return dtf.parseDateTime(date).toString("dd/MM/yyyy");
+    }
+}
@@ -0,0 +1,519 @@
+package com.challer.tpextraction;
+
+import com.sun.istack.internal.NotNull;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Snapshot file of the User Stories of an extraction : all the XML files of the snapshot directory in a single file,
+ * read through memory mapping without parsing.
+ * <p>
+ * The file is columnar, each value of the metadata is read in place at a fixed position :
+ * <pre>
+ * header        magic, version, number of User Stories, offsets of the sections
+ * columns       id, title, feature, state, creation day, modification day, custom fields, description length,
+ *               type, parent id, parent name (an int by User Story), then description offset (a long by User Story)
+ * index         (id, row) by User Story, sorted by id
+ * custom fields count, then (name, value) by custom field
+ * strings       length and UTF-8 bytes, each string being written once
+ * descriptions  UTF-8 bytes of the descriptions
+ * </pre>
+ * Strings and custom fields are given by their offset in their section, -1 being null. Rows are in the order of the
+ * XML files names, which one is the order of the website.
+ * <p>
+ * The files of the version 1 have no type and parent columns, their entities are User Stories without parent.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public class UserStorySnapshot implements Closeable {
+
+    /**
+     * Name of the snapshot file, stored in the snapshot directory
+     */
+    public final static String SNAPSHOT_FILE = "userstories.snapshot";
+
+    private final static int MAGIC = 0x54505553;
+
+    private final static int VERSION = 2;
+
+    private final static int VERSION_WITHOUT_TYPES = 1;
+
+    private final static int HEADER_SIZE = 48;
+
+    private final static int NULL = -1;
+
+    /**
+     * Columns of an int by User Story
+     */
+    private final static int ID = 0;
+    private final static int TITLE = 1;
+    private final static int FEATURE = 2;
+    private final static int STATE = 3;
+    private final static int CREATION_DAY = 4;
+    private final static int MODIFICATION_DAY = 5;
+    private final static int CUSTOM_FIELDS = 6;
+    private final static int DESCRIPTION_LENGTH = 7;
+    private final static int TYPE = 8;
+    private final static int PARENT_ID = 9;
+    private final static int PARENT_NAME = 10;
+    private final static int INT_COLUMNS = 11;
+    private final static int INT_COLUMNS_WITHOUT_TYPES = 8;
+
+    /**
+     * Descriptions are mapped by chunks, a mapping can not exceed 2 GB
+     */
+    private final static long CHUNK_SIZE = 1L << 30;
+
+    private final File snapshotFile;
+
+    private final FileChannel channel;
+
+    /**
+     * Header, columns, index, custom fields and strings
+     */
+    private final MappedByteBuffer metadata;
+
+    private final MappedByteBuffer[] descriptions;
+
+    private final int count;
+
+    /**
+     * Number of int columns, which one depends on the version of the file
+     */
+    private final int intColumns;
+
+    private final int customFieldsOffset;
+
+    private final int stringsOffset;
+
+    private UserStorySnapshot(final @NotNull File snapshotFile, final @NotNull FileChannel channel) throws IOException, ExtractionException {
+        this.snapshotFile = snapshotFile;
+        this.channel = channel;
+
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        int read = 0;
+        while (header.hasRemaining() && read >= 0) {
+            read = channel.read(header, header.position());
+        }
+        if (header.hasRemaining() || header.getInt(0) != MAGIC || (header.getInt(4) != VERSION && header.getInt(4) != VERSION_WITHOUT_TYPES)) {
+            throw new ExtractionException("Snapshot file " + snapshotFile.getAbsolutePath() + " is incorrect");
+        }
+        intColumns = header.getInt(4) == VERSION ? INT_COLUMNS : INT_COLUMNS_WITHOUT_TYPES;
+        count = header.getInt(8);
+        customFieldsOffset = (int) header.getLong(16);
+        stringsOffset = (int) header.getLong(24);
+        final long descriptionsOffset = header.getLong(32);
+        final long descriptionsLength = header.getLong(40);
+        if (descriptionsOffset + descriptionsLength != channel.size()) {
+            throw new ExtractionException("Snapshot file " + snapshotFile.getAbsolutePath() + " is incomplete");
+        }
+
+        metadata = channel.map(FileChannel.MapMode.READ_ONLY, 0, descriptionsOffset);
+        descriptions = new MappedByteBuffer[(int) ((descriptionsLength + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+        for (int i = 0; i < descriptions.length; i++) {
+            final long chunkOffset = i * CHUNK_SIZE;
+            descriptions[i] = channel.map(FileChannel.MapMode.READ_ONLY, descriptionsOffset + chunkOffset, Math.min(CHUNK_SIZE, descriptionsLength - chunkOffset));
+        }
+    }
+
+    /**
+     * Open a snapshot file. Only its header is read, the values are read when they are asked.
+     *
+     * @param snapshotFile - Snapshot file
+     * @return the snapshot, or null if the file does not exist
+     * @throws ExtractionException
+     */
+    public static UserStorySnapshot open(final @NotNull File snapshotFile) throws ExtractionException {
+        if (!snapshotFile.exists()) {
+            return null;
+        }
+
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ);
+            return new UserStorySnapshot(snapshotFile, channel);
+        } catch (IOException | ExtractionException e) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException closeException) {
+                    e.addSuppressed(closeException);
+                }
+            }
+            if (e instanceof ExtractionException) {
+                throw (ExtractionException) e;
+            }
+            throw new ExtractionException("Failed to open the snapshot file " + snapshotFile.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Write the snapshot file of User Stories. The file is replaced at once, so a crash can not leave a partial
+     * snapshot.
+     *
+     * @param snapshotFile   - Snapshot file
+     * @param userStoryFiles - XML files of the User Stories, in the order of the website
+     * @param reader         - Reader of the XML files
+     * @throws ExtractionException
+     */
+    public static void write(final @NotNull File snapshotFile, final @NotNull File[] userStoryFiles, final @NotNull UserStoryReader reader) throws ExtractionException {
+        final int count = userStoryFiles.length;
+        final int[][] columns = new int[INT_COLUMNS][count];
+        final long[] descriptionOffsets = new long[count];
+        final SectionWriter strings = new SectionWriter();
+        final SectionWriter customFields = new SectionWriter();
+        final Map<String, Integer> stringRefs = new HashMap<>();
+        final String[] ids = new String[count];
+
+        // Descriptions are written first in a temporary file, only the metadata is kept in memory
+        final File descriptionsFile = new File(snapshotFile.getAbsolutePath() + ".descriptions.tmp");
+        final File temporaryFile = new File(snapshotFile.getAbsolutePath() + ".tmp");
+        try {
+            long descriptionsLength = 0;
+            try (OutputStream descriptionsStream = new BufferedOutputStream(new FileOutputStream(descriptionsFile))) {
+                for (int row = 0; row < count; row++) {
+                    final UserStory userStory = reader.read(userStoryFiles[row]);
+                    ids[row] = userStory.getId();
+                    columns[ID][row] = strings.writeString(userStory.getId(), stringRefs);
+                    columns[TITLE][row] = strings.writeString(userStory.getTitle(), stringRefs);
+                    columns[FEATURE][row] = strings.writeString(userStory.getFeature(), stringRefs);
+                    columns[STATE][row] = strings.writeString(userStory.getState(), stringRefs);
+                    columns[CREATION_DAY][row] = userStory.getCreationDay();
+                    columns[MODIFICATION_DAY][row] = userStory.getLastModificationDay();
+                    columns[CUSTOM_FIELDS][row] = customFields.writeCustomFields(userStory.getCustomFields(), strings, stringRefs);
+                    columns[TYPE][row] = strings.writeString(userStory.getType().getElement(), stringRefs);
+                    columns[PARENT_ID][row] = strings.writeString(userStory.getParentId(), stringRefs);
+                    columns[PARENT_NAME][row] = strings.writeString(userStory.getParentName(), stringRefs);
+
+                    if (userStory.getDescription() == null) {
+                        columns[DESCRIPTION_LENGTH][row] = NULL;
+                    } else {
+                        final byte[] description = userStory.getDescription().getBytes(StandardCharsets.UTF_8);
+                        descriptionsStream.write(description);
+                        columns[DESCRIPTION_LENGTH][row] = description.length;
+                        descriptionOffsets[row] = descriptionsLength;
+                        descriptionsLength += description.length;
+                    }
+                }
+            }
+
+            // Index of the rows, sorted by id
+            final Integer[] rows = new Integer[count];
+            for (int row = 0; row < count; row++) {
+                rows[row] = row;
+            }
+            Arrays.sort(rows, new Comparator<Integer>() {
+                public int compare(Integer row1, Integer row2) {
+                    return compareIds(ids[row1], ids[row2]);
+                }
+            });
+
+            // Sections are written one after the other
+            final long customFieldsOffset = HEADER_SIZE + (INT_COLUMNS * 4L + 8L + 8L) * count;
+            final long stringsOffset = customFieldsOffset + customFields.size();
+            final long descriptionsOffset = stringsOffset + strings.size();
+            if (descriptionsOffset > Integer.MAX_VALUE) {
+                throw new ExtractionException("Snapshot file " + snapshotFile.getAbsolutePath() + " has too many User Stories");
+            }
+
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeInt(count);
+                output.writeInt(0);
+                output.writeLong(customFieldsOffset);
+                output.writeLong(stringsOffset);
+                output.writeLong(descriptionsOffset);
+                output.writeLong(descriptionsLength);
+                for (int[] column : columns) {
+                    for (int value : column) {
+                        output.writeInt(value);
+                    }
+                }
+                for (long descriptionOffset : descriptionOffsets) {
+                    output.writeLong(descriptionOffset);
+                }
+                for (Integer row : rows) {
+                    output.writeInt(columns[ID][row]);
+                    output.writeInt(row);
+                }
+                customFields.writeTo(output);
+                strings.writeTo(output);
+                Files.copy(descriptionsFile.toPath(), output);
+            }
+            Files.move(temporaryFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new ExtractionException("Failed to write the snapshot file " + snapshotFile.getAbsolutePath(), e);
+        } finally {
+            descriptionsFile.delete();
+            temporaryFile.delete();
+        }
+    }
+
+    /**
+     * @return the number of User Stories
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Return the row of an User Story, through a binary search in the index.
+     *
+     * @param userStoryId - User Story ID
+     * @return the row, or -1 if the User Story is not in the snapshot
+     */
+    public int find(final @NotNull String userStoryId) {
+        final int indexOffset = HEADER_SIZE + (intColumns * 4 + 8) * count;
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int comparison = compareIds(readString(metadata.getInt(indexOffset + middle * 8)), userStoryId);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return metadata.getInt(indexOffset + middle * 8 + 4);
+            }
+        }
+        return NULL;
+    }
+
+    public String getId(final int row) {
+        return readString(getInt(ID, row));
+    }
+
+    public String getTitle(final int row) {
+        return readString(getInt(TITLE, row));
+    }
+
+    public String getFeature(final int row) {
+        return readString(getInt(FEATURE, row));
+    }
+
+    public String getState(final int row) {
+        return readString(getInt(STATE, row));
+    }
+
+    /**
+     * @param row - Row of the entity
+     * @return the type of the entity
+     */
+    public EntityType getType(final int row) {
+        if (intColumns == INT_COLUMNS_WITHOUT_TYPES) {
+            return EntityType.USER_STORY;
+        }
+        final EntityType type = EntityType.fromElement(readString(getInt(TYPE, row)));
+        return type == null ? EntityType.USER_STORY : type;
+    }
+
+    public String getParentId(final int row) {
+        return intColumns == INT_COLUMNS_WITHOUT_TYPES ? null : readString(getInt(PARENT_ID, row));
+    }
+
+    public String getParentName(final int row) {
+        return intColumns == INT_COLUMNS_WITHOUT_TYPES ? null : readString(getInt(PARENT_NAME, row));
+    }
+
+    public int getCreationDay(final int row) {
+        return getInt(CREATION_DAY, row);
+    }
+
+    public int getLastModificationDay(final int row) {
+        return getInt(MODIFICATION_DAY, row);
+    }
+
+    /**
+     * @param row - Row of the User Story
+     * @return the custom fields, in the order of the XML file
+     */
+    public Map<String, String> getCustomFields(final int row) {
+        final int ref = getInt(CUSTOM_FIELDS, row);
+        if (ref == NULL) {
+            return null;
+        }
+        final int offset = customFieldsOffset + ref;
+        final int size = metadata.getInt(offset);
+        final Map<String, String> fields = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            fields.put(readString(metadata.getInt(offset + 4 + i * 8)), readString(metadata.getInt(offset + 8 + i * 8)));
+        }
+        return fields;
+    }
+
+    /**
+     * @param row - Row of the User Story
+     * @return the description, as it is in the XML file
+     */
+    public String getDescription(final int row) {
+        final int length = getInt(DESCRIPTION_LENGTH, row);
+        if (length == NULL) {
+            return null;
+        }
+
+        // A description may be on two chunks
+        final long position = metadata.getLong(HEADER_SIZE + intColumns * 4 * count + row * 8);
+        final byte[] bytes = new byte[length];
+        int read = 0;
+        while (read < length) {
+            final ByteBuffer chunk = descriptions[(int) ((position + read) / CHUNK_SIZE)].duplicate();
+            chunk.position((int) ((position + read) % CHUNK_SIZE));
+            final int chunkLength = Math.min(chunk.remaining(), length - read);
+            chunk.get(bytes, read, chunkLength);
+            read += chunkLength;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Populate an object User Story from its row, as it would be read from its XML file.
+     *
+     * @param row - Row of the User Story
+     * @return the User Story populated
+     */
+    public UserStory getUserStory(final int row) {
+        final UserStory us = new UserStory();
+        us.setType(getType(row));
+        us.setId(getId(row));
+        us.setTitle(getTitle(row));
+        us.setParentId(getParentId(row));
+        us.setParentName(getParentName(row));
+        us.setDescription(getDescription(row));
+        us.setFeature(getFeature(row));
+        us.setState(getState(row));
+        us.setCreationDay(getCreationDay(row));
+        us.setLastModificationDay(getLastModificationDay(row));
+        us.setCustomFields(getCustomFields(row));
+        return us;
+    }
+
+    public File getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    /**
+     * Close the file. The memory mappings are released by the garbage collector.
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int getInt(final int column, final int row) {
+        if (row < 0 || row >= count) {
+            throw new IndexOutOfBoundsException("Row " + row + " of the snapshot file " + snapshotFile.getAbsolutePath());
+        }
+        return metadata.getInt(HEADER_SIZE + (column * count + row) * 4);
+    }
+
+    private String readString(final int ref) {
+        if (ref == NULL) {
+            return null;
+        }
+        final ByteBuffer buffer = metadata.duplicate();
+        buffer.position(stringsOffset + ref);
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Order of the index : numeric ids by their value, before the other ones.
+     *
+     * @param id1 - First id
+     * @param id2 - Second id
+     * @return the comparison of the ids
+     */
+    static int compareIds(final String id1, final String id2) {
+        final String first = id1 == null ? "" : id1;
+        final String second = id2 == null ? "" : id2;
+        if (first.length() != second.length() && isNumber(first) && isNumber(second)) {
+            return first.length() - second.length();
+        }
+        return first.compareTo(second);
+    }
+
+    private static boolean isNumber(final @NotNull String id) {
+        for (int i = 0; i < id.length(); i++) {
+            if (id.charAt(i) < '0' || id.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return !id.isEmpty();
+    }
+
+    /**
+     * Section of strings or custom fields being written, in memory.
+     */
+    private static class SectionWriter {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        private final DataOutputStream output = new DataOutputStream(bytes);
+
+        /**
+         * Write a string in the section, unless it is already written.
+         *
+         * @param value      - String
+         * @param stringRefs - Offsets of the strings already written
+         * @return the offset of the string, or -1 if it is null
+         * @throws IOException
+         */
+        int writeString(final String value, final @NotNull Map<String, Integer> stringRefs) throws IOException {
+            if (value == null) {
+                return NULL;
+            }
+            final Integer existingRef = stringRefs.get(value);
+            if (existingRef != null) {
+                return existingRef;
+            }
+            final int ref = output.size();
+            final byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(valueBytes.length);
+            output.write(valueBytes);
+            stringRefs.put(value, ref);
+            return ref;
+        }
+
+        /**
+         * Write custom fields in the section.
+         *
+         * @param fields     - Custom fields
+         * @param strings    - Section of strings
+         * @param stringRefs - Offsets of the strings already written
+         * @return the offset of the custom fields, or -1 if they are null
+         * @throws IOException
+         */
+        int writeCustomFields(final Map<String, String> fields, final @NotNull SectionWriter strings, final @NotNull Map<String, Integer> stringRefs) throws IOException {
+            if (fields == null) {
+                return NULL;
+            }
+            final int ref = output.size();
+            output.writeInt(fields.size());
+            for (Map.Entry<String, String> field : fields.entrySet()) {
+                output.writeInt(strings.writeString(field.getKey(), stringRefs));
+                output.writeInt(strings.writeString(field.getValue(), stringRefs));
+            }
+            return ref;
+        }
+
+        int size() {
+            return output.size();
+        }
+
+        void writeTo(final @NotNull OutputStream outputStream) throws IOException {
+            bytes.writeTo(outputStream);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.challer.tpextraction;
+
+import com.sun.istack.internal.NotNull;
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.Velocity;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.resource.loader.ClasspathResourceLoader;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Render the pages of the website through the Velocity templates userstory.vm and uslisting.vm.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public class VelocityPageRenderer extends PageRenderer {
+
+    /**
+     * Template of User Story pages, shared by all the threads generating pages
+     */
+    private final Template userStoryTemplate;
+
+    /**
+     * Template of the listing page
+     */
+    private final Template listingTemplate;
+
+    public VelocityPageRenderer() {
+
+        // Initialize Velocity Engine, templates are loaded from the classpath so they can be packaged in a jar
+        final VelocityEngine velocityEngine = new VelocityEngine();
+        Properties velocityProps = new Properties();
+        velocityProps.put(Velocity.RESOURCE_LOADER, "classpath");
+        velocityProps.put("classpath.resource.loader.class", ClasspathResourceLoader.class.getName());
+        velocityProps.put("classpath.resource.loader.cache", "true");
+        velocityEngine.init(velocityProps);
+
+        // Once loaded, a template can be merged by several threads at the same time
+        userStoryTemplate = velocityEngine.getTemplate("generator/templates/userstory.vm");
+        listingTemplate = velocityEngine.getTemplate("generator/templates/uslisting.vm");
+    }
+
+    @Override
+    public void renderUserStoryPage(final @NotNull UserStory userStory, final @NotNull WritableByteChannel channel) throws IOException {
+        VelocityContext context = new VelocityContext();
+        context.put("us", userStory);
+        write(userStoryTemplate, context, channel);
+    }
+
+    @Override
+    public void renderListingPage(final @NotNull Map<String, List<UserStory>> featureUserStoriesMap, final @NotNull WritableByteChannel channel) throws IOException {
+        VelocityContext context = new VelocityContext();
+        context.put("featureUserStoriesMap", featureUserStoriesMap);
+        write(listingTemplate, context, channel);
+    }
+
+    /**
+     * Merge a template and write the page in UTF-8, the encoding declared by the templates and written by the
+     * compiled renderer.
+     *
+     * @param template - Template of the page
+     * @param context  - Values of the template
+     * @param channel  - Channel where the page is written
+     * @throws IOException
+     */
+    private void write(final @NotNull Template template, final @NotNull VelocityContext context, final @NotNull WritableByteChannel channel) throws IOException {
+        StringWriter stringWriter = new StringWriter();
+        template.merge(context, stringWriter);
+
+        // Now it has to save the content of the page
+        final ByteBuffer buffer = ByteBuffer.wrap(stringWriter.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.challer.tpextraction;
+
+import com.sun.istack.internal.NotNull;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Fingerprints of the files of a generated website, used to only generate again the files whose inputs changed.
+ * <p>
+ * The fingerprint of a file is the SHA-256 hash of everything it is generated from : the template, and the fields
+ * of the User Stories it displays. Like the manifest of the extraction, the file starts with the snapshot directory
+ * of the website, then gives one file by line : "path TAB fingerprint".
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public class WebsiteFingerprints {
+
+    /**
+     * Name of the fingerprints file, stored in the root directory of extractions and in each snapshot directory
+     */
+    public final static String FINGERPRINTS_FILE = "website-fingerprints.txt";
+
+    private final static String SNAPSHOT_HEADER = "# snapshot";
+
+    /**
+     * Name of the snapshot directory of the website
+     */
+    private final String snapshot;
+
+    /**
+     * Fingerprints by path of file, relative to the snapshot directory
+     */
+    private final ConcurrentMap<String, String> fingerprints = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param snapshot Name of the snapshot directory of the website
+     */
+    public WebsiteFingerprints(final @NotNull String snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Load a fingerprints file.
+     *
+     * @param fingerprintsFile - Fingerprints file
+     * @return the fingerprints, or null if the file does not exist
+     * @throws ExtractionException
+     */
+    public static WebsiteFingerprints load(final @NotNull File fingerprintsFile) throws ExtractionException {
+        if (!fingerprintsFile.exists()) {
+            return null;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(fingerprintsFile), StandardCharsets.UTF_8))) {
+            final String header = reader.readLine();
+            if (header == null || !header.startsWith(SNAPSHOT_HEADER + "\t")) {
+                throw new ExtractionException("Website fingerprints " + fingerprintsFile.getAbsolutePath() + " are incorrect");
+            }
+
+            final WebsiteFingerprints websiteFingerprints = new WebsiteFingerprints(header.substring(SNAPSHOT_HEADER.length() + 1));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final int separator = line.lastIndexOf('\t');
+                if (separator > 0) {
+                    websiteFingerprints.put(line.substring(0, separator), line.substring(separator + 1));
+                }
+            }
+            return websiteFingerprints;
+        } catch (IOException e) {
+            throw new ExtractionException("Failed to read the website fingerprints " + fingerprintsFile.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Save the fingerprints. The file is replaced at once, so a crash can not leave partial fingerprints.
+     *
+     * @param fingerprintsFile - Fingerprints file
+     * @throws ExtractionException
+     */
+    public void save(final @NotNull File fingerprintsFile) throws ExtractionException {
+        final File temporaryFile = new File(fingerprintsFile.getAbsolutePath() + ".tmp");
+        try {
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temporaryFile), StandardCharsets.UTF_8))) {
+                writer.write(SNAPSHOT_HEADER + "\t" + snapshot + "\n");
+                for (Map.Entry<String, String> entry : new TreeMap<>(fingerprints).entrySet()) {
+                    writer.write(entry.getKey() + "\t" + entry.getValue() + "\n");
+                }
+            }
+            Files.move(temporaryFile.toPath(), fingerprintsFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new ExtractionException("Failed to write the website fingerprints " + fingerprintsFile.getAbsolutePath(), e);
+        }
+    }
+
+    public String getSnapshot() {
+        return snapshot;
+    }
+
+    public String get(final @NotNull String path) {
+        return fingerprints.get(path);
+    }
+
+    /**
+     * @param path        - Path of the file, relative to the snapshot directory
+     * @param fingerprint - Fingerprint of the inputs of the file
+     * @return the fingerprint previously recorded for the file, or null if it is recorded for the first time
+     */
+    public String put(final @NotNull String path, final @NotNull String fingerprint) {
+        return fingerprints.put(path, fingerprint);
+    }
+}
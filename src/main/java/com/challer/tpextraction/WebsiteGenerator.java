@@ -1,27 +1,16 @@
 package com.challer.tpextraction;
 
 import com.sun.istack.internal.NotNull;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
-import org.apache.velocity.Template;
-import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.Velocity;
-import org.apache.velocity.app.VelocityEngine;
-import org.jdom2.Content;
-import org.jdom2.Document;
-import org.jdom2.Element;
-import org.jdom2.JDOMException;
-import org.jdom2.filter.Filters;
-import org.jdom2.input.SAXBuilder;
-import org.jdom2.xpath.XPathExpression;
-import org.jdom2.xpath.XPathFactory;
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.*;
 
 /**
  * This class provides methods to generate Website from xml data coming from Target Process.
@@ -36,8 +25,6 @@ public class WebsiteGenerator {
      */
     private final static org.slf4j.Logger logger = LoggerFactory.getLogger(WebsiteGenerator.class);
 
-    private final static DateTimeFormatter dtf = DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss");
-
     /**
      * Singleton instance
      */
@@ -49,21 +36,66 @@ public class WebsiteGenerator {
     private final String startDateTime;
 
     /**
-     * Velocity engine
+     * Reader of User Stories XML files
+     */
+    private final UserStoryReader userStoryReader = UserStoryReader.getInstance();
+
+    /**
+     * Renderer of the pages, shared by all the threads generating pages
+     */
+    private final PageRenderer pageRenderer = PageRenderer.getInstance();
+
+    /**
+     * Types of the entities of the website by ID, the links of the descriptions are resolved with them
+     */
+    private final Map<String, EntityType> entityTypes = new ConcurrentHashMap<>();
+
+    /**
+     * Transformer of the descriptions, shared by all the threads generating pages
+     */
+    private final DescriptionTransformer descriptionTransformer = new DescriptionTransformer(ConfigurationProperties.getProperty("tp.baseurl"), ConfigurationProperties.getProperty("tp.nonsecurebaseurl"), entityTypes);
+
+    /**
+     * Entities of the website by ID of the entity they belong to, if they are known before the pages are generated
+     */
+    private volatile Map<String, List<UserStory>> childrenByParent;
+
+    /**
+     * Metrics of the run
+     */
+    private final RunMetrics metrics = RunMetrics.getInstance();
+
+    /**
+     * Manifest of the extraction, giving the attachments of each User Story
      */
-    private VelocityEngine velocityEngine;
+    private volatile ExtractionManifest manifest;
+
+    /**
+     * Fingerprints of the files of the website being generated
+     */
+    private final WebsiteFingerprints fingerprints;
+
+    /**
+     * Fingerprints of the previous website, whose unchanged files are reused (null to generate all the files)
+     */
+    private WebsiteFingerprints previousFingerprints;
+
+    /**
+     * Full-text index of the search box, filled while the pages are generated
+     */
+    private volatile SearchIndex searchIndex;
+
+    /**
+     * Fingerprints of the templates, a page is generated again when its template changes
+     */
+    private String userStoryTemplateFingerprint;
+
+    private String listingTemplateFingerprint;
 
     private WebsiteGenerator(final @NotNull String startDateTime) {
 
         this.startDateTime = startDateTime;
-
-        // Initialize Velocity Engine
-        velocityEngine = new VelocityEngine();
-        Properties velocityProps = new Properties();
-        velocityProps.put(Velocity.RESOURCE_LOADER, "file");
-        velocityProps.put(Velocity.FILE_RESOURCE_LOADER_CACHE, "true");
-        velocityProps.put(Velocity.FILE_RESOURCE_LOADER_PATH, getClass().getClassLoader().getResource("generator/templates").getFile());
-        velocityEngine.init(velocityProps);
+        this.fingerprints = new WebsiteFingerprints(startDateTime);
     }
 
     /**
@@ -79,6 +111,26 @@ public class WebsiteGenerator {
         return instance;
     }
 
+    /**
+     * Register the manifest of the extraction. Without it, the manifest saved in the root directory of extractions
+     * is used if it describes the snapshot directory of the website.
+     *
+     * @param manifest - Manifest of the extraction
+     */
+    public void setManifest(final ExtractionManifest manifest) {
+        this.manifest = manifest;
+    }
+
+    /**
+     * Register the entities of the website before their pages are generated, in order to link them. Without it, they
+     * are given by the snapshot file or by the names of the XML files.
+     *
+     * @param entityTypes - Types of the entities by ID
+     */
+    public void setEntityTypes(final @NotNull Map<String, EntityType> entityTypes) {
+        this.entityTypes.putAll(entityTypes);
+    }
+
     /**
      * Generate the static website
      *
@@ -90,299 +142,730 @@ public class WebsiteGenerator {
         // Get the directory where User Stories information are stored
         final String userStoriesPath = ConfigurationProperties.getProperty("outputpathuserstoriessaving") + "\\" + startDateTime;
 
-        final File[] userStoriesFiles = listUserStoriesFiles(userStoriesPath);
+        // Only the pages whose inputs changed since the previous website are generated
+        prepareFingerprints();
+
+        // The search index is filled while the pages are generated
+        searchIndex = new SearchIndex(new File(userStoriesPath + "\\" + SearchIndex.SEARCH_DIRECTORY));
+
+        // The attachments of the User Stories are given by the manifest of the extraction
+        loadSavedManifest();
+
+        // The User Stories are read from the snapshot file written by the extraction, or from their XML files
+        final UserStorySnapshot snapshot = UserStorySnapshot.open(new File(userStoriesPath + "\\" + UserStorySnapshot.SNAPSHOT_FILE));
+        final File[] userStoriesFiles = snapshot == null ? listUserStoriesFiles(userStoriesPath) : null;
+        if (snapshot != null) {
+            logger.info("LOADING " + snapshot.size() + " US FROM " + snapshot.getSnapshotFile().getAbsolutePath());
+        }
+
+        // The entities are linked to each other through their types, and their parents given by the snapshot file
+        if (snapshot != null) {
+            loadEntities(snapshot);
+        } else {
+            loadEntities(userStoriesFiles);
+        }
 
         // List containing User Stories
         final List<UserStory> userStoriesList = new ArrayList<>();
-        // Map listing User Stories linked to Feature
-        final Map<String, List<UserStory>> featureUserStoriesMap = new TreeMap();
 
-        // For each User Story, generate a dedicated HTML page
-        for (File userStoryFile : userStoriesFiles) {
+        // Loading and generation are done in parallel
+        final int parallelism = Integer.parseInt(ConfigurationProperties.getProperty("generator.parallelism",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        try {
 
-            logger.debug("START LOADING US " + userStoryFile.getAbsolutePath());
+            // Load each User Story and generate its dedicated HTML page. The description is only in memory between
+            // the loading and the generation, so at most one User Story by thread is complete in memory.
+            final int userStoriesCount = snapshot == null ? userStoriesFiles.length : snapshot.size();
+            final List<Future<UserStory>> pages = new ArrayList<>();
+            for (int i = 0; i < userStoriesCount; i++) {
+                final int row = i;
+                pages.add(executor.submit(new Callable<UserStory>() {
+                    public UserStory call() throws ExtractionException, IOException {
 
-            try {
-                final UserStory userStory = readUserStorieFromXmlFile(userStoryFile);
+                        final String source = snapshot == null ? userStoriesFiles[row].getAbsolutePath() : snapshot.getSnapshotFile().getAbsolutePath() + " - ROW " + row;
+                        logger.debug("START LOADING US {}", source);
 
-                // Add User Story to List and Map in order to display list in HTML
-                List<UserStory> listUSofThisFeature = featureUserStoriesMap.get(userStory.getFeature());
-                if (listUSofThisFeature == null) {
-                    listUSofThisFeature = new ArrayList<>();
-                    featureUserStoriesMap.put(userStory.getFeature(), listUSofThisFeature);
-                }
-                listUSofThisFeature.add(userStory);
-                userStoriesList.add(userStory);
+                        final UserStory userStory = snapshot == null ? readUserStorieFromXmlFile(userStoriesFiles[row]) : readUserStorieFromSnapshot(snapshot, row);
+
+                        logger.debug("LOADING ARE FINISHED FOR US {}", source);
 
-            } catch (IOException | JDOMException e) {
-                throw new ExtractionException("Failed to load US " + userStoryFile.getAbsolutePath(), e);
+                        logger.debug("START GENERATE HTML PAGE FOR US {}", userStory.getId());
+
+                        generateHtmlFromUserStory(userStory);
+
+                        logger.debug("END GENERATE HTML PAGE FOR US {}", userStory.getId());
+                        return userStory;
+                    }
+                }));
+            }
+
+            // Add User Story to List in order to display list in HTML.
+            // The order of files is kept, so the website does not depend on the order of generations.
+            for (Future<UserStory> page : pages) {
+                userStoriesList.add(getResult(page));
+            }
+        } finally {
+            executor.shutdownNow();
+            if (snapshot != null) {
+                snapshot.close();
             }
-            logger.debug("LOADING ARE FINISHED FOR US " + userStoryFile.getAbsolutePath());
         }
 
-        for (UserStory userStory : userStoriesList) {
+        finishWebsite(userStoriesList);
+    }
 
-            logger.debug("START GENERATE HTML PAGE FOR US " + userStory.getId());
+    /**
+     * Start the generation of the website while User Stories are extracted. Each User Story saved is loaded and its
+     * page generated as soon as the pipeline is notified ; {@link GenerationPipeline#finish()} has to be called once
+     * the extraction is done.
+     *
+     * @return the pipeline, to register as listener of the extraction
+     * @throws ExtractionException
+     */
+    public GenerationPipeline startPipeline() throws ExtractionException {
+
+        // Only the pages whose inputs changed since the previous website are generated
+        prepareFingerprints();
 
-            generateHtmlFromUserStory(userStory, userStoriesList);
+        // The search index is filled while the pages are generated
+        searchIndex = new SearchIndex(new File(ConfigurationProperties.getProperty("outputpathuserstoriessaving") + "\\" + startDateTime + "\\" + SearchIndex.SEARCH_DIRECTORY));
 
-            logger.debug("END GENERATE HTML PAGE FOR US " + userStory.getId());
+        final int parallelism = Integer.parseInt(ConfigurationProperties.getProperty("generator.parallelism",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        final int queueSize = Integer.parseInt(ConfigurationProperties.getProperty("generator.pipeline.queuesize", "100"));
+        return new GenerationPipeline(this, Math.max(1, parallelism), Math.max(1, queueSize));
+    }
+
+    /**
+     * Start a local HTTP server rendering the pages of the website on demand, instead of generating all of them.
+     * {@link WebsiteServer#stop()} has to be called to stop it.
+     *
+     * @return the server, already listening
+     * @throws ExtractionException
+     */
+    public WebsiteServer startServer() throws ExtractionException {
+
+        // Get the directory where User Stories information are stored
+        final String userStoriesPath = ConfigurationProperties.getProperty("outputpathuserstoriessaving") + "\\" + startDateTime;
+
+        // The fingerprints of the pages are their ETags
+        userStoryTemplateFingerprint = getTemplateFingerprint("userstory.vm");
+        listingTemplateFingerprint = getTemplateFingerprint("uslisting.vm");
+
+        // The attachments of the User Stories are given by the manifest of the extraction
+        loadSavedManifest();
+
+        // The User Stories are read from the snapshot file written by the extraction, or from their XML files
+        final UserStorySnapshot snapshot = UserStorySnapshot.open(new File(userStoriesPath + "\\" + UserStorySnapshot.SNAPSHOT_FILE));
+        if (snapshot != null) {
+            logger.info("SERVING " + snapshot.size() + " US FROM " + snapshot.getSnapshotFile().getAbsolutePath());
+            loadEntities(snapshot);
+        } else {
+            loadEntities(listUserStoriesFiles(userStoriesPath));
+        }
+
+        final int parallelism = Integer.parseInt(ConfigurationProperties.getProperty("generator.parallelism",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        final long pagesCacheSize = Long.parseLong(ConfigurationProperties.getProperty("server.cache.pages", "64")) * 1024 * 1024;
+        final int userStoriesCacheSize = Integer.parseInt(ConfigurationProperties.getProperty("server.cache.userstories", "1000"));
+        try {
+            return new WebsiteServer(this, new File(userStoriesPath), snapshot,
+                    new InetSocketAddress(ConfigurationProperties.getProperty("server.address", "localhost"), Integer.parseInt(ConfigurationProperties.getProperty("server.port", "8080"))),
+                    Math.max(1, parallelism), Math.max(0, pagesCacheSize), Math.max(0, userStoriesCacheSize));
+        } catch (ExtractionException | RuntimeException e) {
+            if (snapshot != null) {
+                try {
+                    snapshot.close();
+                } catch (IOException closeException) {
+                    e.addSuppressed(closeException);
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Generate the pages shared by the User Stories : listing page, search index, css and bootstrap files.
+     *
+     * @param userStoriesList - User Stories of the website, in the order of their files
+     * @throws ExtractionException
+     * @throws IOException
+     */
+    void finishWebsite(final @NotNull List<UserStory> userStoriesList) throws ExtractionException, IOException {
+
+        // Get the directory where User Stories information are stored
+        final String userStoriesPath = ConfigurationProperties.getProperty("outputpathuserstoriessaving") + "\\" + startDateTime;
+
+        // Without snapshot file, the entities belonging to another one are known once all the pages are generated
+        if (childrenByParent == null) {
+            linkChildren(userStoriesList);
         }
 
         // Now, generate the home page which is listing the user stories
-        generateHtmlListingPage(featureUserStoriesMap, userStoriesList);
+        generateHtmlListingPage(getFeatureUserStoriesMap(userStoriesList));
+
+        // The search box of all the pages uses the same index
+        writeSearchIndex();
 
         // Copy css and boostrap files from
         final File bootstrap = new File(getClass().getClassLoader().getResource("generator/bootstrap").getFile());
         final File css = new File(getClass().getClassLoader().getResource("generator/css").getFile());
+        final File js = new File(getClass().getClassLoader().getResource("generator/js").getFile());
+
+        copyStaticFiles(bootstrap, "bootstrap");
+        copyStaticFiles(css, "css");
+        copyStaticFiles(js, "js");
 
-        FileUtils.copyDirectory(bootstrap, new File(userStoriesPath + "\\bootstrap"));
-        FileUtils.copyDirectory(css, new File(userStoriesPath + "\\css"));
+        // The fingerprints are the starting point of the next incremental generation
+        fingerprints.save(new File(userStoriesPath + "\\" + WebsiteFingerprints.FINGERPRINTS_FILE));
+        fingerprints.save(new File(ConfigurationProperties.getProperty("outputpathuserstoriessaving") + "\\" + WebsiteFingerprints.FINGERPRINTS_FILE));
     }
 
     /**
-     * Populate an object User Story from its XML file.
+     * Map listing User Stories linked to Feature
      *
-     * @param userStoryFile XML File which are contained the User Story content
-     * @return the User Story populated
-     * @throws ExtractionException
+     * @param userStoriesList - User Stories of the website, in the order of their files
+     * @return the User Stories by feature, sorted by feature
      */
-    private UserStory readUserStorieFromXmlFile(final @NotNull File userStoryFile) throws ExtractionException, JDOMException, IOException {
+    static Map<String, List<UserStory>> getFeatureUserStoriesMap(final @NotNull List<UserStory> userStoriesList) {
+        final Map<String, List<UserStory>> featureUserStoriesMap = new TreeMap();
+        for (UserStory userStory : userStoriesList) {
+            List<UserStory> listUSofThisFeature = featureUserStoriesMap.get(userStory.getFeature());
+            if (listUSofThisFeature == null) {
+                listUSofThisFeature = new ArrayList<>();
+                featureUserStoriesMap.put(userStory.getFeature(), listUSofThisFeature);
+            }
+            listUSofThisFeature.add(userStory);
+        }
+        return featureUserStoriesMap;
+    }
 
-        final UserStory us = new UserStory();
-        InputStream userStoryInputStream;
-        try {
-            userStoryInputStream = new FileInputStream(userStoryFile);
-        } catch (FileNotFoundException e) {
-            throw new ExtractionException("Failed to open file " + userStoryFile.getName(), e);
+    /**
+     * Map listing the entities of the website by the entity they belong to
+     *
+     * @param userStoriesList - Entities of the website, in the order of their files
+     * @return the entities by ID of the entity they belong to
+     */
+    static Map<String, List<UserStory>> getChildrenMap(final @NotNull List<UserStory> userStoriesList) {
+        final Map<String, List<UserStory>> childrenMap = new HashMap<>();
+        for (UserStory userStory : userStoriesList) {
+            if (userStory.getParentId() == null) {
+                continue;
+            }
+            List<UserStory> children = childrenMap.get(userStory.getParentId());
+            if (children == null) {
+                children = new ArrayList<>();
+                childrenMap.put(userStory.getParentId(), children);
+            }
+            children.add(userStory);
         }
+        return childrenMap;
+    }
 
-        // Parse the XML flow describing the content of the User Story
-        final SAXBuilder sb = new SAXBuilder();
-        final Document jdomDocument = sb.build(userStoryInputStream);
+    /**
+     * Register the entities of the website before their pages are generated : their types, and the entities belonging
+     * to each one, from the metadata of the snapshot file.
+     *
+     * @param snapshot - Snapshot file of the extraction
+     */
+    private void loadEntities(final @NotNull UserStorySnapshot snapshot) {
+        for (int row = 0; row < snapshot.size(); row++) {
+            entityTypes.put(snapshot.getId(row), snapshot.getType(row));
+        }
 
-        final String id = getValueofElementFromXml(jdomDocument, "//UserStory", "Id");
-        us.setId(id);
+        // Only the entities whose parent has a page in the website are kept in memory
+        final List<UserStory> children = new ArrayList<>();
+        for (int row = 0; row < snapshot.size(); row++) {
+            final EntityType type = snapshot.getType(row);
+            final String parentId = snapshot.getParentId(row);
+            if (parentId != null && type.getParentType() == entityTypes.get(parentId)) {
+                final UserStory child = new UserStory();
+                child.setType(type);
+                child.setId(snapshot.getId(row));
+                child.setTitle(snapshot.getTitle(row));
+                child.setParentId(parentId);
+                children.add(child);
+            }
+        }
+        setChildrenByParent(getChildrenMap(children));
+    }
 
-        String description = getValueOfElementFromXml(jdomDocument, "//Description");
+    /**
+     * Register the types of the entities of the website from the names of their XML files. The entities belonging to
+     * each one are only known once the files are read.
+     *
+     * @param userStoriesFiles - XML files of the entities
+     */
+    private void loadEntities(final @NotNull File[] userStoriesFiles) {
+        for (File userStoryFile : userStoriesFiles) {
+            final String name = userStoryFile.getName();
+            final EntityType type = EntityType.fromFileName(name);
+            if (type != null) {
+                entityTypes.put(name.substring(type.getPrefix().length() + 1, name.length() - ".xml".length()), type);
+            }
+        }
+    }
 
-        // Check if link to another US are existing. If it is the case, then transforms the link
-        // Change access URL to images (path and encoding)
-        if (description != null) {
+    /**
+     * Register the entities of the website by the entity they belong to, the pages prepared from now on link them.
+     *
+     * @param childrenByParent - Entities by ID of the entity they belong to
+     */
+    void setChildrenByParent(final @NotNull Map<String, List<UserStory>> childrenByParent) {
+        this.childrenByParent = childrenByParent;
+    }
 
-            // US links
-            description = description.replaceAll("(id&#58;\\D*)(\\d*)", "<a href=\"us-$2.html\">$2</a>");
+    /**
+     * Link the entities once all the pages are generated : the pages of the entities which have some belonging to
+     * them are generated again, from their XML files.
+     *
+     * @param userStoriesList - Entities of the website, in the order of their files
+     * @throws ExtractionException
+     * @throws IOException
+     */
+    private void linkChildren(final @NotNull List<UserStory> userStoriesList) throws ExtractionException, IOException {
 
-            // URL images
+        // Get the directory where User Stories information are stored
+        final String userStoriesPath = ConfigurationProperties.getProperty("outputpathuserstoriessaving") + "\\" + startDateTime;
 
-            description = description.replaceAll("(img.*src=\")/", "$1");
+        setChildrenByParent(getChildrenMap(userStoriesList));
 
-            final Pattern p = Pattern.compile("(img.*src=)(\"/)(.*\")");
-            final Matcher m = p.matcher(description);
-            final StringBuffer s = new StringBuffer();
-            while (m.find())
-                m.appendReplacement(s, m.group(1) + "\"" + m.group(3).replace("%", "%25"));
+        final int parallelism = Integer.parseInt(ConfigurationProperties.getProperty("generator.parallelism",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        try {
+            final List<Future<Void>> pages = new ArrayList<>();
+            for (final UserStory parent : userStoriesList) {
+                if (!childrenByParent.containsKey(parent.getId())) {
+                    continue;
+                }
+                pages.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws ExtractionException, IOException {
+                        logger.debug("LINKING {} {} TO ITS CHILDREN", parent.getType(), parent.getId());
+                        final UserStory userStory = readUserStorieFromXmlFile(new File(userStoriesPath + "\\" + parent.getType().getFileName(parent.getId())));
+                        try {
+                            writeUserStoryPage(userStory);
+                        } finally {
+                            userStory.releaseContent();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> page : pages) {
+                getResult(page);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-            if (m.find())
-                description = s.toString();
+    /**
+     * Use the manifest saved in the root directory of extractions if no manifest is registered and it describes the
+     * snapshot directory of the website.
+     *
+     * @throws ExtractionException
+     */
+    private void loadSavedManifest() throws ExtractionException {
+        if (manifest == null) {
+            final ExtractionManifest savedManifest = ExtractionManifest.load(new File(ConfigurationProperties.getProperty("outputpathuserstoriessaving") + "\\" + ExtractionManifest.MANIFEST_FILE));
+            if (savedManifest != null && startDateTime.equals(savedManifest.getSnapshot())) {
+                manifest = savedManifest;
+            }
         }
+    }
 
+    /**
+     * Compute the fingerprints of the templates and, for an incremental generation, load the fingerprints of the
+     * previous website.
+     *
+     * @throws ExtractionException
+     */
+    private void prepareFingerprints() throws ExtractionException {
+        userStoryTemplateFingerprint = getTemplateFingerprint("userstory.vm");
+        listingTemplateFingerprint = getTemplateFingerprint("uslisting.vm");
 
-        us.setDescription(description);
+        if (!Boolean.parseBoolean(ConfigurationProperties.getProperty("generator.incremental", "false"))) {
+            return;
+        }
 
-        final String title = getValueofElementFromXml(jdomDocument, "//UserStory", "Name");
-        us.setTitle(title);
+        final String outputPath = ConfigurationProperties.getProperty("outputpathuserstoriessaving");
+        previousFingerprints = WebsiteFingerprints.load(new File(outputPath + "\\" + WebsiteFingerprints.FINGERPRINTS_FILE));
+        if (previousFingerprints == null) {
+            logger.info("INCREMENTAL GENERATION - NO PREVIOUS WEBSITE - ALL THE PAGES ARE GENERATED");
+        } else if (!new File(outputPath + "\\" + previousFingerprints.getSnapshot()).isDirectory()) {
+            logger.warn("INCREMENTAL GENERATION - PREVIOUS WEBSITE " + outputPath + "\\" + previousFingerprints.getSnapshot() + " IS MISSING");
+            previousFingerprints = null;
+        } else {
+            logger.info("INCREMENTAL GENERATION - UNCHANGED PAGES ARE REUSED FROM " + outputPath + "\\" + previousFingerprints.getSnapshot());
+        }
+    }
 
-        final String creationDate = getValueOfElementFromXml(jdomDocument, "//CreateDate");
-        us.setCreationDate(dtf.parseDateTime(creationDate).toString("dd/MM/yyyy"));
+    /**
+     * @param templateName - Name of a template
+     * @return the SHA-256 hash of the renderer and the template
+     * @throws ExtractionException
+     */
+    private String getTemplateFingerprint(final @NotNull String templateName) throws ExtractionException {
+        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("generator/templates/" + templateName)) {
+            if (inputStream == null) {
+                throw new ExtractionException("Template " + templateName + " is missing");
+            }
+            return DigestUtils.sha256Hex(pageRenderer.getClass().getName() + "\0" + DigestUtils.sha256Hex(inputStream));
+        } catch (IOException e) {
+            throw new ExtractionException("Failed to read the template " + templateName, e);
+        }
+    }
 
-        final String lastModificationDate = getValueOfElementFromXml(jdomDocument, "//ModifyDate");
-        us.setLastModificationDate(dtf.parseDateTime(lastModificationDate).toString("dd/MM/yyyy"));
+    /**
+     * Record the fingerprint of a file of the website, and reuse the file of the previous website if its fingerprint
+     * has not changed. A file already written by this generation (the page of an entity generated again to link the
+     * entities belonging to it) is never reused, it may not be the file of the previous website anymore.
+     *
+     * @param path        - Path of the file, relative to the snapshot directory
+     * @param fingerprint - Fingerprint of the inputs of the file
+     * @return true if the file is reused, false if it has to be generated
+     */
+    private boolean reuseUnchangedFile(final @NotNull String path, final @NotNull String fingerprint) {
+        final boolean alreadyWritten = fingerprints.put(path, fingerprint) != null;
+        if (alreadyWritten || previousFingerprints == null || !fingerprint.equals(previousFingerprints.get(path))) {
+            return false;
+        }
 
-        String feature = getValueofElementFromXml(jdomDocument, "//Feature", "Name");
-        if (feature == null) {
-            feature = "";
+        final String outputPath = ConfigurationProperties.getProperty("outputpathuserstoriessaving");
+        final File previousFile = new File(outputPath + "\\" + previousFingerprints.getSnapshot() + "\\" + path);
+        final File file = new File(outputPath + "\\" + startDateTime + "\\" + path);
+        if (!previousFile.exists()) {
+            return false;
+        }
+        if (previousFile.equals(file)) {
+            // The website is generated again in the same snapshot directory
+            return true;
         }
-        us.setFeature(feature);
 
-        final String state = getValueofElementFromXml(jdomDocument, "//EntityState", "Name");
-        us.setState(state);
+        // The file of the previous website is shared through a hard link, or copied
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            Files.deleteIfExists(file.toPath());
+            try {
+                Files.createLink(file.toPath(), previousFile.toPath());
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(previousFile.toPath(), file.toPath());
+            }
+        } catch (IOException e) {
+            logger.debug("INCREMENTAL GENERATION - FAILED TO REUSE {}", previousFile.getAbsolutePath(), e);
+            return false;
+        }
+        logger.debug("INCREMENTAL GENERATION - UNCHANGED {}", path);
+        return true;
+    }
 
-        // Load custom fields
-        us.setCustomFields(getCustomFields(jdomDocument));
+    /**
+     * Copy the static files of the website (css, bootstrap). A file already identical in the snapshot directory, or
+     * unchanged since the previous website, is not copied again.
+     *
+     * @param directory - Directory of the static files
+     * @param path      - Path of the copy, relative to the snapshot directory
+     * @throws IOException
+     */
+    private void copyStaticFiles(final @NotNull File directory, final @NotNull String path) throws IOException {
 
-        // Search if attachments are existing
-        // Get the directory where User Stories information have to be stored
-        final String outputPathUserStoriesSaving = ConfigurationProperties.getProperty("outputpathuserstoriessaving") + "\\" + startDateTime;
-        final File directoryToScan = new File(outputPathUserStoriesSaving + "\\" + "attachments");
-        final File[] files = directoryToScan.listFiles(new FilenameFilter() {
-            public boolean accept(File dir, String name) {
-                return name.toLowerCase().startsWith(us.getId());
+        // Get the directory where User Stories information are stored
+        final String userStoriesPath = ConfigurationProperties.getProperty("outputpathuserstoriessaving") + "\\" + startDateTime;
+
+        for (File file : FileUtils.listFiles(directory, null, true)) {
+            final String filePath = path + "\\" + directory.toURI().relativize(file.toURI()).getPath().replace('/', '\\');
+            final String fingerprint;
+            try (InputStream inputStream = new FileInputStream(file)) {
+                fingerprint = DigestUtils.sha256Hex(inputStream);
+            }
+            if (reuseUnchangedFile(filePath, fingerprint)) {
+                continue;
             }
-        });
-        us.setAttachments(files);
 
-        return us;
+            final File target = new File(userStoriesPath + "\\" + filePath);
+            if (!target.exists() || !FileUtils.contentEquals(file, target)) {
+                FileUtils.copyFile(file, target);
+            }
+        }
     }
 
     /**
-     * Return custom fields in the Map
+     * Compute the fingerprint of the page of an User Story : its template and all the fields it displays.
      *
-     * @param jdomDocument - XML Document loaded by Jdom
-     * @return custm fields
+     * @param userStory - User Story
+     * @return the fingerprint
      */
-    private Map<String, String> getCustomFields(final @NotNull Document jdomDocument) {
+    String getFingerprint(final @NotNull UserStory userStory) {
+        final StringBuilder inputs = new StringBuilder(userStoryTemplateFingerprint);
+        inputs.append('\0').append(userStory.getType())
+                .append('\0').append(userStory.getId())
+                .append('\0').append(userStory.getTitle())
+                .append('\0').append(userStory.getParentId())
+                .append('\0').append(userStory.getParentName())
+                .append('\0').append(userStory.isParentInWebsite())
+                .append('\0').append(userStory.getDescription())
+                .append('\0').append(userStory.getFeature())
+                .append('\0').append(userStory.getCreationDate())
+                .append('\0').append(userStory.getLastModificationDate())
+                .append('\0').append(userStory.getState());
+        if (userStory.getCustomFields() != null) {
+            for (Map.Entry<String, String> customField : new TreeMap<>(userStory.getCustomFields()).entrySet()) {
+                inputs.append('\0').append(customField.getKey()).append('=').append(customField.getValue());
+            }
+        }
+        if (userStory.getChildren() != null) {
+            for (UserStory child : userStory.getChildren()) {
+                inputs.append('\0').append(child.getType()).append(' ').append(child.getId()).append(' ').append(child.getTitle());
+            }
+        }
+        if (userStory.getAttachments() != null) {
+            // The links to the attachments are relative to the website, the same in every snapshot directory
+            for (File attachment : userStory.getAttachments()) {
+                inputs.append('\0').append(attachment.getPath());
+            }
+        }
+        return DigestUtils.sha256Hex(inputs.toString());
+    }
 
-        final Map<String, String> customFields = new HashMap<>();
+    /**
+     * Wait for a task of the generation and rethrow its failure.
+     *
+     * @param task - Task of the generation
+     * @return the result of the task
+     * @throws ExtractionException
+     * @throws IOException
+     */
+    private <T> T getResult(final @NotNull Future<T> task) throws ExtractionException, IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            throw new ExtractionException("HTML generation interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ExtractionException) {
+                throw (ExtractionException) e.getCause();
+            }
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new ExtractionException("Failed to generate the website", e.getCause());
+        }
+    }
 
-        final XPathFactory xpfac = XPathFactory.instance();
-        final XPathExpression<Element> expr = xpfac.compile("//CustomFields//Field", Filters.element());
+    /**
+     * Populate an object User Story from its XML file.
+     *
+     * @param userStoryFile XML File which are contained the User Story content
+     * @return the User Story populated
+     * @throws ExtractionException
+     */
+    UserStory readUserStorieFromXmlFile(final @NotNull File userStoryFile) throws ExtractionException {
+        final UserStory userStory;
+        final long parseStart = System.nanoTime();
+        try {
+            userStory = userStoryReader.read(userStoryFile);
+        } finally {
+            metrics.record(RunMetrics.Stage.PARSE, parseStart);
+        }
+        return prepareUserStory(userStory);
+    }
 
-        final List<Element> listFields = expr.evaluate(jdomDocument);
+    /**
+     * Populate an object User Story from the snapshot file.
+     *
+     * @param snapshot - Snapshot file of the extraction
+     * @param row      - Row of the User Story in the snapshot file
+     * @return the User Story populated
+     */
+    UserStory readUserStorieFromSnapshot(final @NotNull UserStorySnapshot snapshot, final int row) {
+        final long parseStart = System.nanoTime();
+        final UserStory userStory = snapshot.getUserStory(row);
+        metrics.record(RunMetrics.Stage.PARSE, parseStart);
+        return prepareUserStory(userStory);
+    }
 
-        for (Element field : listFields) {
-            if (field.getCType().equals(Content.CType.Element)) {
+    /**
+     * Prepare an User Story read from its XML file or from the snapshot file : rewrite its description and search
+     * its attachments.
+     *
+     * @param us - User Story as it is extracted
+     * @return the User Story prepared for the website
+     */
+    private UserStory prepareUserStory(final @NotNull UserStory us) {
 
-                boolean isDate = false;
-                if (field.getAttribute("Type").getValue().equals("Date")) {
-                    isDate = true;
-                }
+        // Links to other User Stories and sources of the images are rewritten for the website
+        if (us.getDescription() != null) {
+            final long rewriteStart = System.nanoTime();
+            us.setDescription(descriptionTransformer.transform(us.getDescription()));
+            metrics.record(RunMetrics.Stage.REWRITE, rewriteStart);
+        }
 
-                final List<Content> fieldContent = field.getContent();
-                String name = null;
-                String value = null;
-                for (Content content : fieldContent) {
-                    if (content.getCType().equals(Content.CType.Element) && ((Element) content).getName().equals("Name")) {
-                        name = content.getValue();
-                    }
-                    if (content.getCType().equals(Content.CType.Element) && ((Element) content).getName().equals("Value")) {
-                        value = content.getValue();
+        // Search if attachments are existing, they are linked relatively to the page so that it does not depend on the
+        // snapshot directory
+        final File[] attachments = getAttachmentsOfUserStory(us.getId());
+        if (attachments != null) {
+            final File[] links = new File[attachments.length];
+            for (int i = 0; i < attachments.length; i++) {
+                links[i] = new File("attachments\\" + attachments[i].getName());
+            }
+            us.setAttachments(links);
+        }
 
-                        if (isDate && value != null && value.length() > 0) {
-                            value = dtf.parseDateTime(value).toString("dd/MM/yyyy");
-                        }
-                    }
+        // The entity this one belongs to, and the ones belonging to it, are linked if they have a page in the website
+        us.setParentInWebsite(us.getParentId() != null && us.getParentType() == entityTypes.get(us.getParentId()));
+        if (childrenByParent != null) {
+            us.setChildren(childrenByParent.get(us.getId()));
+        }
+
+        return us;
+    }
+
+    /**
+     * Return the attachments of an User Story, given by the manifest of the extraction. Without manifest entry, the
+     * attachments directory is scanned.
+     *
+     * @param userStoryId - User Story ID
+     * @return the attachment files
+     */
+    private File[] getAttachmentsOfUserStory(final @NotNull String userStoryId) {
+
+        // Get the directory where User Stories information have to be stored
+        final String outputPathUserStoriesSaving = ConfigurationProperties.getProperty("outputpathuserstoriessaving") + "\\" + startDateTime;
+
+        final ExtractionManifest.Entry entry = manifest == null ? null : manifest.get(userStoryId);
+        if (entry != null) {
+            final List<File> files = new ArrayList<>();
+            for (String artifact : entry.getArtifacts()) {
+                if (artifact.startsWith("attachments\\")) {
+                    files.add(new File(outputPathUserStoriesSaving + "\\" + artifact));
                 }
-                customFields.put(name, value);
             }
+            return files.toArray(new File[files.size()]);
         }
 
-        return customFields;
+        final File directoryToScan = new File(outputPathUserStoriesSaving + "\\" + "attachments");
+        return directoryToScan.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.toLowerCase().startsWith(userStoryId + "-");
+            }
+        });
     }
 
     /**
-     * Search a XML element and return its value.
+     * Generate HTML file for an User Story, and add it to the search index. Then the content of the page is released,
+     * only the fields displayed by the listing page stay in the User Story.
      *
-     * @param jdomDocument - XML Document loaded by Jdom
-     * @param elementPath  - xpath of element researched
-     * @return value of the element
+     * @param userStory - User Story to generated
+     * @throws ExtractionException
+     * @throws IOException
      */
-    private String getValueOfElementFromXml(final @NotNull Document jdomDocument, final @NotNull String elementPath) {
-        final XPathFactory xpfac = XPathFactory.instance();
-        final XPathExpression<Element> expr = xpfac.compile(elementPath, Filters.element());
+    void generateHtmlFromUserStory(final @NotNull UserStory userStory) throws ExtractionException, IOException {
+        try {
 
-        final List<Element> listElements = expr.evaluate(jdomDocument);
-        if (listElements.isEmpty()) {
-            return null;
-        }
+            // The User Story is indexed while its description is in memory, even if its page is reused
+            searchIndex.add(userStory);
 
-        final List<Content> listContents = listElements.get(0).getContent();
-        if (listContents.isEmpty()) {
-            return null;
+            writeUserStoryPage(userStory);
+        } finally {
+            userStory.releaseContent();
         }
-
-        return listContents.get(0).getValue();
     }
 
     /**
-     * Search a XML element and one of ist attributes and return its value.
+     * Write the HTML file of an User Story, or reuse the one of the previous website if it has not changed.
      *
-     * @param jdomDocument - XML Document loaded by Jdom
-     * @param elementPath  - xpath of element researched
-     * @param attribute    - attribute researched
-     * @return value of the element
+     * @param userStory - User Story to generated
+     * @throws ExtractionException
+     * @throws IOException
      */
-    private String getValueofElementFromXml(final @NotNull Document jdomDocument, final @NotNull String elementPath, final @NotNull String attribute) {
-        final XPathFactory xpfac = XPathFactory.instance();
-        final XPathExpression<Element> expr = xpfac.compile(elementPath, Filters.element());
+    private void writeUserStoryPage(final @NotNull UserStory userStory) throws ExtractionException, IOException {
 
-        final List<Element> listElements = expr.evaluate(jdomDocument);
-        if (listElements.isEmpty()) {
-            return null;
+        // The page of the previous website is reused if the User Story has not changed
+        if (reuseUnchangedFile(userStory.getPageName(), getFingerprint(userStory))) {
+            return;
         }
 
-        return listElements.get(0).getAttributeValue(attribute);
+        // Get the directory where User Stories information have to be stored
+        final String outputPathUserStoriesSaving = ConfigurationProperties.getProperty("outputpathuserstoriessaving") + "\\" + startDateTime;
+
+        pageRenderer.renderUserStoryPage(userStory, new File(outputPathUserStoriesSaving + "\\" + userStory.getPageName()));
     }
 
     /**
-     * Generate HTML file for an User Story
+     * Generate HTML Listing Page
      *
-     * @param userStory       - User Story to generated
-     * @param userStoriesList - List of User Stories required to generate the search box
+     * @param featureUserStoriesMap - Map containing US list classified by feature
      * @throws ExtractionException
      * @throws IOException
      */
-    private void generateHtmlFromUserStory(final @NotNull UserStory userStory, final @NotNull List<UserStory> userStoriesList) throws ExtractionException, IOException {
+    private void generateHtmlListingPage(final @NotNull Map<String, List<UserStory>> featureUserStoriesMap) throws ExtractionException, IOException {
 
         // Get the directory where User Stories information have to be stored
         final String outputPathUserStoriesSaving = ConfigurationProperties.getProperty("outputpathuserstoriessaving") + "\\" + startDateTime;
 
-        Template t = velocityEngine.getTemplate("userstory.vm");
-        VelocityContext context = new VelocityContext();
-        context.put("us", userStory);
-        context.put("userStoriesList", userStoriesList);
-        StringWriter stringWriter = new StringWriter();
-        t.merge(context, stringWriter);
+        // The page is only generated again if an User Story is added or removed, or its title, feature or state changed
+        if (reuseUnchangedFile("index.html", getListingFingerprint(featureUserStoriesMap))) {
+            return;
+        }
 
-        // Now it has to save the content of the User Story
-        FileWriter writer = null;
-        try {
-            writer = new FileWriter(outputPathUserStoriesSaving + "\\us-" + userStory.getId() + ".html");
-            writer.write(stringWriter.toString());
-        } catch (IOException ex) {
-            throw new ExtractionException("Failed to write the file " + outputPathUserStoriesSaving + "\\us-" + userStory.getId() + ".html", ex);
-        } finally {
-            if (writer != null) {
-                writer.close();
+        logger.debug("START GENERATE HTML HOMEPAGE {}\\index.html", outputPathUserStoriesSaving);
+
+        pageRenderer.renderListingPage(featureUserStoriesMap, new File(outputPathUserStoriesSaving + "\\index.html"));
+
+        logger.debug("END GENERATE HTML HOMEPAGE {}\\index.html", outputPathUserStoriesSaving);
+    }
+
+    /**
+     * Compute the fingerprint of the listing page : its template, and the type, id, title and state of the User Stories
+     * by feature.
+     *
+     * @param featureUserStoriesMap - Map containing US list classified by feature
+     * @return the fingerprint
+     */
+    String getListingFingerprint(final @NotNull Map<String, List<UserStory>> featureUserStoriesMap) {
+        final StringBuilder inputs = new StringBuilder(listingTemplateFingerprint);
+        for (Map.Entry<String, List<UserStory>> featureUserStories : featureUserStoriesMap.entrySet()) {
+            inputs.append('\0').append(featureUserStories.getKey());
+            for (UserStory userStory : featureUserStories.getValue()) {
+                inputs.append('\0').append(userStory.getType())
+                        .append('\0').append(userStory.getId())
+                        .append('\0').append(userStory.getTitle())
+                        .append('\0').append(userStory.getState());
             }
         }
+        return DigestUtils.sha256Hex(inputs.toString());
     }
 
     /**
-     * Generate HTML Listing Page
+     * @return the renderer of the pages
+     */
+    PageRenderer getPageRenderer() {
+        return pageRenderer;
+    }
+
+    /**
+     * Write the search index, shared by all the pages.
      *
-     * @param featureUserStoriesMap - Map containing US list classified by feature
-     * @param userStoriesList       - List of User Stories required to generate the search box
      * @throws ExtractionException
-     * @throws IOException
      */
-    private void generateHtmlListingPage(final @NotNull Map<String, List<UserStory>> featureUserStoriesMap, final @NotNull List<UserStory> userStoriesList) throws ExtractionException, IOException {
+    private void writeSearchIndex() throws ExtractionException {
 
         // Get the directory where User Stories information have to be stored
         final String outputPathUserStoriesSaving = ConfigurationProperties.getProperty("outputpathuserstoriessaving") + "\\" + startDateTime;
 
-        logger.debug("START GENERATE HTML HOMEPAGE " + outputPathUserStoriesSaving + "\\index.html");
-
-        Template t = velocityEngine.getTemplate("uslisting.vm");
-        VelocityContext context = new VelocityContext();
-        context.put("featureUserStoriesMap", featureUserStoriesMap);
-        context.put("userStoriesList", userStoriesList);
-        StringWriter stringWriter = new StringWriter();
-        t.merge(context, stringWriter);
+        logger.debug("START GENERATE SEARCH INDEX {}\\{}", outputPathUserStoriesSaving, SearchIndex.SEARCH_DIRECTORY);
 
-        // Now it has to save the content of the User Story
-        FileWriter writer = null;
+        final int parallelism = Integer.parseInt(ConfigurationProperties.getProperty("generator.parallelism",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        final long writeStart = System.nanoTime();
         try {
-            writer = new FileWriter(outputPathUserStoriesSaving + "\\index.html");
-            writer.write(stringWriter.toString());
-        } catch (IOException ex) {
-            throw new ExtractionException("Failed to write the file " + outputPathUserStoriesSaving + "\\index.html", ex);
+            metrics.addBytesWritten(searchIndex.write(parallelism));
         } finally {
-            if (writer != null) {
-                writer.close();
-            }
+            metrics.record(RunMetrics.Stage.WRITE, writeStart);
         }
-        logger.debug("END GENERATE HTML HOMEPAGE " + outputPathUserStoriesSaving + "\\index.html");
+
+        logger.debug("END GENERATE SEARCH INDEX {}\\{}", outputPathUserStoriesSaving, SearchIndex.SEARCH_DIRECTORY);
     }
 
     /**
@@ -391,13 +874,15 @@ public class WebsiteGenerator {
      * @param userStoryPath - Path to access to the User Stories Directory
      * @return the User Stories files
      */
-    private File[] listUserStoriesFiles(final @NotNull String userStoryPath) {
+    static File[] listUserStoriesFiles(final @NotNull String userStoryPath) {
         final File directoryToScan = new File(userStoryPath);
         final File[] files = directoryToScan.listFiles(new FilenameFilter() {
             public boolean accept(File dir, String name) {
                 return name.toLowerCase().endsWith(".xml");
             }
         });
+        // Sort files, so the website does not depend on the order given by the file system
+        Arrays.sort(files);
         return files;
     }
 
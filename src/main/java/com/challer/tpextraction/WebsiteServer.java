@@ -0,0 +1,584 @@
+package com.challer.tpextraction;
+
+import com.sun.istack.internal.NotNull;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local HTTP server rendering the pages of a website on demand, instead of generating all of them before browsing.
+ * <p>
+ * The User Stories are read from the snapshot file, or from their XML files, when their page is asked. The pages
+ * rendered and the User Stories read are kept in caches bounded in size, the least recently used ones are evicted
+ * first. The ETag of a page is its fingerprint (see {@link WebsiteGenerator}), so a browser asking again for a page
+ * which has not changed gets "304 Not Modified", and the page is not rendered again.
+ * <p>
+ * The search index of the website is used if it has already been written, else it is written in the background.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public class WebsiteServer {
+
+    /**
+     * Logger Class
+     */
+    private final static org.slf4j.Logger logger = LoggerFactory.getLogger(WebsiteServer.class);
+
+    /**
+     * Path of the page of an User Story or of another entity : prefix of its type and id, the id being restricted to
+     * the characters of the ids of Target Process
+     */
+    private final static Pattern USER_STORY_PAGE = Pattern.compile("([a-z]+)-([A-Za-z0-9_-]+)\\.html");
+
+    /**
+     * Directories of the static files of the website, in the classpath
+     */
+    private final static String[] RESOURCE_DIRECTORIES = {"bootstrap/", "css/", "js/"};
+
+    /**
+     * Directories of the files of the website, in the snapshot directory
+     */
+    private final static String[] WEBSITE_DIRECTORIES = {"images/", "attachments/", SearchIndex.SEARCH_DIRECTORY + "/"};
+
+    /**
+     * Content type of the pages, written in UTF-8 by both renderers
+     */
+    private final static String HTML_CONTENT_TYPE = "text/html; charset=utf-8";
+
+    /**
+     * Generator reading the User Stories and giving the fingerprints of the pages
+     */
+    private final WebsiteGenerator generator;
+
+    /**
+     * Snapshot directory of the website
+     */
+    private final File websiteDirectory;
+
+    /**
+     * Snapshot file of the extraction, or null to read the XML files
+     */
+    private final UserStorySnapshot snapshot;
+
+    /**
+     * Maximum size of the pages kept in the cache (in bytes)
+     */
+    private final long pagesCacheSize;
+
+    /**
+     * Pages rendered by path, from the least to the most recently used
+     */
+    private final LinkedHashMap<String, Page> pages = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Size of all the pages kept in the cache (in bytes)
+     */
+    private long pagesSize;
+
+    /**
+     * User Stories read by page name, from the least to the most recently used
+     */
+    private final Map<String, UserStory> userStories;
+
+    /**
+     * User Stories of the listing page by feature, read when the listing page is first asked
+     */
+    private volatile Map<String, List<UserStory>> featureUserStoriesMap;
+
+    /**
+     * Threads answering the requests
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Thread writing the search index
+     */
+    private final ExecutorService indexer = Executors.newSingleThreadExecutor();
+
+    private final HttpServer server;
+
+    /**
+     * Constructor, the server is started at once
+     *
+     * @param generator            - Generator reading the User Stories
+     * @param websiteDirectory     - Snapshot directory of the website
+     * @param snapshot             - Snapshot file of the extraction, or null to read the XML files ; closed by {@link #stop()}
+     * @param address              - Address of the server
+     * @param parallelism          - Number of requests answered at the same time
+     * @param pagesCacheSize       - Maximum size of the pages kept in the cache (in bytes)
+     * @param userStoriesCacheSize - Maximum number of User Stories kept in the cache
+     * @throws ExtractionException
+     */
+    WebsiteServer(final @NotNull WebsiteGenerator generator, final @NotNull File websiteDirectory, final UserStorySnapshot snapshot,
+                  final @NotNull InetSocketAddress address, final int parallelism, final long pagesCacheSize, final int userStoriesCacheSize) throws ExtractionException {
+        this.generator = generator;
+        this.websiteDirectory = websiteDirectory;
+        this.snapshot = snapshot;
+        this.pagesCacheSize = pagesCacheSize;
+        this.userStories = new LinkedHashMap<String, UserStory>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, UserStory> eldest) {
+                return size() > userStoriesCacheSize;
+            }
+        };
+
+        try {
+            server = HttpServer.create(address, 0);
+        } catch (IOException e) {
+            throw new ExtractionException("Failed to start the server on " + address, e);
+        }
+        executor = Executors.newFixedThreadPool(parallelism);
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            public void handle(final HttpExchange exchange) throws IOException {
+                try {
+                    answer(exchange);
+                } catch (ExtractionException | IOException | RuntimeException e) {
+                    logger.error("SERVER - FAILED TO ANSWER " + exchange.getRequestURI(), e);
+                    sendStatus(exchange, 500);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+
+        // The search index of a website already generated is used as it is
+        final File searchDirectory = new File(websiteDirectory, SearchIndex.SEARCH_DIRECTORY);
+        if (searchDirectory.isDirectory() && !new File(searchDirectory, "postings.tmp").exists()) {
+            logger.info("SERVER - SEARCH INDEX READ FROM " + searchDirectory.getAbsolutePath());
+        } else {
+            indexer.execute(new Runnable() {
+                public void run() {
+                    writeSearchIndex(searchDirectory, parallelism);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return the URL of the listing page
+     */
+    public String getUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * Stop the server, the requests being answered are interrupted.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+        indexer.shutdownNow();
+        if (snapshot != null) {
+            try {
+                snapshot.close();
+            } catch (IOException e) {
+                logger.warn("SERVER - FAILED TO CLOSE " + snapshot.getSnapshotFile().getAbsolutePath(), e);
+            }
+        }
+        logger.info("SERVER IS STOPPED");
+    }
+
+    /**
+     * Answer a request : a page rendered, a static file of the classpath or a file of the snapshot directory.
+     *
+     * @param exchange - Request and its response
+     * @throws ExtractionException
+     * @throws IOException
+     */
+    private void answer(final @NotNull HttpExchange exchange) throws ExtractionException, IOException {
+        final String method = exchange.getRequestMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+            sendStatus(exchange, 405);
+            return;
+        }
+
+        // Path relative to the root of the website, without going out of it
+        String path = exchange.getRequestURI().getPath();
+        path = path == null || path.equals("/") ? "index.html" : path.substring(1);
+        if (path.isEmpty() || path.contains("\\") || ("/" + path + "/").contains("/../") || ("/" + path + "/").contains("/./") || path.contains("//")) {
+            sendStatus(exchange, 404);
+            return;
+        }
+
+        final String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        final Page page = getPage(path, ifNoneMatch);
+        if (page != null) {
+            send(exchange, page.content, page.etag, page.contentType, ifNoneMatch);
+            return;
+        }
+
+        final File file = getWebsiteFile(path);
+        if (file == null) {
+            sendStatus(exchange, 404);
+            return;
+        }
+        final String etag = "\"" + Long.toHexString(file.length()) + "-" + Long.toHexString(file.lastModified()) + "\"";
+        exchange.getResponseHeaders().set("Content-Type", getContentType(path));
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        if (matches(ifNoneMatch, etag)) {
+            exchange.sendResponseHeaders(304, -1);
+        } else if ("HEAD".equals(method)) {
+            exchange.sendResponseHeaders(200, -1);
+        } else {
+            exchange.sendResponseHeaders(200, file.length());
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                Files.copy(file.toPath(), outputStream);
+            }
+        }
+    }
+
+    /**
+     * Return a page of the website, from the cache or rendered. A page whose ETag is the one of the browser is not
+     * rendered, only its ETag is returned.
+     *
+     * @param path        - Path of the page
+     * @param ifNoneMatch - ETags of the page known by the browser, or null
+     * @return the page, null if the path is not the one of a page
+     * @throws ExtractionException
+     * @throws IOException
+     */
+    private Page getPage(final @NotNull String path, final String ifNoneMatch) throws ExtractionException, IOException {
+        Page page = getCachedPage(path);
+        if (page != null) {
+            return page;
+        }
+
+        // Listing page
+        if (path.equals("index.html")) {
+            final Map<String, List<UserStory>> featureUserStories = getFeatureUserStoriesMap();
+            final String etag = "\"" + generator.getListingFingerprint(featureUserStories) + "\"";
+            if (matches(ifNoneMatch, etag)) {
+                return new Page(null, etag, HTML_CONTENT_TYPE);
+            }
+            page = new Page(generator.getPageRenderer().renderListingPage(featureUserStories), etag, HTML_CONTENT_TYPE);
+            putCachedPage(path, page);
+            return page;
+        }
+
+        // Page of an User Story
+        final Matcher matcher = USER_STORY_PAGE.matcher(path);
+        final EntityType type = EntityType.fromFileName(path);
+        if (matcher.matches() && type != null && type.getPrefix().equals(matcher.group(1))) {
+            final UserStory userStory = getUserStory(type, matcher.group(2));
+            if (userStory == null) {
+                return null;
+            }
+            final String etag = "\"" + generator.getFingerprint(userStory) + "\"";
+            if (matches(ifNoneMatch, etag)) {
+                return new Page(null, etag, HTML_CONTENT_TYPE);
+            }
+            page = new Page(generator.getPageRenderer().renderUserStoryPage(userStory), etag, HTML_CONTENT_TYPE);
+            putCachedPage(path, page);
+            return page;
+        }
+
+        // Static files : css and bootstrap
+        for (String directory : RESOURCE_DIRECTORIES) {
+            if (path.startsWith(directory)) {
+                try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("generator/" + path)) {
+                    if (inputStream == null) {
+                        return null;
+                    }
+                    final byte[] content = IOUtils.toByteArray(inputStream);
+                    page = new Page(content, "\"" + DigestUtils.sha256Hex(content) + "\"", getContentType(path));
+                }
+                putCachedPage(path, page);
+                return page;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return a file of the snapshot directory : image, attachment or file of the search index.
+     *
+     * @param path - Path of the file, relative to the snapshot directory
+     * @return the file, or null if it does not exist or is not part of the website
+     */
+    private File getWebsiteFile(final @NotNull String path) {
+        for (String directory : WEBSITE_DIRECTORIES) {
+            if (path.startsWith(directory)) {
+                File file = websiteDirectory;
+                for (String name : path.split("/")) {
+                    file = new File(file, name);
+                }
+                return file.isFile() ? file : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return an User Story, or another entity, from the cache or read from the snapshot file or its XML file.
+     *
+     * @param type        - Type of the entity
+     * @param userStoryId - User Story ID
+     * @return the User Story, or null if it is not in the snapshot directory
+     * @throws ExtractionException
+     */
+    private UserStory getUserStory(final @NotNull EntityType type, final @NotNull String userStoryId) throws ExtractionException {
+        final String key = type.getPageName(userStoryId);
+        synchronized (userStories) {
+            final UserStory userStory = userStories.get(key);
+            if (userStory != null) {
+                return userStory;
+            }
+        }
+
+        final UserStory userStory;
+        if (snapshot != null) {
+            final int row = snapshot.find(userStoryId);
+            if (row < 0 || snapshot.getType(row) != type) {
+                return null;
+            }
+            userStory = generator.readUserStorieFromSnapshot(snapshot, row);
+        } else {
+            final File userStoryFile = new File(websiteDirectory.getPath() + "\\" + type.getFileName(userStoryId));
+            if (!userStoryFile.isFile()) {
+                return null;
+            }
+
+            // Without snapshot file, the entities belonging to this one are known once all the XML files are read
+            getFeatureUserStoriesMap();
+            userStory = generator.readUserStorieFromXmlFile(userStoryFile);
+        }
+
+        synchronized (userStories) {
+            userStories.put(key, userStory);
+        }
+        return userStory;
+    }
+
+    /**
+     * Return the User Stories of the listing page by feature. They are read once, the first time the listing page is
+     * asked : only the metadata of the snapshot file is read, or all the XML files without snapshot file.
+     *
+     * @return the User Stories by feature
+     * @throws ExtractionException
+     */
+    private synchronized Map<String, List<UserStory>> getFeatureUserStoriesMap() throws ExtractionException {
+        if (featureUserStoriesMap != null) {
+            return featureUserStoriesMap;
+        }
+
+        final List<UserStory> userStoriesList = new ArrayList<>();
+        if (snapshot != null) {
+            for (int row = 0; row < snapshot.size(); row++) {
+                final UserStory userStory = new UserStory();
+                userStory.setType(snapshot.getType(row));
+                userStory.setId(snapshot.getId(row));
+                userStory.setTitle(snapshot.getTitle(row));
+                userStory.setFeature(snapshot.getFeature(row));
+                userStory.setState(snapshot.getState(row));
+                userStoriesList.add(userStory);
+            }
+        } else {
+            for (File userStoryFile : WebsiteGenerator.listUserStoriesFiles(websiteDirectory.getPath())) {
+                final UserStory userStory = generator.readUserStorieFromXmlFile(userStoryFile);
+                userStory.releaseContent();
+                userStoriesList.add(userStory);
+            }
+            generator.setChildrenByParent(WebsiteGenerator.getChildrenMap(userStoriesList));
+        }
+        logger.info("SERVER - LISTING OF " + userStoriesList.size() + " US READ");
+
+        featureUserStoriesMap = WebsiteGenerator.getFeatureUserStoriesMap(userStoriesList);
+        return featureUserStoriesMap;
+    }
+
+    /**
+     * Write the search index of all the User Stories. A failure only disables the search box.
+     *
+     * @param searchDirectory - Directory of the search index
+     * @param parallelism     - Number of shards written at the same time
+     */
+    private void writeSearchIndex(final @NotNull File searchDirectory, final int parallelism) {
+        logger.info("SERVER - WRITING SEARCH INDEX IN " + searchDirectory.getAbsolutePath());
+        try {
+            final SearchIndex searchIndex = new SearchIndex(searchDirectory);
+            final File[] userStoriesFiles = snapshot == null ? WebsiteGenerator.listUserStoriesFiles(websiteDirectory.getPath()) : null;
+            final int userStoriesCount = snapshot == null ? userStoriesFiles.length : snapshot.size();
+            for (int row = 0; row < userStoriesCount; row++) {
+                if (Thread.currentThread().isInterrupted()) {
+                    logger.info("SERVER - SEARCH INDEX WRITING INTERRUPTED");
+                    return;
+                }
+                final UserStory userStory = snapshot == null ? generator.readUserStorieFromXmlFile(userStoriesFiles[row]) : generator.readUserStorieFromSnapshot(snapshot, row);
+                searchIndex.add(userStory);
+            }
+            searchIndex.write(parallelism);
+            logger.info("SERVER - SEARCH INDEX WRITTEN FOR " + userStoriesCount + " US");
+        } catch (ExtractionException | RuntimeException e) {
+            logger.error("SERVER - FAILED TO WRITE THE SEARCH INDEX - THE SEARCH BOX FINDS NOTHING", e);
+        }
+    }
+
+    /**
+     * @param path - Path of a page
+     * @return the page kept in the cache, or null
+     */
+    private Page getCachedPage(final @NotNull String path) {
+        synchronized (pages) {
+            return pages.get(path);
+        }
+    }
+
+    /**
+     * Keep a page in the cache, the least recently used pages are evicted to stay under the maximum size.
+     *
+     * @param path - Path of the page
+     * @param page - Page rendered
+     */
+    private void putCachedPage(final @NotNull String path, final @NotNull Page page) {
+        if (page.content.length > pagesCacheSize) {
+            return;
+        }
+        synchronized (pages) {
+            final Page previousPage = pages.put(path, page);
+            if (previousPage != null) {
+                pagesSize -= previousPage.content.length;
+            }
+            pagesSize += page.content.length;
+
+            final Iterator<Page> iterator = pages.values().iterator();
+            while (pagesSize > pagesCacheSize && iterator.hasNext()) {
+                pagesSize -= iterator.next().content.length;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Send a page, or "304 Not Modified" if the browser already has it.
+     *
+     * @param exchange    - Request and its response
+     * @param content     - Content of the page, null if the browser already has it
+     * @param etag        - ETag of the page
+     * @param contentType - Content type of the page
+     * @param ifNoneMatch - ETags of the page known by the browser, or null
+     * @throws IOException
+     */
+    private static void send(final @NotNull HttpExchange exchange, final byte[] content, final @NotNull String etag,
+                             final @NotNull String contentType, final String ifNoneMatch) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.getResponseHeaders().set("ETag", etag);
+        // The browser checks the ETag before using its copy
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        if (content == null || matches(ifNoneMatch, etag)) {
+            exchange.sendResponseHeaders(304, -1);
+        } else if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(200, -1);
+        } else {
+            exchange.sendResponseHeaders(200, content.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(content);
+            }
+        }
+    }
+
+    /**
+     * Send a response without body.
+     *
+     * @param exchange - Request and its response
+     * @param status   - HTTP status
+     */
+    private static void sendStatus(final @NotNull HttpExchange exchange, final int status) {
+        try {
+            exchange.sendResponseHeaders(status, -1);
+        } catch (IOException e) {
+            // The response has already started, or the browser has gone
+            logger.debug("SERVER - FAILED TO SEND STATUS {} FOR {}", status, exchange.getRequestURI(), e);
+        }
+    }
+
+    /**
+     * @param ifNoneMatch - Header If-None-Match of the request, or null
+     * @param etag        - ETag of the page
+     * @return true if the ETag is one of the header, weak ETags being compared as strong ones
+     */
+    private static boolean matches(final String ifNoneMatch, final @NotNull String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String value : ifNoneMatch.split(",")) {
+            String tag = value.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param path - Path of a file
+     * @return the content type of the file, given by its extension
+     */
+    private static String getContentType(final @NotNull String path) {
+        final String extension = path.substring(path.lastIndexOf('.') + 1).toLowerCase();
+        switch (extension) {
+            case "html":
+                return HTML_CONTENT_TYPE;
+            case "css":
+                return "text/css";
+            case "js":
+                return "application/javascript";
+            case "svg":
+                return "image/svg+xml";
+            case "woff":
+                return "application/font-woff";
+            case "ttf":
+                return "application/x-font-ttf";
+            case "eot":
+                return "application/vnd.ms-fontobject";
+            default:
+                final String contentType = URLConnection.guessContentTypeFromName(path);
+                return contentType == null ? "application/octet-stream" : contentType;
+        }
+    }
+
+    /**
+     * Page kept in the cache
+     */
+    private static class Page {
+
+        /**
+         * Content of the page, null if it has not been rendered
+         */
+        private final byte[] content;
+
+        private final String etag;
+
+        private final String contentType;
+
+        private Page(final byte[] content, final @NotNull String etag, final @NotNull String contentType) {
+            this.content = content;
+            this.etag = etag;
+            this.contentType = contentType;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.challer.tpextraction;
+
+import com.sun.istack.internal.NotNull;
+import org.jdom2.Content;
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.filter.Filters;
+import org.jdom2.input.SAXBuilder;
+import org.jdom2.xpath.XPathExpression;
+import org.jdom2.xpath.XPathFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of the XML parsers and XPath expressions used during the whole run.
+ * <p>
+ * XPath expressions are compiled once. As JDOM expressions and parsers are not thread-safe, each thread works on
+ * its own copies, which ones are reused from a User Story to another.
+ *
+ * @author Cyril Haller - cyril.haller@gmail.com
+ */
+public final class XmlSupport {
+
+    public final static String USER_STORY = "//UserStory";
+
+    public final static String DESCRIPTION = "//Description";
+
+    public final static String CREATE_DATE = "//CreateDate";
+
+    public final static String MODIFY_DATE = "//ModifyDate";
+
+    public final static String FEATURE = "//Feature";
+
+    public final static String ENTITY_STATE = "//EntityState";
+
+    public final static String CUSTOM_FIELDS = "//CustomFields//Field";
+
+    public final static String ATTACHMENT = "//Attachment";
+
+    public final static String IMG = "//img";
+
+    /**
+     * Expressions compiled once for the whole run
+     */
+    private final static ConcurrentMap<String, XPathExpression<Element>> expressions = new ConcurrentHashMap<>();
+
+    /**
+     * Copies of the expressions used by the current thread
+     */
+    private final static ThreadLocal<Map<String, XPathExpression<Element>>> threadExpressions = new ThreadLocal<Map<String, XPathExpression<Element>>>() {
+        @Override
+        protected Map<String, XPathExpression<Element>> initialValue() {
+            return new HashMap<>();
+        }
+    };
+
+    /**
+     * Parser used by the current thread
+     */
+    private final static ThreadLocal<SAXBuilder> saxBuilders = new ThreadLocal<SAXBuilder>() {
+        @Override
+        protected SAXBuilder initialValue() {
+            final SAXBuilder saxBuilder = new SAXBuilder();
+            saxBuilder.setReuseParser(true);
+            return saxBuilder;
+        }
+    };
+
+    static {
+        for (String path : new String[]{USER_STORY, DESCRIPTION, CREATE_DATE, MODIFY_DATE, FEATURE, ENTITY_STATE, CUSTOM_FIELDS, ATTACHMENT, IMG}) {
+            expressions.put(path, XPathFactory.instance().compile(path, Filters.element()));
+        }
+    }
+
+    private XmlSupport() {
+    }
+
+    /**
+     * Return the parser of the current thread.
+     *
+     * @return the parser
+     */
+    public static SAXBuilder getSAXBuilder() {
+        return saxBuilders.get();
+    }
+
+    /**
+     * Return the compiled expression of the current thread for a XPath.
+     *
+     * @param elementPath - xpath of elements researched
+     * @return the compiled expression
+     */
+    public static XPathExpression<Element> getXPath(final @NotNull String elementPath) {
+        final Map<String, XPathExpression<Element>> compiledExpressions = threadExpressions.get();
+        XPathExpression<Element> expr = compiledExpressions.get(elementPath);
+        if (expr == null) {
+            XPathExpression<Element> sharedExpr = expressions.get(elementPath);
+            if (sharedExpr == null) {
+                expressions.putIfAbsent(elementPath, XPathFactory.instance().compile(elementPath, Filters.element()));
+                sharedExpr = expressions.get(elementPath);
+            }
+            expr = sharedExpr.clone();
+            compiledExpressions.put(elementPath, expr);
+        }
+        return expr;
+    }
+
+    /**
+     * Search the XML elements matching a XPath.
+     *
+     * @param jdomDocument - XML Document loaded by Jdom
+     * @param elementPath  - xpath of elements researched
+     * @return the elements
+     */
+    public static List<Element> getElements(final @NotNull Document jdomDocument, final @NotNull String elementPath) {
+        return getXPath(elementPath).evaluate(jdomDocument);
+    }
+
+    /**
+     * Search a XML element and return its value.
+     *
+     * @param jdomDocument - XML Document loaded by Jdom
+     * @param elementPath  - xpath of element researched
+     * @return value of the element
+     */
+    public static String getValueOfElement(final @NotNull Document jdomDocument, final @NotNull String elementPath) {
+        final Element element = getXPath(elementPath).evaluateFirst(jdomDocument);
+        if (element == null || element.getContentSize() == 0) {
+            return null;
+        }
+
+        final Content content = element.getContent(0);
+        return content.getValue();
+    }
+
+    /**
+     * Search a XML element and one of its attributes and return its value.
+     *
+     * @param jdomDocument - XML Document loaded by Jdom
+     * @param elementPath  - xpath of element researched
+     * @param attribute    - attribute researched
+     * @return value of the attribute
+     */
+    public static String getAttributeValueOfElement(final @NotNull Document jdomDocument, final @NotNull String elementPath, final @NotNull String attribute) {
+        final Element element = getXPath(elementPath).evaluateFirst(jdomDocument);
+        if (element == null) {
+            return null;
+        }
+
+        return element.getAttributeValue(attribute);
+    }
+}
@@ -0,0 +1,201 @@
+// Search of the User Stories through the index written in the directory "search" by SearchIndex.
+// The shards of the index are scripts loaded on demand, so the search also works when the website is opened from the
+// file system : a word only loads the shard of terms of its first two characters, then the shards of documents of
+// the User Stories displayed.
+var userStoriesSearch = (function () {
+
+    // Number of User Stories by shard of documents, see SearchIndex
+    var DOCUMENTS_PER_SHARD = 1000;
+
+    // Words are indexed from 2 characters, and by their first 32 characters
+    var MIN_TERM_LENGTH = 2;
+    var MAX_TERM_LENGTH = 32;
+
+    // Number of User Stories displayed
+    var MAX_RESULTS = 15;
+
+    // Prefixes of the pages of the other entities, by their type displayed in the results, see EntityType
+    var PAGE_PREFIXES = {"Bug": "bug", "Task": "task", "Feature": "feature", "Epic": "epic"};
+
+    // Shards loaded : terms by prefix, "ID - Title" (or "Type ID - Title") by shard number
+    var terms = {};
+    var documents = {};
+
+    // Scripts of the index loaded, and callbacks waiting for a script being loaded, by file
+    var loaded = {};
+    var waiting = {};
+
+    // Only the results of the last search are displayed
+    var lastSearch = 0;
+
+    // Split a text in terms, as SearchIndex does : lower case letters (latin alphabet) and digits
+    function getTerms(text) {
+        var words = text.toLowerCase().split(/[^a-z0-9\u00c0-\u00d6\u00d8-\u00f6\u00f8-\u024f]+/);
+        var result = [];
+        for (var i = 0; i < words.length; i++) {
+            if (words[i].length >= MIN_TERM_LENGTH) {
+                result.push(words[i].substring(0, MAX_TERM_LENGTH));
+            }
+        }
+        return result;
+    }
+
+    // Name of the shard file of a prefix, the characters out of a-z and 0-9 are written in hexadecimal
+    function getShardFileName(prefix) {
+        var name = "search/t-";
+        for (var i = 0; i < prefix.length; i++) {
+            var c = prefix.charAt(i);
+            if (/[a-z0-9]/.test(c)) {
+                name += c;
+            } else {
+                name += "_" + ("000" + prefix.charCodeAt(i).toString(16)).slice(-4);
+            }
+        }
+        return name + ".js";
+    }
+
+    // Load a script of the index once, then call back. A missing shard is a shard without term.
+    function load(file, callback) {
+        if (loaded[file]) {
+            callback();
+            return;
+        }
+        if (waiting[file]) {
+            waiting[file].push(callback);
+            return;
+        }
+        waiting[file] = [callback];
+        var script = document.createElement("script");
+        script.src = file;
+        script.onload = script.onerror = function () {
+            var callbacks = waiting[file];
+            loaded[file] = true;
+            delete waiting[file];
+            for (var i = 0; i < callbacks.length; i++) {
+                callbacks[i]();
+            }
+        };
+        document.body.appendChild(script);
+    }
+
+    // Decode the ranks of the User Stories of a term : differences in base 36
+    function decode(postings) {
+        var ranks = [];
+        var rank = 0;
+        var values = postings.split(",");
+        for (var i = 0; i < values.length; i++) {
+            rank += parseInt(values[i], 36);
+            ranks.push(rank);
+        }
+        return ranks;
+    }
+
+    // Ranks of the User Stories containing a term starting with the word, as an object used as a set
+    function find(word) {
+        var found = {};
+        var shard = terms[word.substring(0, MIN_TERM_LENGTH)] || {};
+        for (var term in shard) {
+            if (shard.hasOwnProperty(term) && term.indexOf(word) === 0) {
+                var ranks = decode(shard[term]);
+                for (var i = 0; i < ranks.length; i++) {
+                    found[ranks[i]] = true;
+                }
+            }
+        }
+        return found;
+    }
+
+    // Call back once all the scripts are loaded
+    function loadAll(files, callback) {
+        var remaining = files.length;
+        if (remaining === 0) {
+            callback();
+            return;
+        }
+        for (var i = 0; i < files.length; i++) {
+            load(files[i], function () {
+                if (--remaining === 0) {
+                    callback();
+                }
+            });
+        }
+    }
+
+    return {
+
+        // Called by the shards of terms
+        addTerms: function (prefix, shardTerms) {
+            terms[prefix] = shardTerms;
+        },
+
+        // Called by the shards of documents
+        addDocuments: function (shard, shardDocuments) {
+            documents[shard] = shardDocuments;
+        },
+
+        // Page of a result : "ID - Title" for an User Story, "Type ID - Title" for the other entities
+        getPage: function (item) {
+            var words = item.split(" ");
+            var prefix = PAGE_PREFIXES[words[0]];
+            return prefix ? prefix + "-" + words[1] + ".html" : "us-" + words[0] + ".html";
+        },
+
+        // Search the User Stories containing all the words of the query, the results are given to process
+        search: function (query, process) {
+            var search = ++lastSearch;
+            var words = getTerms(query);
+            if (words.length === 0) {
+                process([]);
+                return;
+            }
+
+            var prefixes = [];
+            for (var i = 0; i < words.length; i++) {
+                prefixes.push(words[i].substring(0, MIN_TERM_LENGTH));
+            }
+            loadAll(prefixes.map(getShardFileName), function () {
+                if (search !== lastSearch) {
+                    return;
+                }
+
+                // The User Stories containing all the words, sorted by id
+                var found = find(words[0]);
+                for (var i = 1; i < words.length; i++) {
+                    var next = find(words[i]);
+                    for (var rank in found) {
+                        if (found.hasOwnProperty(rank) && !next[rank]) {
+                            delete found[rank];
+                        }
+                    }
+                }
+                var ranks = Object.keys(found).map(Number).sort(function (a, b) {
+                    return a - b;
+                }).slice(0, MAX_RESULTS);
+
+                // Their "ID - Title" are given by the shards of documents
+                var shards = [];
+                for (var j = 0; j < ranks.length; j++) {
+                    var shard = Math.floor(ranks[j] / DOCUMENTS_PER_SHARD);
+                    if (shards.indexOf(shard) < 0) {
+                        shards.push(shard);
+                    }
+                }
+                loadAll(shards.map(function (shard) {
+                    return "search/d-" + shard + ".js";
+                }), function () {
+                    if (search !== lastSearch) {
+                        return;
+                    }
+                    var items = [];
+                    for (var k = 0; k < ranks.length; k++) {
+                        var shardDocuments = documents[Math.floor(ranks[k] / DOCUMENTS_PER_SHARD)];
+                        if (shardDocuments) {
+                            items.push(shardDocuments[ranks[k] % DOCUMENTS_PER_SHARD]);
+                        }
+                    }
+                    process(items);
+                });
+            });
+        }
+    };
+})();